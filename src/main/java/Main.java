@@ -1,6 +1,7 @@
 import controller.QueryInterpretor;
 import model.KnowledgeGraph;
 import model.Property;
+import model.WriteAheadLog;
 import model.link.InstanceLink;
 import model.node.ConceptNode;
 import model.node.InstanceNode;
@@ -8,10 +9,19 @@ import utils.FileManager;
 import view.GraphDisplayer;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 
 public class Main {
+    /**
+     * Last checkpoint of the data graph, and the modifications made since
+     */
+    private static final String SNAPSHOT_PATH = "./graph.kgb";
+    private static final String LOG_PATH = "./graph.wal";
+
     private static KnowledgeGraph constructGraph() {
         KnowledgeGraph graph = new KnowledgeGraph(true);
 
@@ -26,8 +36,8 @@ public class Main {
         Map<String, Property<?>> propsDoliprane = new HashMap<>();
         name = new Property<>("Doliprane");
         propsDoliprane.put("name", name);
-        propsDoliprane.put("proprete", new Property<>(1));
-        propsDoliprane.put("quantite", new Property<>(90));
+        propsDoliprane.put("proprete", Property.of(1));
+        propsDoliprane.put("quantite", Property.of(90));
         InstanceNode doliprane = new InstanceNode(propsDoliprane);
         graph.addNodes(doliprane);
 
@@ -52,13 +62,42 @@ public class Main {
     }
 
     public static void main(String[] args) throws IOException {
-        KnowledgeGraph hardcodedGraph = KnowledgeGraph.fromJSON(FileManager.readFile("./graph.json"), true);
-        KnowledgeGraph searchGraph = KnowledgeGraph.fromJSON(FileManager.readFile("./small.json"), false);
+        KnowledgeGraph hardcodedGraph;
+        if (Files.exists(Paths.get(SNAPSHOT_PATH))) {
+            try (InputStream in = FileManager.openFile(SNAPSHOT_PATH)) {
+                hardcodedGraph = KnowledgeGraph.fromBinary(in, true);
+            }
+        } else {
+            try (InputStream in = FileManager.openFile("./graph.json")) {
+                hardcodedGraph = KnowledgeGraph.fromJSON(in, true);
+            }
+        }
+        WriteAheadLog log = WriteAheadLog.open(LOG_PATH);
+        int replayed = log.replay(hardcodedGraph);
+        if (replayed > 0)
+            System.out.println(replayed + " logged modification(s) replayed");
+        hardcodedGraph.setWriteAheadLog(log);
+
+        // Non-interactive mode : java Main <script>... (`-` reads the commands from the standard input)
+        if (args.length > 0) {
+            QueryInterpretor queryInterpretor = new QueryInterpretor(hardcodedGraph, SNAPSHOT_PATH);
+            boolean success = true;
+            for (String script : args)
+                success &= queryInterpretor.runScript(script);
+            log.close();
+            System.exit(success ? 0 : 1);
+        }
+
+        KnowledgeGraph searchGraph;
+        try (InputStream in = FileManager.openFile("./small.json")) {
+            searchGraph = KnowledgeGraph.fromJSON(in, false);
+        }
         KnowledgeGraph resultGraph = hardcodedGraph.search(searchGraph);
 
         GraphDisplayer.displayGraph(hardcodedGraph);
 
-        QueryInterpretor queryInterpretor = new QueryInterpretor(hardcodedGraph);
+        QueryInterpretor queryInterpretor = new QueryInterpretor(hardcodedGraph, SNAPSHOT_PATH);
         queryInterpretor.queryListener();
+        log.close();
     }
 }
@@ -0,0 +1,544 @@
+package controller;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import exceptions.IllegalLinkAssociationException;
+import model.GraphVersion;
+import model.KnowledgeGraph;
+import model.PathFinder;
+import model.Property;
+import model.WriteAheadLog;
+import model.link.Link;
+import model.node.ConceptNode;
+import model.node.InstanceNode;
+import model.node.Node;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded HTTP/JSON server exposing the REPL operations on a shared graph.
+ * It has no authentication, and listens on the loopback interface unless given another one.
+ *
+ * Every request runs on its own thread (a virtual thread when the JDK provides them),
+ * and all of them share the same concurrent graph. Searches and paths run on a pinned
+ * version of the graph, so they never block the writers. Pinning copies the graph : the
+ * requests share a version up to PIN_MAX_AGE old, and may not see the latest modifications.
+ *
+ * <pre>
+ * POST   /nodes                      {"type": "CONCEPT|INSTANCE", "content": {...}, "search": false}
+ * GET    /nodes[/id | ?key=value...]
+ * DELETE /nodes[/id | ?key=value...]
+ * POST   /links                      {"type": "AKO|ASSOCIATION|COMPOSITION|INSTANCE", "from": id, "to": id, "name": ..., "oriented": ...}
+ * GET    /links[?type=&amp;from=&amp;to=&amp;name=&amp;oriented=]
+ * DELETE /links?type=&amp;from=&amp;to=[&amp;name=&amp;oriented=]
+ * POST   /search                     JSON query graph
+ * GET    /path?from=&amp;to=[&amp;mode=dijkstra|bidirectional|astar]
+ * GET    /graph                      JSON export
+ * PUT    /graph                      JSON import
+ * </pre>
+ *
+ * Errors are answered as {"error": message}.
+ */
+public class GraphServer {
+    /**
+     * Pending connections accepted by the socket before the server handles them
+     */
+    private static final int BACKLOG = 1024;
+
+    /**
+     * Staleness of the version read by searches and paths, in milliseconds (see KnowledgeGraph.pin(long))
+     */
+    private static final long PIN_MAX_AGE = 1000;
+
+    private volatile KnowledgeGraph graph;
+
+    /**
+     * Snapshot the write-ahead log is checkpointed to on import (null without write-ahead log)
+     */
+    private final String snapshotPath;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param graph        KnowledgeGraph  Shared data graph, made concurrent
+     * @param snapshotPath String          Snapshot file the write-ahead log is replayed on
+     */
+    public GraphServer(KnowledgeGraph graph, String snapshotPath) {
+        graph.setConcurrent(true);
+        this.graph = graph;
+        this.snapshotPath = snapshotPath;
+    }
+
+    /**
+     * Listens on the loopback interface only : the server has no authentication
+     *
+     * @param port int             Listening port (0 for any free port)
+     * @throws IOException Port unavailable
+     */
+    public void start(int port) throws IOException {
+        start(InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * @param address InetAddress     Listening interface, the wildcard address for every interface
+     * @param port    int             Listening port (0 for any free port)
+     * @throws IOException Port unavailable
+     */
+    public synchronized void start(InetAddress address, int port) throws IOException {
+        if (server != null)
+            throw new IllegalStateException("Server already started");
+
+        server = HttpServer.create(new InetSocketAddress(address, port), BACKLOG);
+        server.createContext("/nodes", new Handler(this::nodes));
+        server.createContext("/links", new Handler(this::links));
+        server.createContext("/search", new Handler(this::search));
+        server.createContext("/path", new Handler(this::path));
+        server.createContext("/graph", new Handler(this::graph));
+        executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Stops the server, waiting up to one second for the running requests
+     */
+    public synchronized void stop() {
+        if (server == null)
+            return;
+
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server = null;
+        executor = null;
+    }
+
+    /**
+     * @return Listening interface, null when stopped
+     */
+    public synchronized InetAddress getAddress() {
+        return server == null ? null : server.getAddress().getAddress();
+    }
+
+    /**
+     * @return Listening port, -1 when stopped
+     */
+    public synchronized int getPort() {
+        return server == null ? -1 : server.getAddress().getPort();
+    }
+
+    /**
+     * @return Graph currently served, replaced by imports
+     */
+    public KnowledgeGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Serves another graph, e.g. imported from the REPL (its write-ahead log is left as is)
+     *
+     * @param graph KnowledgeGraph  New data graph, made concurrent
+     */
+    public void setGraph(KnowledgeGraph graph) {
+        graph.setConcurrent(true);
+        this.graph = graph;
+    }
+
+    /**
+     * @return One virtual thread per request when available (JDK 21+), a new or idle platform thread otherwise
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private void nodes(Request request) throws IOException {
+        KnowledgeGraph graph = this.graph;
+        switch (request.method) {
+            case "POST": {
+                JSONObject body = request.readObject();
+                Map<String, Property<?>> properties = new HashMap<>();
+                JSONObject content = body.optJSONObject("content");
+                if (content != null)
+                    for (String key : content.keySet())
+                        properties.put(key, Property.fromJSON(content.get(key)));
+
+                Node node;
+                String type = body.getString("type");
+                if (type.equalsIgnoreCase("concept"))
+                    node = new ConceptNode(properties);
+                else if (type.equalsIgnoreCase("instance"))
+                    node = new InstanceNode(properties);
+                else
+                    throw new IllegalArgumentException(type + " is not a Node type");
+                node.setSearch(body.optBoolean("search"));
+
+                graph.addNodes(node);
+                syncLog(graph);
+                request.send(201, graph.read(node::toJSONObject));
+                return;
+            }
+
+            case "GET": {
+                List<Node> nodes = findNodes(graph, request);
+                if (nodes == null)
+                    request.send(404, error("no corresponding nodes found"));
+                else if (request.id != null)
+                    request.send(200, graph.read(nodes.get(0)::toJSONObject));
+                else
+                    request.send(200, graph.read(() -> {
+                        JSONArray array = new JSONArray();
+                        for (Node node : nodes)
+                            array.put(node.toJSONObject());
+                        return array;
+                    }));
+                return;
+            }
+
+            case "DELETE": {
+                List<Node> nodes = findNodes(graph, request);
+                if (nodes == null || nodes.isEmpty()) {
+                    request.send(404, error("no suitable nodes found"));
+                    return;
+                }
+                graph.removeNodes(nodes.toArray(new Node[0]));
+                syncLog(graph);
+                request.send(200, new JSONObject().put("deleted", nodes.size()));
+                return;
+            }
+
+            default:
+                request.send(405, error("method not allowed"));
+        }
+    }
+
+    /**
+     * @return Node of the path ID, nodes matching the query parameters, or every node. null if the ID is unknown
+     */
+    private static List<Node> findNodes(KnowledgeGraph graph, Request request) {
+        if (request.id != null) {
+            Node node = graph.findNode(request.id);
+            return node == null ? null : List.of(node);
+        }
+        if (request.parameters.isEmpty())
+            return graph.getNodes();
+
+        Map<String, Property<?>> properties = new HashMap<>();
+        for (Map.Entry<String, String> parameter : request.parameters.entrySet())
+            properties.put(parameter.getKey(), Property.parse(parameter.getValue()));
+        return graph.findNodes(properties, Node.class);
+    }
+
+    private void links(Request request) throws IOException {
+        KnowledgeGraph graph = this.graph;
+        switch (request.method) {
+            case "POST": {
+                JSONObject body = request.readObject();
+                if (!body.has("name"))
+                    body.put("name", "");
+                if (!body.has("oriented"))
+                    body.put("oriented", false);
+                Link link = Link.fromJSONObject(body);
+                Node from = graph.findNode(body.getString("from"));
+                Node to = graph.findNode(body.getString("to"));
+                if (from == null || to == null) {
+                    request.send(404, error("no corresponding nodes found"));
+                    return;
+                }
+                if (!graph.addLink(from, to, link)) {
+                    request.send(400, error("illegal association"));
+                    return;
+                }
+                syncLog(graph);
+                request.send(201, graph.read(link::toJSONObject));
+                return;
+            }
+
+            case "GET": {
+                List<Link> links;
+                if (request.parameters.isEmpty()) {
+                    links = graph.getLinks();
+                } else {
+                    Link template = linkTemplate(graph, request);
+                    if (template == null) {
+                        request.send(404, error("no corresponding nodes found"));
+                        return;
+                    }
+                    links = graph.findLinks(template);
+                }
+                request.send(200, graph.read(() -> {
+                    JSONArray array = new JSONArray();
+                    for (Link link : links)
+                        array.put(link.toJSONObject());
+                    return array;
+                }));
+                return;
+            }
+
+            case "DELETE": {
+                Link template = linkTemplate(graph, request);
+                if (template == null) {
+                    request.send(404, error("no corresponding nodes found"));
+                    return;
+                }
+                if (!graph.removeLink(template, !request.parameters.containsKey("name"))) {
+                    request.send(404, error("no corresponding link found"));
+                    return;
+                }
+                syncLog(graph);
+                request.send(200, new JSONObject().put("deleted", true));
+                return;
+            }
+
+            default:
+                request.send(405, error("method not allowed"));
+        }
+    }
+
+    /**
+     * @return Link between the nodes of the query parameters, null if a node is unknown
+     * @throws IllegalArgumentException Missing parameter, invalid type or illegal association
+     */
+    private static Link linkTemplate(KnowledgeGraph graph, Request request) {
+        String type = request.parameters.get("type");
+        String fromId = request.parameters.get("from");
+        String toId = request.parameters.get("to");
+        if (type == null || fromId == null || toId == null)
+            throw new IllegalArgumentException("type, from and to parameters expected");
+
+        Link link = Link.of(type.toUpperCase(), request.parameters.getOrDefault("name", ""),
+                Boolean.parseBoolean(request.parameters.get("oriented")));
+        Node from = graph.findNode(fromId);
+        Node to = graph.findNode(toId);
+        if (from == null || to == null)
+            return null;
+
+        try {
+            link.setFrom(from);
+            link.setTo(to);
+        } catch (IllegalLinkAssociationException e) {
+            throw new IllegalArgumentException("illegal association, link cannot exist");
+        }
+        return link;
+    }
+
+    private void search(Request request) throws IOException {
+        if (!request.method.equals("POST")) {
+            request.send(405, error("method not allowed"));
+            return;
+        }
+
+        KnowledgeGraph query = KnowledgeGraph.fromJSON(request.body(), false);
+        KnowledgeGraph result;
+        try (GraphVersion version = graph.pin(PIN_MAX_AGE)) {
+            result = version.search(query);
+        }
+        request.sendGraph(result);
+    }
+
+    private void path(Request request) throws IOException {
+        if (!request.method.equals("GET")) {
+            request.send(405, error("method not allowed"));
+            return;
+        }
+
+        String from = request.parameters.get("from");
+        String to = request.parameters.get("to");
+        if (from == null || to == null)
+            throw new IllegalArgumentException("from and to parameters expected");
+        PathFinder.Mode mode = PathFinder.Mode.valueOf(
+                request.parameters.getOrDefault("mode", "dijkstra").toUpperCase());
+
+        JSONArray array = new JSONArray();
+        try (GraphVersion version = graph.pin(PIN_MAX_AGE)) {
+            for (Node node : version.shortestPath(from, to, mode))
+                array.put(node.toJSONObject());
+        }
+        if (array.isEmpty())
+            request.send(404, error("no path found"));
+        else
+            request.send(200, array);
+    }
+
+    private void graph(Request request) throws IOException {
+        switch (request.method) {
+            case "GET":
+                request.sendGraph(graph);
+                return;
+
+            case "PUT":
+                replaceGraph(KnowledgeGraph.fromJSON(request.body(), true));
+                request.send(200, new JSONObject()
+                        .put("nodes", graph.getNodes().size())
+                        .put("links", graph.getLinks().size()));
+                return;
+
+            default:
+                request.send(405, error("method not allowed"));
+        }
+    }
+
+    /**
+     * Replaces the served graph, moving its write-ahead log to the new one.
+     * The log only holds modifications since the last snapshot, so the new graph is checkpointed at once.
+     */
+    private synchronized void replaceGraph(KnowledgeGraph replacement) throws IOException {
+        replacement.setConcurrent(true);
+        WriteAheadLog log = graph.getWriteAheadLog();
+        graph.setWriteAheadLog(null);
+        graph = replacement;
+        if (log != null) {
+            graph.setWriteAheadLog(log);
+            if (snapshotPath != null)
+                log.checkpoint(graph, snapshotPath);
+        }
+    }
+
+    /**
+     * Makes the modification of a request durable. Concurrent requests share the same log write.
+     */
+    private static void syncLog(KnowledgeGraph graph) throws IOException {
+        WriteAheadLog log = graph.getWriteAheadLog();
+        if (log != null)
+            log.sync();
+    }
+
+    private static JSONObject error(String message) {
+        return new JSONObject().put("error", message);
+    }
+
+    private interface Operation {
+        void handle(Request request) throws IOException;
+    }
+
+    /**
+     * Runs an operation, answering its exceptions as JSON errors
+     */
+    private static final class Handler implements HttpHandler {
+        private final Operation operation;
+
+        private Handler(Operation operation) {
+            this.operation = operation;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                Request request = new Request(exchange);
+                try {
+                    operation.handle(request);
+                } catch (JSONException | IllegalArgumentException | UnsupportedOperationException e) {
+                    request.send(400, error(e.getMessage()));
+                } catch (IOException | RuntimeException e) {
+                    request.send(500, error(String.valueOf(e.getMessage())));
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    /**
+     * HTTP exchange along with its parsed path ID and query parameters
+     */
+    private static final class Request {
+        private final HttpExchange exchange;
+        private final String method;
+
+        /**
+         * Path segment following the context (e.g. /nodes/{id}), null if absent
+         */
+        private final String id;
+
+        private final Map<String, String> parameters;
+
+        private boolean sent;
+
+        private Request(HttpExchange exchange) {
+            this.exchange = exchange;
+            this.method = exchange.getRequestMethod();
+
+            String path = exchange.getRequestURI().getPath();
+            String context = exchange.getHttpContext().getPath();
+            String rest = path.length() > context.length() ? path.substring(context.length() + 1) : "";
+            this.id = rest.isEmpty() ? null : rest;
+
+            this.parameters = new HashMap<>();
+            String query = exchange.getRequestURI().getRawQuery();
+            if (query != null) {
+                for (String parameter : query.split("&")) {
+                    if (parameter.isEmpty())
+                        continue;
+                    int separator = parameter.indexOf('=');
+                    String key = separator < 0 ? parameter : parameter.substring(0, separator);
+                    String value = separator < 0 ? "" : parameter.substring(separator + 1);
+                    parameters.put(URLDecoder.decode(key, StandardCharsets.UTF_8),
+                            URLDecoder.decode(value, StandardCharsets.UTF_8));
+                }
+            }
+        }
+
+        /**
+         * @return Request body, read as it is parsed
+         */
+        private InputStream body() {
+            return exchange.getRequestBody();
+        }
+
+        private JSONObject readObject() {
+            return new JSONObject(new JSONTokener(new InputStreamReader(body(), StandardCharsets.UTF_8)));
+        }
+
+        private void send(int status, Object json) throws IOException {
+            if (sent)
+                return;
+            sent = true;
+
+            byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+
+        /**
+         * Streams a JSON graph, without building the document in memory
+         */
+        private void sendGraph(KnowledgeGraph graph) throws IOException {
+            sent = true;
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                graph.toJSON(out);
+            }
+        }
+    }
+}
@@ -2,21 +2,56 @@ package controller;
 
 import exceptions.IllegalLinkAssociationException;
 import model.KnowledgeGraph;
+import model.MappedGraphStore;
+import model.PathFinder;
 import model.Property;
+import model.Range;
+import model.WriteAheadLog;
 import model.node.*;
 import model.link.*;
+import org.json.JSONException;
 import utils.FileManager;
 import view.GraphDisplayer;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class QueryInterpretor {
+    /**
+     * Separator of the command arguments
+     */
+    private static final Pattern SEPARATOR = Pattern.compile(" +");
+
+    /**
+     * Range filters : `quantite>50`, `50<quantite`, `10<=x<20`
+     */
+    private static final Pattern RANGE = Pattern.compile("([^<>=:]+)([<>]=?)([^<>=:]+)");
+    private static final Pattern BETWEEN = Pattern.compile("([^<>=:]+)(<=?)([^<>=:]+)(<=?)([^<>=:]+)");
+
+    /**
+     * Number of script commands executed between two applications of the deferred graph work
+     */
+    private static final int BATCH_SIZE = 10000;
+
+    /**
+     * Number of hits shown by `node search`
+     */
+    private static final int SEARCH_LIMIT = 20;
 
     private KnowledgeGraph graph;
 
@@ -24,9 +59,49 @@ public class QueryInterpretor {
 
     private boolean query;
 
+    /**
+     * Snapshot written by `graph checkpoint` (null without write-ahead log)
+     */
+    private final String snapshotPath;
+
+    /**
+     * HTTP server sharing the data graph (null when stopped)
+     */
+    private GraphServer server;
+
+    /**
+     * Memory-mapped graph opened by `store open` (null when closed)
+     */
+    private MappedGraphStore store;
+
+    /**
+     * Command output, and errors captured while running a script
+     */
+    private final PrintStream out = System.out;
+    private PrintStream err = System.err;
+
+    /**
+     * Success and progress messages, silenced while running a script
+     */
+    private PrintStream info = System.out;
+
+    /**
+     * false while running a script : graphs are printed instead of displayed in a window
+     */
+    private boolean interactive = true;
+
     public QueryInterpretor(KnowledgeGraph graph) {
+        this(graph, null);
+    }
+
+    /**
+     * @param graph        KnowledgeGraph  Data graph, possibly fed to a write-ahead log
+     * @param snapshotPath String          Snapshot file the log is replayed on
+     */
+    public QueryInterpretor(KnowledgeGraph graph, String snapshotPath) {
         this.graph = graph;
         this.querygraph = new KnowledgeGraph(false);
+        this.snapshotPath = snapshotPath;
         query = false;
     }
 
@@ -35,23 +110,128 @@ public class QueryInterpretor {
      */
     public void queryListener() {
 
-        System.out.println("Enter your queries. (Type \"help\" for help)");
+        out.println("Enter your queries. (Type \"help\" for help)");
 
         BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
         String rawQuery;
         do {
-            System.out.print("\n" + (this.query ? "$" : ">") + " ");
+            out.print("\n" + (this.query ? "$" : ">") + " ");
             try {
                 rawQuery = reader.readLine();
             } catch (IOException e) {
                 e.printStackTrace();
                 break;
             }
-            String[] args = rawQuery.split("[ ]+");
-            executeQuery(args[0], Arrays.copyOfRange(args, 1, args.length));
+            execute(rawQuery);
+            syncLog();
 
         } while (!rawQuery.equals("exit"));
-        System.out.println("bye <3");
+        stopServer();
+        closeStore();
+        out.println("bye <3");
+    }
+
+    /**
+     * Splits a command line and executes it
+     *
+     * @param rawQuery String          Command line
+     */
+    private void execute(String rawQuery) {
+        String[] args = SEPARATOR.split(rawQuery);
+        executeQuery(args[0], Arrays.copyOfRange(args, 1, args.length));
+    }
+
+    /**
+     * Executes a command script without prompt nor success messages, then prints a summary.
+     * Query results (find, list, path...) are still printed.
+     *
+     * @param path String          Script path, `-` for the standard input
+     * @return false if the script could not be read or a command failed
+     */
+    public boolean runScript(String path) {
+        if (path.equals("-"))
+            return runScript(new InputStreamReader(System.in, StandardCharsets.UTF_8), "<stdin>");
+
+        try (InputStream in = FileManager.openFile(path)) {
+            return runScript(new InputStreamReader(in, StandardCharsets.UTF_8), path);
+        } catch (IOException e) {
+            err.println("Error: could not read script " + path + " (" + e.getMessage() + ")");
+            return false;
+        }
+    }
+
+    /**
+     * Executes the commands of a script by batches of BATCH_SIZE. Within a batch, property inheritance
+     * and indexing are deferred, and the write-ahead log is synced once at its end.
+     * Blank lines and lines starting with `#` are skipped, `exit` stops the script.
+     *
+     * @param script Reader          Commands, one per line
+     * @param name   String          Script name used in the error messages
+     * @return false if the script could not be read or a command failed
+     */
+    public boolean runScript(Reader script, String name) {
+        PrintStream scriptInfo = info;
+        PrintStream scriptErr = err;
+        boolean scriptInteractive = interactive;
+        interactive = false;
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        info = new PrintStream(OutputStream.nullOutputStream());
+        err = new PrintStream(errors, true, StandardCharsets.UTF_8);
+
+        BufferedReader reader = new BufferedReader(script, 1 << 16);
+        long start = System.nanoTime();
+        int lineNumber = 0;
+        int commands = 0;
+        int failed = 0;
+        boolean readError = false;
+        try {
+            String line = "";
+            while (line != null && !line.equals("exit")) {
+                KnowledgeGraph batchGraph = graph;
+                batchGraph.beginBatch();
+                try {
+                    for (int batched = 0; batched < BATCH_SIZE; ) {
+                        line = reader.readLine();
+                        if (line == null)
+                            break;
+                        lineNumber++;
+                        line = line.trim();
+                        if (line.equals("exit"))
+                            break;
+                        if (line.isEmpty() || line.startsWith("#"))
+                            continue;
+
+                        try {
+                            execute(line);
+                        } catch (RuntimeException e) {
+                            err.println("Error: " + e);
+                        }
+                        commands++;
+                        batched++;
+                        if (errors.size() > 0) {
+                            failed++;
+                            scriptErr.print(name + ":" + lineNumber + ": " + errors.toString(StandardCharsets.UTF_8));
+                            errors.reset();
+                        }
+                    }
+                } finally {
+                    batchGraph.endBatch();
+                    syncLog();
+                }
+            }
+        } catch (IOException e) {
+            readError = true;
+            scriptErr.println("Error: could not read script " + name + " (" + e.getMessage() + ")");
+        } finally {
+            info = scriptInfo;
+            err = scriptErr;
+            interactive = scriptInteractive;
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        out.printf("%s: %d command(s) executed, %d failed, in %.3f s (%.0f commands/s)%n",
+                name, commands, failed, seconds, seconds > 0 ? commands / seconds : 0);
+        return !readError && failed == 0;
     }
 
     /**
@@ -61,6 +241,7 @@ public class QueryInterpretor {
      * @param args String[]        Command's arguments
      */
     private void executeQuery(String cmd, String[] args) {
+        followServer();
         if (cmd.equals("help")) {
             printHelp();
         } else if (cmd.equals("node") && args.length > 0 && args[0].equals("add") && !args[1].equals("")) {
@@ -69,6 +250,8 @@ public class QueryInterpretor {
             deleteNode(args);
         } else if (cmd.equals("node") && args.length > 0 && args[0].equals("find")) {
             findNode(args);
+        } else if (cmd.equals("node") && args.length > 0 && args[0].equals("search")) {
+            searchNode(args);
         } else if (cmd.equals("node") && args.length > 0 && args[0].equals("list")) {
             listNode();
         } else if (cmd.equals("link") && args.length > 0 && args[0].equals("add")) {
@@ -82,29 +265,61 @@ public class QueryInterpretor {
         } else if (cmd.equals("switchGraph")) {
             switchGraph();
         } else if (cmd.equals("findQuery")) {
-            System.out.println("Finding the patterns with the query Knowledge Graph...");
-            GraphDisplayer.displayGraph((query) ? querygraph.search(graph) : graph.search(querygraph));
+            info.println("Finding the patterns with the query Knowledge Graph...");
+            KnowledgeGraph result = (query) ? querygraph.search(graph) : graph.search(querygraph);
+            if (interactive)
+                GraphDisplayer.displayGraph(result);
+            else
+                printGraph("Found patterns", result);
         } else if (cmd.equals("clear")) {
             if (query) {
                 graph = new KnowledgeGraph(false);
             } else {
                 querygraph = new KnowledgeGraph(false);
             }
-            System.out.println("Successfully cleared query graph");
+            info.println("Successfully cleared query graph");
         } else if (cmd.equals("graph") && args[0].equals("export")) {
             exportGraph(args);
         } else if (cmd.equals("graph") && args[0].equals("import")) {
             importGraph(args);
+        } else if (cmd.equals("graph") && args[0].equals("save")) {
+            saveGraph(args);
+        } else if (cmd.equals("graph") && args[0].equals("load")) {
+            loadGraph(args);
+        } else if (cmd.equals("graph") && args[0].equals("index")) {
+            indexGraph(args);
+        } else if (cmd.equals("graph") && args[0].equals("cache")) {
+            cacheGraph(args);
+        } else if (cmd.equals("graph") && args[0].equals("text")) {
+            textIndexGraph(args);
+        } else if (cmd.equals("graph") && args[0].equals("range")) {
+            rangeIndexGraph(args);
+        } else if (cmd.equals("graph") && args[0].equals("inheritance")) {
+            setInheritance(args);
+        } else if (cmd.equals("graph") && args[0].equals("parallelism")) {
+            setParallelism(args);
         } else if (cmd.equals("graph") && args[0].equals("path")) {
-            // WIP
-            Node origin = graph.findNode(args[1]);
-            Node destination = graph.findNode(args[2]);
-            System.out.println("Recherche de " + origin + " à " + destination + "...");
-            System.out.println(graph.dijkstra(origin, destination));
+            findPath(args);
+        } else if (cmd.equals("graph") && args[0].equals("checkpoint")) {
+            checkpoint();
+        } else if (cmd.equals("run")) {
+            if (args.length == 1)
+                runScript(args[0]);
+            else
+                err.println("Syntax error. Use `run <scriptPath>`");
+        } else if (cmd.equals("server") && args.length > 0 && args[0].equals("start")) {
+            startServer(args);
+        } else if (cmd.equals("server") && args.length > 0 && args[0].equals("stop")) {
+            stopServer();
+        } else if (cmd.equals("store") && args.length > 0) {
+            store(args);
         } else if (cmd.equals("display")) {
-            GraphDisplayer.displayGraph(graph);
+            if (interactive)
+                GraphDisplayer.displayGraph(graph);
+            else
+                info.println("No display while running a script");
         } else {
-            System.err.println("Error: command not found");
+            err.println("Error: command not found");
         }
     }
 
@@ -112,9 +327,9 @@ public class QueryInterpretor {
         this.query = !this.query;
 
         if (this.query) {
-            System.out.println("Switching to the query knowledge graph\nYou can now enter your query items");
+            info.println("Switching to the query knowledge graph\nYou can now enter your query items");
         } else {
-            System.out.println("Switching to the knowledge graph\nYou can now enter your data");
+            info.println("Switching to the knowledge graph\nYou can now enter your data");
         }
 
         KnowledgeGraph tmp = graph;
@@ -124,7 +339,7 @@ public class QueryInterpretor {
 
     private void addNode(String[] args) {
         if (args.length < 2) {
-            System.out.println("Error: not enough arguments");
+            err.println("Error: not enough arguments");
             return;
         }
 
@@ -138,29 +353,29 @@ public class QueryInterpretor {
         } else if (args[1].equalsIgnoreCase("instance")) {
             node = new InstanceNode(properties);
         } else {
-            System.err.println("Error: " + args[1] + " is not a Node type");
+            err.println("Error: " + args[1] + " is not a Node type");
             return;
         }
         node.setSearch(search);
 
         graph.addNodes(node);
-        System.out.println("Successfully created node " + node);
+        info.println("Successfully created node " + node);
     }
 
     private void deleteNode(String[] args) {
         if (args.length < 2) {
-            System.out.println("Error: not enough arguments");
+            err.println("Error: not enough arguments");
             return;
         }
 
-        HashMap<String, Property<?>> properties = new HashMap<>();
         List<Node> nodes = new ArrayList<>();
 
-        if (args[1].split(":").length != 2) {
+        if (!isFilter(args[1])) {
             nodes.add(graph.findNode(args[1]));
         } else {
-            getNextProperties(properties, args, 1);
-            nodes = graph.findNodes(properties, Node.class);
+            nodes = findNodes(args, 1);
+            if (nodes == null)
+                return;
         }
 
         if (nodes.size() > 0 && nodes.get(0) != null) {
@@ -168,50 +383,164 @@ public class QueryInterpretor {
                 graph.removeNodes(node);
             }
         } else {
-            System.err.println("Error: no suitable nodes found: " + nodes.size());
+            err.println("Error: no suitable nodes found: " + nodes.size());
             return;
         }
 
-        System.out.println("Deleted " + nodes.size() + " node(s).");
+        info.println("Deleted " + nodes.size() + " node(s).");
     }
 
     private void findNode(String[] args) {
         if (args.length < 2) {
-            System.out.println("Error: not enough arguments");
+            err.println("Error: not enough arguments");
             return;
         }
 
         List<Node> nodes = new ArrayList<>();
-        if (args[1].split(":").length != 2) {
+        if (!isFilter(args[1])) {
             nodes.add(graph.findNode(args[1]));
         } else {
-            HashMap<String, Property<?>> properties = new HashMap<>();
-            getNextProperties(properties, args, 1);
-            nodes = graph.findNodes(properties, Node.class);
+            nodes = findNodes(args, 1);
+            if (nodes == null)
+                return;
         }
 
         if (nodes != null && nodes.size() > 0 && nodes.get(0) != null) {
-            System.out.println("Corresponding nodes\n===================");
+            out.println("Corresponding nodes\n===================");
             for (Node node : nodes) {
-                System.out.print(node.toDetailedString());
-                System.out.println("===================");
+                out.print(node.toDetailedString());
+                out.println("===================");
             }
         } else {
-            System.err.println("Error: no corresponding nodes found");
+            err.println("Error: no corresponding nodes found");
         }
     }
 
+    private void searchNode(String[] args) {
+        if (args.length < 2) {
+            err.println("Error: not enough arguments");
+            return;
+        }
+
+        String text = String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+        List<Node> nodes = graph.searchText(text, SEARCH_LIMIT);
+        if (nodes.isEmpty()) {
+            err.println("Error: no corresponding nodes found");
+            return;
+        }
+
+        out.println("Search results\n===================");
+        for (int i = 0; i < nodes.size(); ++i)
+            out.println((i + 1) + ". " + nodes.get(i) + " (id " + nodes.get(i).getId() + ")");
+    }
+
+    private static boolean isFilter(String arg) {
+        return arg.split(":").length == 2 || RANGE.matcher(arg).matches() || BETWEEN.matcher(arg).matches();
+    }
+
+    /**
+     * Finds the nodes matching property and range filters. The `isa:<ID>` filter keeps the nodes that are
+     * a kind of the concept ID : the concept, its sub-concepts and their instances.
+     *
+     * @return Matching nodes, null if a filter is invalid
+     */
+    private List<Node> findNodes(String[] args, int basePointer) {
+        HashMap<String, Property<?>> properties = new HashMap<>();
+        Map<String, Range> ranges = new HashMap<>();
+        // the concept ID as typed, not parsed as a value ("007" stays "007")
+        String isa = null;
+        for (int i = basePointer; i < args.length; ++i) {
+            String[] parsedString = args[i].split(":");
+            if (parsedString.length == 2 && parsedString[0].equals("isa")) {
+                isa = parsedString[1];
+            } else if (parsedString.length == 2) {
+                properties.put(parsedString[0], Property.parse(parsedString[1]));
+            } else if (!getRange(ranges, args[i])) {
+                err.println("Error: bad query arguments");
+                return null;
+            }
+        }
+
+        if (isa == null)
+            return graph.findNodes(properties, ranges);
+
+        List<Node> nodes = new ArrayList<>();
+        Node concept = graph.findNode(isa);
+        if (concept == null)
+            return nodes;
+
+        if (properties.isEmpty() && ranges.isEmpty()) {
+            nodes.addAll(graph.getSubConcepts(concept));
+            nodes.addAll(graph.getInstances(concept));
+        } else {
+            for (Node node : graph.findNodes(properties, ranges))
+                if (graph.isA(node, concept))
+                    nodes.add(node);
+        }
+        return nodes;
+    }
+
+    /**
+     * Parses a range filter, intersected with the previous ones on the same property
+     *
+     * @return false if the filter is invalid
+     */
+    private static boolean getRange(Map<String, Range> ranges, String arg) {
+        Matcher between = BETWEEN.matcher(arg);
+        if (between.matches()) {
+            Number lower = Property.parseNumber(between.group(1));
+            Number upper = Property.parseNumber(between.group(5));
+            if (lower == null || upper == null)
+                return false;
+            ranges.merge(between.group(3), new Range(lower, between.group(2).equals("<="),
+                    upper, between.group(4).equals("<=")), Range::intersect);
+            return true;
+        }
+
+        Matcher matcher = RANGE.matcher(arg);
+        if (!matcher.matches())
+            return false;
+        String key = matcher.group(1);
+        String operator = matcher.group(2);
+        Number bound = Property.parseNumber(matcher.group(3));
+        if (bound == null) {
+            // Bound first (50<quantite) : reads as quantite>50
+            key = matcher.group(3);
+            bound = Property.parseNumber(matcher.group(1));
+            if (bound == null)
+                return false;
+            operator = (operator.charAt(0) == '<' ? ">" : "<") + operator.substring(1);
+        }
+
+        Range range;
+        switch (operator) {
+            case ">":
+                range = Range.greaterThan(bound);
+                break;
+            case ">=":
+                range = Range.atLeast(bound);
+                break;
+            case "<":
+                range = Range.lessThan(bound);
+                break;
+            default:
+                range = Range.atMost(bound);
+        }
+        ranges.merge(key, range, Range::intersect);
+        return true;
+    }
+
     private void listNode() {
-        System.out.println("All Nodes\n===================");
+        out.println("All Nodes\n===================");
         for (Node node : graph.getNodes()) {
-            System.out.print(node.toDetailedString());
-            System.out.println("===================");
+            out.print(node.toDetailedString());
+            out.println("===================");
         }
     }
 
     private void addLink(String[] args) {
         if (args.length < 4) {
-            System.err.println("Syntax error. Use `link add <LinkType> [Link Mandatory Property] <IDNode1> <IDNode2> [LinkName]`");
+            err.println("Syntax error. Use `link add <LinkType> [Link Mandatory Property] <IDNode1> <IDNode2> [LinkName]`");
             return;
         }
 
@@ -227,18 +556,18 @@ public class QueryInterpretor {
             } else if (args[2].equalsIgnoreCase("nonoriented")) {
                 link = new CompositionLink(false);
             } else {
-                System.err.println("Error: no orientation specified");
+                err.println("Error: no orientation specified");
                 return;
             }
             if (args.length < 5) {
-                System.err.println("Error: not enough arguments");
+                err.println("Error: not enough arguments");
                 return;
             }
             nodeIdIndex++;
         } else if (args[1].equalsIgnoreCase("instance")) {
             link = new InstanceLink();
         } else {
-            System.err.println("Error: no valid TypeLink specified");
+            err.println("Error: no valid TypeLink specified");
             return;
         }
 
@@ -250,17 +579,19 @@ public class QueryInterpretor {
         }
 
         if (firstNode == null || secondNode == null) {
-            System.err.println("Error: no corresponding nodes found");
+            err.println("Error: no corresponding nodes found");
         } else {
             if (graph.addLink(firstNode, secondNode, link)) {
-                System.out.println("Successfully added link between " + firstNode + " and " + secondNode);
+                info.println("Successfully added link between " + firstNode + " and " + secondNode);
+            } else {
+                err.println("Error: illegal association");
             }
         }
     }
 
     private void deleteLink(String[] args) {
         if (args.length < 4) {
-            System.err.println("Syntax error. Use `link del [LinkType] [Link Mandatory Property] <IDNode1> <IDNode2> [LinkName]`");
+            err.println("Syntax error. Use `link del [LinkType] [Link Mandatory Property] <IDNode1> <IDNode2> [LinkName]`");
             return;
         }
 
@@ -272,7 +603,7 @@ public class QueryInterpretor {
             link = new AssociationLink();
         } else if (args[1].equalsIgnoreCase("composition")) {
             if (args.length < 5) {
-                System.out.println("Error: not enough arguments");
+                err.println("Error: not enough arguments");
                 return;
             }
             if (args[2].equalsIgnoreCase("oriented")) {
@@ -280,14 +611,14 @@ public class QueryInterpretor {
             } else if (args[2].equalsIgnoreCase("nonoriented")) {
                 link = new CompositionLink(false);
             } else {
-                System.err.println("Error: no orientation specified");
+                err.println("Error: no orientation specified");
                 return;
             }
             nodeIdIndex++;
         } else if (args[1].equalsIgnoreCase("instance")) {
             link = new InstanceLink();
         } else {
-            System.err.println("Error: no valid TypeLink specified");
+            err.println("Error: no valid TypeLink specified");
             return;
         }
 
@@ -302,7 +633,7 @@ public class QueryInterpretor {
         }
 
         if (secondNode == null || firstNode == null) {
-            System.out.println("Error: no corresponding nodes");
+            err.println("Error: no corresponding nodes");
             return;
         }
 
@@ -310,21 +641,21 @@ public class QueryInterpretor {
             link.setFrom(firstNode);
             link.setTo(secondNode);
         } catch (IllegalLinkAssociationException e) {
-            System.out.println("Error: illegal association");
+            err.println("Error: illegal association");
             return;
         }
 
         // FIXME the link id does not exists in model
         if (graph.removeLink(link, deleteAll)) {
-            System.out.println("Success, deleted link between " + firstNode + " and " + secondNode);
+            info.println("Success, deleted link between " + firstNode + " and " + secondNode);
         } else {
-            System.err.println("Error: unsuccessful link deletion between " + firstNode + " and " + secondNode);
+            err.println("Error: unsuccessful link deletion between " + firstNode + " and " + secondNode);
         }
     }
 
     private void findLink(String[] args) {
         if (args.length < 4) {
-            System.err.println("Syntax error. Use `link find [LinkType] [Link Mandatory Property] <IDNode1> <IDNode2> [LinkName]`");
+            err.println("Syntax error. Use `link find [LinkType] [Link Mandatory Property] <IDNode1> <IDNode2> [LinkName]`");
             return;
         }
 
@@ -336,7 +667,7 @@ public class QueryInterpretor {
             link = new AssociationLink();
         } else if (args[1].equalsIgnoreCase("composition")) {
             if (args.length < 5) {
-                System.out.println("Error: not enough arguments");
+                err.println("Error: not enough arguments");
                 return;
             }
             if (args[2].equalsIgnoreCase("oriented")) {
@@ -344,14 +675,14 @@ public class QueryInterpretor {
             } else if (args[2].equalsIgnoreCase("nonoriented")) {
                 link = new CompositionLink(false);
             } else {
-                System.err.println("Error: no orientation specified");
+                err.println("Error: no orientation specified");
                 return;
             }
             nodeIdIndex++;
         } else if (args[1].equalsIgnoreCase("instance")) {
             link = new InstanceLink();
         } else {
-            System.err.println("Error: no valid TypeLink specified");
+            err.println("Error: no valid TypeLink specified");
             return;
         }
 
@@ -359,7 +690,7 @@ public class QueryInterpretor {
         Node secondNode = graph.findNode(args[nodeIdIndex + 1]);
 
         if (secondNode == null || firstNode == null) {
-            System.out.println("Error: no nodes corresponding");
+            err.println("Error: no nodes corresponding");
             return;
         }
 
@@ -367,55 +698,393 @@ public class QueryInterpretor {
             link.setFrom(firstNode);
             link.setTo(secondNode);
         } catch (IllegalLinkAssociationException e) {
-            System.err.println("Error: illegal association, link cannot exist");
+            err.println("Error: illegal association, link cannot exist");
             return;
         }
 
         List<Link> links = graph.findLinks(link);
         if (links.size() == 0) {
-            System.err.println("Error: no corresponding link found");
+            err.println("Error: no corresponding link found");
         } else {
-            System.out.println("Links found\n===================");
+            out.println("Links found\n===================");
             for (Link linkPrint : links) {
-                System.out.println(linkPrint.toDetailedString(null));
-                System.out.println("===================");
+                out.println(linkPrint.toDetailedString(null));
+                out.println("===================");
             }
         }
     }
 
+    /**
+     * Prints the nodes and links of a graph, in place of the display while running a script
+     */
+    private void printGraph(String title, KnowledgeGraph printed) {
+        out.println(title + "\n===================");
+        for (Node node : printed.getNodes()) {
+            out.print(node.toDetailedString());
+            out.println("===================");
+        }
+        for (Link link : printed.getLinks()) {
+            out.println(link.toDetailedString(null));
+            out.println("===================");
+        }
+    }
+
     private void linkList() {
-        System.out.println("All Links\n===================");
+        out.println("All Links\n===================");
         for (Link link : graph.getLinks()) {
-            System.out.println(link.toDetailedString(null));
-            System.out.println("===================");
+            out.println(link.toDetailedString(null));
+            out.println("===================");
         }
     }
 
     private void exportGraph(String[] args) {
         if (args.length == 2) {
-            try {
-                FileManager.writeFile(args[1], graph.toJSON());
+            try (OutputStream out = FileManager.createFile(args[1])) {
+                graph.toJSON(out);
             } catch (IOException e) {
-                System.err.println("Could not export graph to file (permission denied or invalid path).");
+                err.println("Could not export graph to file (permission denied or invalid path).");
             }
         } else {
-            System.err.println("Syntax error. Use `graph export <URI>`");
+            err.println("Syntax error. Use `graph export <URI>`");
         }
     }
 
     private void importGraph(String[] args) {
         if (args.length == 2) {
+            try (InputStream in = FileManager.openFile(args[1])) {
+                replaceGraph(KnowledgeGraph.fromJSON(in, !this.query, graph.isLazyInheritance()));
+            } catch (IOException e) {
+                err.println("Could not import JSON file (file not found or not readable).");
+            } catch (JSONException e) {
+                err.println("Could not import JSON file (format error).");
+            }
+        } else {
+            err.println("Syntax error. Use `graph import <URI>`");
+        }
+    }
+
+    private void setInheritance(String[] args) {
+        if (args.length == 2 && (args[1].equals("eager") || args[1].equals("lazy"))) {
+            graph.setLazyInheritance(args[1].equals("lazy"));
+            info.println("Properties are now inherited " + (graph.isLazyInheritance() ? "at read time" : "by copy"));
+        } else {
+            err.println("Syntax error. Use `graph inheritance <eager|lazy>`");
+        }
+    }
+
+    private void setParallelism(String[] args) {
+        if (args.length != 2) {
+            err.println("Syntax error. Use `graph parallelism <threads>`");
+            return;
+        }
+
+        try {
+            graph.setSearchParallelism(Integer.parseInt(args[1]));
+            querygraph.setSearchParallelism(graph.getSearchParallelism());
+            info.println("Search now uses " + graph.getSearchParallelism() + " thread(s)");
+        } catch (IllegalArgumentException e) {
+            err.println("Error: invalid number of threads " + args[1]);
+        }
+    }
+
+    private void findPath(String[] args) {
+        if (args.length != 3 && args.length != 4) {
+            err.println("Syntax error. Use `graph path <IDNode1> <IDNode2> [dijkstra|bidirectional|astar]`");
+            return;
+        }
+
+        PathFinder.Mode mode = PathFinder.Mode.DIJKSTRA;
+        if (args.length == 4) {
+            try {
+                mode = PathFinder.Mode.valueOf(args[3].toUpperCase());
+            } catch (IllegalArgumentException e) {
+                err.println("Error: unknown path mode " + args[3]);
+                return;
+            }
+        }
+
+        Node origin = graph.findNode(args[1]);
+        Node destination = graph.findNode(args[2]);
+        if (origin == null || destination == null) {
+            err.println("Error: no corresponding nodes found");
+            return;
+        }
+
+        info.println("Recherche de " + origin + " à " + destination + "...");
+        List<Node> path = graph.shortestPath(origin, destination, mode);
+        if (path.isEmpty()) {
+            err.println("Error: no path found");
+        } else {
+            out.println(path);
+        }
+    }
+
+    private void saveGraph(String[] args) {
+        if (args.length == 2) {
+            try (OutputStream out = FileManager.createFile(args[1])) {
+                graph.toBinary(out);
+            } catch (IOException e) {
+                err.println("Could not save graph to file (permission denied or invalid path).");
+            }
+        } else {
+            err.println("Syntax error. Use `graph save <URI>`");
+        }
+    }
+
+    private void loadGraph(String[] args) {
+        if (args.length == 2) {
+            try (InputStream in = FileManager.openFile(args[1])) {
+                replaceGraph(KnowledgeGraph.fromBinary(in, !this.query, graph.isLazyInheritance()));
+            } catch (IOException e) {
+                err.println("Could not load binary graph file (" + e.getMessage() + ").");
+            }
+        } else {
+            err.println("Syntax error. Use `graph load <URI>`");
+        }
+    }
+
+    /**
+     * Replaces the current graph, moving its write-ahead log to the new one.
+     * The log only holds modifications since the last snapshot, so the new graph is checkpointed at once.
+     */
+    private void replaceGraph(KnowledgeGraph replacement) {
+        WriteAheadLog log = graph.getWriteAheadLog();
+        graph.setWriteAheadLog(null);
+        graph = replacement;
+        if (log != null) {
+            graph.setWriteAheadLog(log);
+            checkpoint();
+        }
+        if (server != null && !query)
+            server.setGraph(graph);
+    }
+
+    private void startServer(String[] args) {
+        if (args.length != 2 && args.length != 3) {
+            err.println("Syntax error. Use `server start <port> [<address>]`");
+            return;
+        }
+        if (server != null) {
+            err.println("Error: server already listening on port " + server.getPort());
+            return;
+        }
+
+        try {
+            server = new GraphServer(query ? querygraph : graph, snapshotPath);
+            int port = Integer.parseInt(args[1]);
+            if (args.length == 3)
+                server.start(InetAddress.getByName(args[2]), port);
+            else
+                server.start(port);
+            info.println("Serving the knowledge graph on " + server.getAddress().getHostAddress() + ":" + server.getPort());
+        } catch (NumberFormatException e) {
+            server = null;
+            err.println("Error: invalid port " + args[1]);
+        } catch (IOException | IllegalArgumentException e) {
+            server = null;
+            err.println("Error: could not start server (" + e.getMessage() + ")");
+        }
+    }
+
+    private void stopServer() {
+        if (server == null)
+            return;
+        server.stop();
+        server = null;
+        info.println("Server stopped");
+    }
+
+    /**
+     * Picks up the data graph imported through the server meanwhile
+     */
+    private void followServer() {
+        if (server == null)
+            return;
+        if (query)
+            querygraph = server.getGraph();
+        else
+            graph = server.getGraph();
+    }
+
+    /**
+     * Makes the modifications of the last command durable
+     */
+    private void syncLog() {
+        for (KnowledgeGraph knowledgeGraph : new KnowledgeGraph[]{graph, querygraph}) {
+            WriteAheadLog log = knowledgeGraph.getWriteAheadLog();
+            if (log == null)
+                continue;
             try {
-                graph = KnowledgeGraph.fromJSON(FileManager.readFile(args[1]), !this.query);
+                log.sync();
             } catch (IOException e) {
-                System.err.println("Could not import JSON file (format error).");
+                err.println("Error: could not write the log (" + e.getMessage() + ")");
             }
+        }
+    }
+
+    /**
+     * Memory-mapped store commands : write the current graph to a store, open or close a store,
+     * and find nodes, neighbours or the query graph in the open store
+     */
+    private void store(String[] args) {
+        switch (args[0]) {
+            case "write":
+                if (args.length != 2) {
+                    err.println("Syntax error. Use `store write <storePath>`");
+                    return;
+                }
+                try {
+                    MappedGraphStore.write(graph, args[1]);
+                    info.println("Graph written to " + args[1]);
+                } catch (IOException e) {
+                    err.println("Error: could not write store (" + e.getMessage() + ")");
+                }
+                return;
+
+            case "open":
+                if (args.length != 2) {
+                    err.println("Syntax error. Use `store open <storePath>`");
+                    return;
+                }
+                closeStore();
+                try {
+                    store = MappedGraphStore.open(args[1]);
+                    info.println("Store opened : " + store.getNodeCount() + " node(s), "
+                            + store.getEdgeCount() + " edge(s)");
+                } catch (IOException e) {
+                    err.println("Error: could not open store (" + e.getMessage() + ")");
+                }
+                return;
+
+            case "close":
+                closeStore();
+                return;
+
+            default:
+                break;
+        }
+
+        if (store == null) {
+            err.println("Error: no store opened, use `store open <storePath>`");
+            return;
+        }
+
+        if (args[0].equals("find") && args.length > 1) {
+            List<Node> nodes = new ArrayList<>();
+            if (args.length == 2 && !args[1].contains(":")) {
+                Node node = store.findNode(args[1]);
+                if (node != null)
+                    nodes.add(node);
+            } else {
+                HashMap<String, Property<?>> properties = getNextProperties(args, 1);
+                if (properties == null)
+                    return;
+                nodes = store.findNodes(properties);
+            }
+            printStoreNodes(nodes);
+        } else if (args[0].equals("neighbours") && args.length == 2) {
+            Node node = store.findNode(args[1]);
+            if (node == null) {
+                err.println("Error: no corresponding nodes found");
+                return;
+            }
+            printStoreNodes(store.getNeighbours(node));
+        } else if (args[0].equals("search") && args.length == 1) {
+            KnowledgeGraph result = store.search(query ? graph : querygraph);
+            printStoreNodes(result.getNodes());
+            for (Link link : result.getLinks()) {
+                out.println(link.toDetailedString(null));
+                out.println("===================");
+            }
+        } else {
+            err.println("Syntax error. Use `store <write|open> <storePath>`, `store find <ID> | [Attribute name]:[Attribute value]...`, "
+                    + "`store neighbours <ID>`, `store search` or `store close`");
+        }
+    }
+
+    private void printStoreNodes(List<Node> nodes) {
+        if (nodes.isEmpty()) {
+            err.println("Error: no corresponding nodes found");
+            return;
+        }
+        out.println("Corresponding nodes\n===================");
+        for (Node node : nodes) {
+            out.print(node.toDetailedString());
+            out.println("===================");
+        }
+    }
+
+    private void closeStore() {
+        if (store == null)
+            return;
+        try {
+            store.close();
+        } catch (IOException e) {
+            err.println("Error: could not close store (" + e.getMessage() + ")");
+        }
+        store = null;
+    }
+
+    private void checkpoint() {
+        KnowledgeGraph dataGraph = query ? querygraph : graph;
+        WriteAheadLog log = dataGraph.getWriteAheadLog();
+        if (log == null || snapshotPath == null) {
+            err.println("Error: no write-ahead log enabled");
+            return;
+        }
+
+        try {
+            log.checkpoint(dataGraph, snapshotPath);
+            info.println("Graph saved to " + snapshotPath + ", log truncated");
+        } catch (IOException e) {
+            err.println("Error: could not checkpoint graph (" + e.getMessage() + ")");
+        }
+    }
+
+    private void cacheGraph(String[] args) {
+        if (args.length == 2) {
+            try {
+                graph.setResultCacheSize(Integer.parseInt(args[1]));
+            } catch (IllegalArgumentException e) {
+                err.println("Error: invalid cache size " + args[1]);
+                return;
+            }
+        } else if (args.length != 1) {
+            err.println("Syntax error. Use `graph cache [size]`");
+            return;
+        }
+        out.println("Result cache: " + graph.getCachedResults() + "/" + graph.getResultCacheSize() + " results, "
+                + graph.getCacheHits() + " hits, " + graph.getCacheMisses() + " misses");
+    }
+
+    private void textIndexGraph(String[] args) {
+        if (args.length == 2 && (args[1].equals("on") || args[1].equals("off"))) {
+            graph.setIndexText(args[1].equals("on"));
+            info.println("Text index " + (graph.isIndexingText() ? "enabled" : "disabled"));
+        } else {
+            err.println("Syntax error. Use `graph text <on|off>`");
+        }
+    }
+
+    private void rangeIndexGraph(String[] args) {
+        if (args.length == 3 && (args[2].equals("on") || args[2].equals("off"))) {
+            graph.setRangeIndexed(args[1], args[2].equals("on"));
+            info.println("Range index of " + args[1] + " " + (graph.isRangeIndexed(args[1]) ? "enabled" : "disabled"));
+        } else {
+            err.println("Syntax error. Use `graph range <property> <on|off>`");
+        }
+    }
+
+    private void indexGraph(String[] args) {
+        if (args.length == 2 && (args[1].equals("on") || args[1].equals("off"))) {
+            graph.setIndexProperties(args[1].equals("on"));
+            info.println("Property index " + (graph.isIndexingProperties() ? "enabled" : "disabled"));
         } else {
-            System.err.println("Syntax error. Use `graph import <URI>`");
+            err.println("Syntax error. Use `graph index <on|off>`");
         }
     }
 
-    private static void getNextProperties(HashMap<String, Property<?>> base, String[] args, int basePointer) {
+    private void getNextProperties(HashMap<String, Property<?>> base, String[] args, int basePointer) {
         HashMap<String, Property<?>> toAdd = getNextProperties(args, basePointer);
         if (toAdd != null) {
             for (int i = 0; i < toAdd.size(); ++i) {
@@ -427,7 +1096,7 @@ public class QueryInterpretor {
     private boolean getSearch(HashMap<String, Property<?>> properties) {
         for (String key : properties.keySet()) {
             if (key.equalsIgnoreCase("search")) {
-                boolean isTrue = properties.get(key).getValue().equals("true");
+                boolean isTrue = properties.get(key).toString().equals("true");
                 properties.remove(key, properties.get(key));
                 if (isTrue) {
                     return true;
@@ -437,7 +1106,7 @@ public class QueryInterpretor {
         return false;
     }
 
-    private static HashMap<String, Property<?>> getNextProperties(String[] args, int basePointer) {
+    private HashMap<String, Property<?>> getNextProperties(String[] args, int basePointer) {
         if (args.length <= basePointer) {
             return null;
         }
@@ -447,23 +1116,24 @@ public class QueryInterpretor {
         for (int i = basePointer; i < args.length; ++i) {
             String[] parsedString = args[i].split(":");
             if (parsedString.length != 2) {
-                System.out.println("Error: bad query arguments");
+                err.println("Error: bad query arguments");
                 return null;
             }
-            res.put(parsedString[0], new Property<>(parsedString[1]));
+            res.put(parsedString[0], Property.parse(parsedString[1]));
         }
 
         return res;
     }
 
-    private static void printHelp() {
+    private void printHelp() {
         String[] helpString = {
                 "Query help:",
                 "",
                 "help",
                 "node add <NodeType> [Attribute name]:[Attribute value]",
-                "node del [ID] | [Attribute1 name]:[Attribute1 value] [Attribute2 name]:[Attribute2 value]...",
-                "node find [ID] | [Attribute1 name]:[Attribute1 value] [Attribute2 name]:[Attribute2 value]...",
+                "node del [ID] | [isa:<ConceptID>] [Attribute1 name]:[Attribute1 value] [Attribute2 name]>[Attribute2 bound] [bound1]<=[Attribute3 name]<[bound2]...",
+                "node find [ID] | [isa:<ConceptID>] [Attribute1 name]:[Attribute1 value] [Attribute2 name]>[Attribute2 bound] [bound1]<=[Attribute3 name]<[bound2]...",
+                "node search <text>",
                 "node list",
                 "link add <LinkType> [Link Mandatory Property] <IDNode1> <IDNode2> [LinkName]",
                 "link del <LinkType> [Link Mandatory Property] <IDNode1> <IDNode2> [LinkName]",
@@ -474,13 +1144,31 @@ public class QueryInterpretor {
                 "clear",
                 "graph import <graphPath>",
                 "graph export <graphPath>",
-                "graph path <IDNode1> <IDNode2>",
+                "graph save <graphPath>",
+                "graph load <graphPath>",
+                "graph index <on|off>",
+                "graph range <property> <on|off>",
+                "graph text <on|off>",
+                "graph cache [size]",
+                "graph inheritance <eager|lazy>",
+                "graph parallelism <threads>",
+                "graph path <IDNode1> <IDNode2> [dijkstra|bidirectional|astar]",
+                "graph checkpoint",
+                "store write <storePath>",
+                "store open <storePath>",
+                "store find [ID] | [Attribute1 name]:[Attribute1 value]...",
+                "store neighbours <ID>",
+                "store search",
+                "store close",
+                "run <scriptPath>",
+                "server start <port> [<address>]",
+                "server stop",
                 "display",
                 "exit"
         };
 
         for (String str : helpString) {
-            System.out.println(str);
+            out.println(str);
         }
     }
 
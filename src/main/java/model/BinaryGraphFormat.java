@@ -0,0 +1,117 @@
+package model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary graph format, version 1 :
+ *
+ * <pre>
+ * header     : 'K' 'G' 'B' version(byte)
+ * dictionary : count(varint) { length(varint) utf8 bytes }
+ * nodes      : count(varint) { flags(byte) id properties }
+ *              id is a varint when FLAG_NUMERIC_ID is set, a dictionary index otherwise
+ * properties : count(varint) { key(dictionary index) tag(byte) value }
+ * links      : count(varint) { type(byte) flags(byte) from(node rank) to(node rank) name(dictionary index) [weight(double)] }
+ * </pre>
+ *
+ * Varints are unsigned LEB128, signed integers are zigzag encoded first.
+ */
+final class BinaryGraphFormat {
+    static final byte[] MAGIC = {'K', 'G', 'B'};
+    static final byte VERSION = 1;
+
+    // node flags
+    static final int FLAG_CONCEPT = 1;
+    static final int FLAG_SEARCH = 1 << 1;
+    static final int FLAG_NUMERIC_ID = 1 << 2;
+
+    // link flags (FLAG_SEARCH is shared)
+    static final int FLAG_ORIENTED = 1;
+    static final int FLAG_WEIGHTED = 1 << 2;
+
+    // property value tags
+    static final byte TAG_NULL = 0;
+    static final byte TAG_STRING = 1;
+    static final byte TAG_INT = 2;
+    static final byte TAG_LONG = 3;
+    static final byte TAG_DOUBLE = 4;
+    static final byte TAG_FLOAT = 5;
+    static final byte TAG_TRUE = 6;
+    static final byte TAG_FALSE = 7;
+    static final byte TAG_BIG_INTEGER = 8;
+    static final byte TAG_BIG_DECIMAL = 9;
+    static final byte TAG_JSON_OBJECT = 10;
+    static final byte TAG_JSON_ARRAY = 11;
+
+    static final String[] LINK_TYPES = {"AKO", "ASSOCIATION", "COMPOSITION", "INSTANCE"};
+
+    private BinaryGraphFormat() {}
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * @return true if the id is the canonical decimal writing of a positive int
+     */
+    static boolean isNumericId(String id) {
+        if (id.isEmpty() || id.length() > 9 || (id.length() > 1 && id.charAt(0) == '0'))
+            return false;
+        for (int i = 0; i < id.length(); ++i)
+            if (id.charAt(i) < '0' || id.charAt(i) > '9')
+                return false;
+        return true;
+    }
+}
@@ -0,0 +1,157 @@
+package model;
+
+import model.link.Link;
+import model.node.Node;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static model.BinaryGraphFormat.*;
+
+/**
+ * Reads a KnowledgeGraph written in the binary graph format (see BinaryGraphFormat)
+ */
+public class BinaryGraphReader {
+    private final DataInputStream in;
+
+    private String[] dictionary;
+
+    /**
+     * @param in InputStream     Source, not closed by the reader
+     */
+    public BinaryGraphReader(InputStream in) {
+        this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+    }
+
+    /**
+     * @param inherit         boolean         Property inheritance of the graph
+     * @param lazyInheritance boolean         Inheritance resolved at read time
+     * @return Graph
+     * @throws IOException Read error or bad format
+     */
+    public KnowledgeGraph read(boolean inherit, boolean lazyInheritance) throws IOException {
+        for (byte b : MAGIC)
+            if (in.readByte() != b)
+                throw new IOException("Not a binary graph file");
+        byte version = in.readByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported binary graph version " + version);
+
+        dictionary = new String[readVarInt(in)];
+        for (int i = 0; i < dictionary.length; ++i)
+            dictionary[i] = readString();
+
+        KnowledgeGraph graph = new KnowledgeGraph(inherit);
+        graph.setLazyInheritance(lazyInheritance);
+
+        int maxId = 0;
+        Node[] nodes = new Node[readVarInt(in)];
+        for (int i = 0; i < nodes.length; ++i) {
+            int flags = in.readUnsignedByte();
+            String id;
+            if ((flags & FLAG_NUMERIC_ID) != 0) {
+                int numericId = readVarInt(in);
+                maxId = Math.max(maxId, numericId);
+                id = Integer.toString(numericId);
+            } else {
+                id = word(readVarInt(in));
+            }
+
+            int propertyCount = readVarInt(in);
+            Map<String, Property<?>> properties = new PropertyMap();
+            for (int j = 0; j < propertyCount; ++j) {
+                String key = word(readVarInt(in));
+                properties.put(key, Property.of(readValue()));
+            }
+
+            nodes[i] = Node.of((flags & FLAG_CONCEPT) != 0 ? "CONCEPT" : "INSTANCE",
+                    properties, id, (flags & FLAG_SEARCH) != 0);
+            graph.addNodes(nodes[i]);
+        }
+        Node.setNextId(maxId + 1);
+
+        int linkCount = readVarInt(in);
+        for (int i = 0; i < linkCount; ++i) {
+            int type = in.readUnsignedByte();
+            int flags = in.readUnsignedByte();
+            Node from = node(nodes, readVarInt(in));
+            Node to = node(nodes, readVarInt(in));
+            String name = word(readVarInt(in));
+            if (type >= LINK_TYPES.length)
+                throw new IOException("Invalid link type " + type);
+
+            Link link = Link.of(LINK_TYPES[type], name, (flags & FLAG_ORIENTED) != 0);
+            if (!link.getName().equals(name))
+                link.setName(name);
+            link.setSearch((flags & FLAG_SEARCH) != 0);
+            if ((flags & FLAG_WEIGHTED) != 0) {
+                try {
+                    link.setWeight(in.readDouble());
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(e.getMessage());
+                }
+            }
+            graph.addLink(from, to, link);
+        }
+
+        return graph;
+    }
+
+    private Object readValue() throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return JSONObject.NULL;
+            case TAG_STRING:
+                return word(readVarInt(in));
+            case TAG_INT:
+                return unzigzag(readVarInt(in));
+            case TAG_LONG:
+                return unzigzag(readVarLong(in));
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_FLOAT:
+                return in.readFloat();
+            case TAG_TRUE:
+                return true;
+            case TAG_FALSE:
+                return false;
+            case TAG_BIG_INTEGER:
+                return new BigInteger(readString());
+            case TAG_BIG_DECIMAL:
+                return new BigDecimal(readString());
+            case TAG_JSON_OBJECT:
+                return new JSONObject(readString());
+            case TAG_JSON_ARRAY:
+                return new JSONArray(readString());
+            default:
+                throw new IOException("Invalid property tag " + tag);
+        }
+    }
+
+    private String readString() throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private String word(int index) throws IOException {
+        if (index < 0 || index >= dictionary.length)
+            throw new IOException("Invalid dictionary index " + index);
+        return dictionary[index];
+    }
+
+    private static Node node(Node[] nodes, int rank) throws IOException {
+        if (rank < 0 || rank >= nodes.length)
+            throw new IOException("Invalid node rank " + rank);
+        return nodes[rank];
+    }
+}
@@ -0,0 +1,161 @@
+package model;
+
+import model.link.Link;
+import model.node.ConceptNode;
+import model.node.Node;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static model.BinaryGraphFormat.*;
+
+/**
+ * Writes a KnowledgeGraph in the binary graph format (see BinaryGraphFormat)
+ */
+public class BinaryGraphWriter {
+    private final DataOutputStream out;
+
+    /**
+     * String -> dictionary index
+     */
+    private final Map<String, Integer> dictionary;
+
+    /**
+     * @param out OutputStream    Destination, not closed by the writer
+     */
+    public BinaryGraphWriter(OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        this.dictionary = new LinkedHashMap<>();
+    }
+
+    /**
+     * @param graph KnowledgeGraph  Graph to write
+     * @throws IOException Write error
+     */
+    public void write(KnowledgeGraph graph) throws IOException {
+        for (Node node : graph.getNodes()) {
+            if (!isNumericId(node.getId()))
+                intern(node.getId());
+            for (Map.Entry<String, Property<?>> property : node.getProperties().entrySet()) {
+                intern(property.getKey());
+                Object value = property.getValue().getValue();
+                if (value instanceof String)
+                    intern((String) value);
+            }
+        }
+        for (Link link : graph.getLinks())
+            intern(link.getName());
+
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+
+        writeVarInt(out, dictionary.size());
+        for (String string : dictionary.keySet()) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(out, bytes.length);
+            out.write(bytes);
+        }
+
+        Map<String, Integer> ranks = new HashMap<>();
+        writeVarInt(out, graph.getNodes().size());
+        for (Node node : graph.getNodes()) {
+            ranks.put(node.getId(), ranks.size());
+            writeNode(node);
+        }
+
+        writeVarInt(out, graph.getLinks().size());
+        for (Link link : graph.getLinks()) {
+            byte type = GraphSnapshot.typeOf(link);
+            if (type == GraphSnapshot.OTHER)
+                throw new IOException("Unsupported link type " + link.getClass().getName());
+
+            int flags = (link.isOriented() ? FLAG_ORIENTED : 0)
+                      | (link.isSearched() ? FLAG_SEARCH : 0)
+                      | (link.getWeight() != 1 ? FLAG_WEIGHTED : 0);
+            out.writeByte(type);
+            out.writeByte(flags);
+            writeVarInt(out, ranks.get(link.getFrom().getId()));
+            writeVarInt(out, ranks.get(link.getTo().getId()));
+            writeVarInt(out, dictionary.get(link.getName()));
+            if (link.getWeight() != 1)
+                out.writeDouble(link.getWeight());
+        }
+
+        out.flush();
+    }
+
+    private void writeNode(Node node) throws IOException {
+        boolean numericId = isNumericId(node.getId());
+        int flags = (node instanceof ConceptNode ? FLAG_CONCEPT : 0)
+                  | (node.isSearched() ? FLAG_SEARCH : 0)
+                  | (numericId ? FLAG_NUMERIC_ID : 0);
+        out.writeByte(flags);
+        writeVarInt(out, numericId ? Integer.parseInt(node.getId()) : dictionary.get(node.getId()));
+
+        writeVarInt(out, node.getProperties().size());
+        for (Map.Entry<String, Property<?>> property : node.getProperties().entrySet()) {
+            writeVarInt(out, dictionary.get(property.getKey()));
+            writeValue(property.getValue().getValue());
+        }
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null || value == JSONObject.NULL) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(TAG_STRING);
+            writeVarInt(out, dictionary.get(value));
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte(TAG_INT);
+            writeVarInt(out, zigzag(((Number) value).intValue()));
+        } else if (value instanceof Long) {
+            out.writeByte(TAG_LONG);
+            writeVarLong(out, zigzag((long) (Long) value));
+        } else if (value instanceof Double) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(TAG_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof BigInteger) {
+            out.writeByte(TAG_BIG_INTEGER);
+            writeString(value.toString());
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(TAG_BIG_DECIMAL);
+            writeString(value.toString());
+        } else if (value instanceof JSONObject) {
+            out.writeByte(TAG_JSON_OBJECT);
+            writeString(value.toString());
+        } else if (value instanceof JSONArray) {
+            out.writeByte(TAG_JSON_ARRAY);
+            writeString(value.toString());
+        } else {
+            throw new IOException("Unsupported property type " + value.getClass().getName());
+        }
+    }
+
+    /**
+     * Writes a string outside of the dictionary
+     */
+    private void writeString(String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private void intern(String string) {
+        dictionary.putIfAbsent(string, dictionary.size());
+    }
+}
@@ -0,0 +1,48 @@
+package model;
+
+/**
+ * Property holding an unboxed boolean
+ */
+public final class BooleanProperty extends Property<Boolean> {
+    private boolean value;
+
+    public BooleanProperty(boolean value) {
+        this.value = value;
+    }
+
+    public boolean getBoolean() {
+        return value;
+    }
+
+    @Override
+    void store(Boolean value) {
+        this.value = value;
+    }
+
+    @Override
+    public Boolean getValue() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other instanceof BooleanProperty)
+            return value == ((BooleanProperty) other).value;
+        return super.equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return Boolean.hashCode(value);
+    }
+
+    @Override
+    public String toString() {
+        return Boolean.toString(value);
+    }
+
+    @Override
+    public BooleanProperty clone() {
+        return (BooleanProperty) super.clone();
+    }
+}
@@ -0,0 +1,48 @@
+package model;
+
+/**
+ * Property holding an unboxed double
+ */
+public final class DoubleProperty extends Property<Double> {
+    private double value;
+
+    public DoubleProperty(double value) {
+        this.value = value;
+    }
+
+    public double getDouble() {
+        return value;
+    }
+
+    @Override
+    void store(Double value) {
+        this.value = value;
+    }
+
+    @Override
+    public Double getValue() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other instanceof DoubleProperty)
+            return Double.doubleToLongBits(value) == Double.doubleToLongBits(((DoubleProperty) other).value);
+        return super.equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return Double.hashCode(value);
+    }
+
+    @Override
+    public String toString() {
+        return Double.toString(value);
+    }
+
+    @Override
+    public DoubleProperty clone() {
+        return (DoubleProperty) super.clone();
+    }
+}
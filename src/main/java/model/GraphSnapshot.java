@@ -0,0 +1,230 @@
+package model;
+
+import model.link.AkoLink;
+import model.link.AssociationLink;
+import model.link.CompositionLink;
+import model.link.InstanceLink;
+import model.link.Link;
+import model.node.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable compressed sparse row (CSR) copy of a KnowledgeGraph.
+ *
+ * Nodes get dense int ids in [0, getNodeCount()[. The edges of node `n` are
+ * stored in [getFirstEdge(n), getEndEdge(n)[ : every link appears once on its
+ * origin (outgoing) and once on its destination (incoming), self-loops once.
+ * Reading the adjacency never allocates.
+ */
+public class GraphSnapshot {
+    public static final byte AKO = 0;
+    public static final byte ASSOCIATION = 1;
+    public static final byte COMPOSITION = 2;
+    public static final byte INSTANCE = 3;
+    public static final byte OTHER = 4;
+
+    /**
+     * Set on edge types when the edge goes from the node to its target
+     */
+    public static final byte OUTGOING = 0x10;
+
+    private static final byte TYPE_MASK = 0x0F;
+
+    private final Node[] nodes;
+    private final Map<String, Integer> indexById;
+
+    private final int[] offsets;
+    private final int[] targets;
+    private final byte[] types;
+    private final double[] weights;
+    private final Link[] links;
+
+    /**
+     * true if every link has a weight of 1
+     */
+    private final boolean unweighted;
+
+    GraphSnapshot(List<Node> graphNodes, List<Link> graphLinks) {
+        int nodeCount = graphNodes.size();
+        nodes = graphNodes.toArray(new Node[0]);
+        indexById = new HashMap<>(nodeCount * 2);
+        for (int i = 0; i < nodeCount; ++i)
+            indexById.put(nodes[i].getId(), i);
+
+        // degrees
+        offsets = new int[nodeCount + 1];
+        List<Link> kept = new ArrayList<>(graphLinks.size());
+        for (Link link : graphLinks) {
+            Integer from = indexById.get(link.getFrom().getId());
+            Integer to = indexById.get(link.getTo().getId());
+            if (from == null || to == null)
+                continue;
+            kept.add(link);
+            offsets[from + 1]++;
+            if (!from.equals(to))
+                offsets[to + 1]++;
+        }
+        for (int i = 0; i < nodeCount; ++i)
+            offsets[i + 1] += offsets[i];
+
+        // edges
+        int edgeCount = offsets[nodeCount];
+        targets = new int[edgeCount];
+        types = new byte[edgeCount];
+        weights = new double[edgeCount];
+        links = new Link[edgeCount];
+        boolean unitWeights = true;
+        int[] cursor = Arrays.copyOf(offsets, nodeCount);
+        for (Link link : kept) {
+            int from = indexById.get(link.getFrom().getId());
+            int to = indexById.get(link.getTo().getId());
+            byte type = typeOf(link);
+            double weight = link.getWeight();
+            unitWeights &= weight == 1;
+
+            int edge = cursor[from]++;
+            targets[edge] = to;
+            types[edge] = (byte) (type | OUTGOING);
+            weights[edge] = weight;
+            links[edge] = link;
+
+            if (from != to) {
+                edge = cursor[to]++;
+                targets[edge] = from;
+                types[edge] = type;
+                weights[edge] = weight;
+                links[edge] = link;
+            }
+        }
+        unweighted = unitWeights;
+    }
+
+    /**
+     * @param link Link
+     * @return Type code of the link (AKO, ASSOCIATION, COMPOSITION, INSTANCE or OTHER)
+     */
+    public static byte typeOf(Link link) {
+        if (link instanceof AkoLink)
+            return AKO;
+        if (link instanceof AssociationLink)
+            return ASSOCIATION;
+        if (link instanceof CompositionLink)
+            return COMPOSITION;
+        if (link instanceof InstanceLink)
+            return INSTANCE;
+        return OTHER;
+    }
+
+    public int getNodeCount() {
+        return nodes.length;
+    }
+
+    /**
+     * @return Number of edges (each link counts once per distinct extremity)
+     */
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * @param id Node ID
+     * @return Dense index of the node, -1 if absent
+     */
+    public int indexOf(String id) {
+        Integer index = indexById.get(id);
+        return index == null ? -1 : index;
+    }
+
+    public int indexOf(Node node) {
+        return indexOf(node.getId());
+    }
+
+    public Node getNode(int node) {
+        return nodes[node];
+    }
+
+    public int getDegree(int node) {
+        return offsets[node + 1] - offsets[node];
+    }
+
+    public int getFirstEdge(int node) {
+        return offsets[node];
+    }
+
+    public int getEndEdge(int node) {
+        return offsets[node + 1];
+    }
+
+    /**
+     * @param node Dense node index
+     * @param i    Neighbour rank in [0, getDegree(node)[
+     * @return Dense index of the i-th neighbour
+     */
+    public int getNeighbour(int node, int i) {
+        return targets[offsets[node] + i];
+    }
+
+    public int getTarget(int edge) {
+        return targets[edge];
+    }
+
+    public byte getType(int edge) {
+        return (byte) (types[edge] & TYPE_MASK);
+    }
+
+    public boolean isOutgoing(int edge) {
+        return (types[edge] & OUTGOING) != 0;
+    }
+
+    public double getWeight(int edge) {
+        return weights[edge];
+    }
+
+    /**
+     * @return true if every link has a weight of 1
+     */
+    public boolean isUnweighted() {
+        return unweighted;
+    }
+
+    public Link getLink(int edge) {
+        return links[edge];
+    }
+
+    /**
+     * Breadth-first traversal ignoring link orientation, like Node.getNeighbours.
+     * Uses caller-provided buffers so that repeated traversals do not allocate.
+     *
+     * @param source    Dense index of the source node
+     * @param distances int[]       Filled with the hop count from source, -1 if unreachable (size >= getNodeCount())
+     * @param parents   int[]       Filled with the previous node on a shortest path, -1 for none (size >= getNodeCount())
+     * @param queue     int[]       Work buffer (size >= getNodeCount())
+     * @return Number of reached nodes
+     */
+    public int bfs(int source, int[] distances, int[] parents, int[] queue) {
+        Arrays.fill(distances, 0, nodes.length, -1);
+        Arrays.fill(parents, 0, nodes.length, -1);
+
+        int head = 0;
+        int tail = 0;
+        distances[source] = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            int node = queue[head++];
+            for (int edge = offsets[node]; edge < offsets[node + 1]; ++edge) {
+                int target = targets[edge];
+                if (distances[target] == -1) {
+                    distances[target] = distances[node] + 1;
+                    parents[target] = node;
+                    queue[tail++] = target;
+                }
+            }
+        }
+        return tail;
+    }
+}
@@ -0,0 +1,126 @@
+package model;
+
+import model.node.Node;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable state of a KnowledgeGraph at a given version, obtained with KnowledgeGraph.pin().
+ *
+ * Every reader pinning the same version shares the same read-only copy of the graph, and reads
+ * it without any lock while writers keep modifying the original graph. Nodes and links returned
+ * by a version are its own copies (same ids as in the graph). Once the graph has moved to a newer
+ * version, a version is reclaimed as soon as its last reader closes it.
+ *
+ * Versions share no structure with the graph nor with one another : nodes and links refer to each
+ * other directly, so that a copied node is only consistent within a copy of its whole component.
+ * Taking a version costs a copy of the graph, O(nodes + links), amortized over its readers
+ * (see KnowledgeGraph.pin(long)).
+ */
+public class GraphVersion implements AutoCloseable {
+    private final long version;
+
+    /**
+     * System.nanoTime() when the version was taken
+     */
+    private final long creationTime = System.nanoTime();
+
+    /**
+     * Read-only copy of the graph, null once reclaimed
+     */
+    private KnowledgeGraph graph;
+
+    private int pins;
+
+    /**
+     * true once a newer version has been published
+     */
+    private boolean retired;
+
+    GraphVersion(long version, KnowledgeGraph graph) {
+        this.version = version;
+        this.graph = graph;
+    }
+
+    /**
+     * @return Modification count of the graph this version was taken at
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return System.nanoTime() when the version was taken
+     */
+    long getCreationTime() {
+        return creationTime;
+    }
+
+    /**
+     * @return Read-only graph (every modification throws UnsupportedOperationException)
+     * @throws IllegalStateException Version already reclaimed
+     */
+    public synchronized KnowledgeGraph getGraph() {
+        if (graph == null)
+            throw new IllegalStateException("Graph version " + version + " has been released");
+        return graph;
+    }
+
+    public Node findNode(String id) {
+        return getGraph().findNode(id);
+    }
+
+    public List<Node> findNodes(Map<String, Property<?>> properties) {
+        return getGraph().findNodes(properties);
+    }
+
+    public KnowledgeGraph search(KnowledgeGraph searchedGraph) {
+        return getGraph().search(searchedGraph);
+    }
+
+    public List<Map<Node, Node>> findMatches(KnowledgeGraph searchedGraph) {
+        return getGraph().findMatches(searchedGraph);
+    }
+
+    /**
+     * @param originId      Origin node ID
+     * @param destinationId Destination node ID
+     * @param mode          Search algorithm
+     * @return Nodes of the path in this version, empty if a node is absent or unreachable
+     */
+    public List<Node> shortestPath(String originId, String destinationId, PathFinder.Mode mode) {
+        KnowledgeGraph graph = getGraph();
+        Node origin = graph.findNode(originId);
+        Node destination = graph.findNode(destinationId);
+        if (origin == null || destination == null)
+            return Collections.emptyList();
+        return graph.shortestPath(origin, destination, mode);
+    }
+
+    /**
+     * @return false if the version has already been reclaimed
+     */
+    synchronized boolean pin() {
+        if (graph == null)
+            return false;
+        pins++;
+        return true;
+    }
+
+    synchronized void retire() {
+        retired = true;
+        if (pins == 0)
+            graph = null;
+    }
+
+    /**
+     * Releases the version, reclaimed when it is no longer the latest one and no reader holds it
+     */
+    @Override
+    public synchronized void close() {
+        if (pins > 0 && --pins == 0 && retired)
+            graph = null;
+    }
+}
@@ -0,0 +1,593 @@
+package model;
+
+import model.link.AkoLink;
+import model.link.InstanceLink;
+import model.link.Link;
+import model.node.ConceptNode;
+import model.node.InstanceNode;
+import model.node.Node;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reachability index of the concept hierarchy : AKO links, from the super-concept to the sub-concept,
+ * and instance links between a concept and its instances.
+ *
+ * Concepts are numbered in the post-order of a depth-first traversal started from the roots, the
+ * concepts of an AKO cycle sharing the same number. The sub-concepts of a concept then span a few
+ * intervals of numbers, a single one under single inheritance, so that subsumption is a range check.
+ * Instances are not numbered : they are reached through the instance links of their concepts.
+ *
+ * The numbering is computed on first use, then kept up to date as concepts and AKO links are added
+ * or removed : a new concept takes the next number, and a new AKO link adds the intervals of the
+ * sub-concept to the ones of the super-concept and of its ancestors. A removed concept leaves its number
+ * unused, and a removed AKO link or concept has the intervals of the ancestors it was under merged again
+ * from their remaining sub-concepts. Both cost the number of ancestors instead of the size of the
+ * hierarchy. The numbering is computed again on first use after an AKO link closing a cycle, a removal
+ * inside a cycle, or once the additions have split the intervals too much.
+ */
+class HierarchyIndex {
+    private final List<Node> nodes;
+    private final Map<String, Node> nodesById;
+
+    /**
+     * Numbering of the current hierarchy, null once invalidated
+     */
+    private volatile Labels labels;
+
+    /**
+     * @param nodes     List            Nodes of the graph
+     * @param nodesById Map             Nodes of the graph by id
+     */
+    HierarchyIndex(List<Node> nodes, Map<String, Node> nodesById) {
+        this.nodes = nodes;
+        this.nodesById = nodesById;
+    }
+
+    private static final int[] NO_INTERVALS = new int[0];
+
+    /**
+     * Drops the numbering, computed again on first use
+     */
+    void invalidate() {
+        labels = null;
+    }
+
+    /**
+     * Called when a concept leaves the graph, its links being left as they are
+     *
+     * @param concept Node            Removed concept
+     */
+    void removeConcept(Node concept) {
+        Labels current = labels;
+        if (current == null)
+            return;
+
+        Integer number = current.numbers.get(concept);
+        if (number == null)
+            return;
+        // a cycle may split : renumber
+        if (current.members[number].length > 1) {
+            invalidate();
+            return;
+        }
+
+        current.numbers.remove(concept);
+        current.members[number] = new Node[0];
+        current.replace(number, NO_INTERVALS);
+        Set<Integer> affected = new HashSet<>();
+        for (Link link : concept.getLinks(AkoLink.class))
+            if (link.getTo().equals(concept) && current.numbers.containsKey(link.getFrom()))
+                affected.addAll(ancestors(current, link.getFrom()));
+        shrink(current, affected);
+    }
+
+    /**
+     * Called when an AKO link leaves the graph, after it has been detached from its extremities
+     *
+     * @param link Link            Removed AKO link, from the super-concept to the sub-concept
+     */
+    void removeAko(Link link) {
+        Labels current = labels;
+        if (current == null)
+            return;
+
+        Integer parent = current.numbers.get(link.getFrom());
+        Integer child = current.numbers.get(link.getTo());
+        if (parent == null || child == null)
+            return;
+        // a cycle may split : renumber
+        if (parent.equals(child)) {
+            invalidate();
+            return;
+        }
+
+        shrink(current, ancestors(current, link.getFrom()));
+    }
+
+    /**
+     * Merges again the intervals of components from their remaining sub-components, the sub-components
+     * first. Components outside the affected ones keep their intervals.
+     *
+     * @param labels   Labels          Current numbering
+     * @param affected Set             Components whose sub-concepts may have been removed, with their ancestors
+     */
+    private void shrink(Labels labels, Set<Integer> affected) {
+        Set<Integer> merged = new HashSet<>();
+        Set<Integer> visiting = new HashSet<>();
+        Deque<Integer> pending = new ArrayDeque<>();
+        for (int start : affected) {
+            pending.push(start);
+            while (!pending.isEmpty()) {
+                int component = pending.peek();
+                if (merged.contains(component)) {
+                    pending.pop();
+                    continue;
+                }
+
+                List<Integer> children = children(labels, component);
+                boolean ready = true;
+                for (int child : children) {
+                    if (affected.contains(child) && !merged.contains(child)) {
+                        // a cycle between components : renumber
+                        if (visiting.contains(child)) {
+                            invalidate();
+                            return;
+                        }
+                        pending.push(child);
+                        ready = false;
+                    }
+                }
+                if (!ready) {
+                    visiting.add(component);
+                    continue;
+                }
+
+                pending.pop();
+                visiting.remove(component);
+                List<int[]> ranges = new ArrayList<>();
+                ranges.add(new int[]{component, component});
+                for (int child : children) {
+                    int[] childIntervals = labels.intervals[child];
+                    for (int i = 0; i < childIntervals.length; i += 2)
+                        ranges.add(new int[]{childIntervals[i], childIntervals[i + 1]});
+                }
+                labels.replace(component, merge(ranges));
+                merged.add(component);
+            }
+        }
+    }
+
+    /**
+     * @return Components of the sub-concepts of the members of a component, through the AKO links
+     */
+    private static List<Integer> children(Labels labels, int component) {
+        Set<Integer> children = new LinkedHashSet<>();
+        for (Node member : labels.members[component]) {
+            for (Link link : member.getLinks(AkoLink.class)) {
+                if (!link.getFrom().equals(member))
+                    continue;
+                Integer child = labels.numbers.get(link.getTo());
+                if (child != null && child != component)
+                    children.add(child);
+            }
+        }
+        return new ArrayList<>(children);
+    }
+
+    /**
+     * Called when a concept joins the graph
+     *
+     * @param concept Node            New concept, with the AKO links it already has
+     */
+    void addConcept(Node concept) {
+        Labels current = labels;
+        if (current == null || current.numbers.containsKey(concept))
+            return;
+
+        current.add(concept);
+        for (Link link : concept.getLinks(AkoLink.class))
+            addAko(link);
+    }
+
+    /**
+     * Called when an AKO link joins the graph, after its extremities
+     *
+     * @param link Link            New AKO link, from the super-concept to the sub-concept
+     */
+    void addAko(Link link) {
+        Labels current = labels;
+        if (current == null)
+            return;
+
+        Integer parent = current.numbers.get(link.getFrom());
+        Integer child = current.numbers.get(link.getTo());
+        // links the numbering ignores, or already implied
+        if (parent == null || child == null || current.covers(parent, child))
+            return;
+        // a cycle merges components : renumber
+        if (current.covers(child, parent)) {
+            invalidate();
+            return;
+        }
+
+        int[] added = current.intervals[child];
+        for (int ancestor : ancestors(current, link.getFrom()))
+            current.extend(ancestor, added);
+        if (current.isFragmented())
+            invalidate();
+    }
+
+    /**
+     * @return Numbers of the concept and of its ancestors through the AKO links
+     */
+    private static Set<Integer> ancestors(Labels labels, Node concept) {
+        Set<Integer> numbers = new LinkedHashSet<>();
+        Set<Node> visited = new HashSet<>();
+        Deque<Node> pending = new ArrayDeque<>();
+        visited.add(concept);
+        pending.push(concept);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            numbers.add(labels.numbers.get(node));
+            for (Link link : node.getLinks(AkoLink.class)) {
+                Node parent = link.getFrom();
+                if (link.getTo().equals(node) && labels.numbers.containsKey(parent) && visited.add(parent))
+                    pending.push(parent);
+            }
+        }
+        return numbers;
+    }
+
+    /**
+     * @param node    Node            Concept or instance
+     * @param concept Node            Concept
+     * @return true if the node is the concept, one of its sub-concepts or one of their instances
+     */
+    boolean isA(Node node, Node concept) {
+        if (node.equals(concept))
+            return contains(node);
+
+        Labels labels = labels();
+        Integer ancestor = labels.numbers.get(concept);
+        if (ancestor == null)
+            return false;
+
+        if (node instanceof InstanceNode) {
+            if (!contains(node))
+                return false;
+            for (Link link : node.getLinks(InstanceLink.class)) {
+                Integer number = labels.numbers.get(otherEnd(link, node));
+                if (number != null && labels.covers(ancestor, number))
+                    return true;
+            }
+            return false;
+        }
+
+        Integer number = labels.numbers.get(node);
+        return number != null && labels.covers(ancestor, number);
+    }
+
+    /**
+     * @param concept Node            Concept
+     * @return The concept and its sub-concepts, empty if the concept is not in the graph
+     */
+    List<Node> getSubConcepts(Node concept) {
+        Labels labels = labels();
+        Integer ancestor = labels.numbers.get(concept);
+        List<Node> found = new ArrayList<>();
+        if (ancestor == null)
+            return found;
+
+        int[] intervals = labels.intervals[ancestor];
+        for (int i = 0; i < intervals.length; i += 2)
+            for (int number = intervals[i]; number <= intervals[i + 1]; ++number)
+                found.addAll(Arrays.asList(labels.members[number]));
+        return found;
+    }
+
+    /**
+     * @param concept Node            Concept
+     * @return Instances of the concept and of its sub-concepts
+     */
+    List<Node> getInstances(Node concept) {
+        Set<Node> found = new LinkedHashSet<>();
+        for (Node subConcept : getSubConcepts(concept)) {
+            for (Link link : subConcept.getLinks(InstanceLink.class)) {
+                Node instance = otherEnd(link, subConcept);
+                if (instance instanceof InstanceNode && contains(instance))
+                    found.add(instance);
+            }
+        }
+        return new ArrayList<>(found);
+    }
+
+    private boolean contains(Node node) {
+        return nodesById.get(node.getId()) == node;
+    }
+
+    private static Node otherEnd(Link link, Node node) {
+        return link.getFrom().equals(node) ? link.getTo() : link.getFrom();
+    }
+
+    private Labels labels() {
+        Labels current = labels;
+        if (current != null)
+            return current;
+
+        synchronized (this) {
+            if (labels == null)
+                labels = label();
+            return labels;
+        }
+    }
+
+    /**
+     * Numbers the concepts with Tarjan's strongly connected components algorithm, which closes
+     * the components in post-order, then merges the intervals of every component with the ones
+     * of its children, already computed.
+     */
+    private Labels label() {
+        List<Node> concepts = new ArrayList<>();
+        Map<Node, Integer> positions = new HashMap<>();
+        for (Node node : nodes) {
+            if (node instanceof ConceptNode) {
+                positions.put(node, concepts.size());
+                concepts.add(node);
+            }
+        }
+
+        int count = concepts.size();
+        int[][] children = new int[count][];
+        boolean[] hasParent = new boolean[count];
+        for (int i = 0; i < count; ++i) {
+            Node concept = concepts.get(i);
+            List<Link> akoLinks = concept.getLinks(AkoLink.class);
+            int[] targets = new int[akoLinks.size()];
+            int size = 0;
+            for (Link link : akoLinks) {
+                if (!link.getFrom().equals(concept))
+                    continue;
+                Integer child = positions.get(link.getTo());
+                if (child != null && child != i) {
+                    targets[size++] = child;
+                    hasParent[child] = true;
+                }
+            }
+            children[i] = Arrays.copyOf(targets, size);
+        }
+
+        // Roots first, so that every tree is numbered contiguously
+        int[] order = new int[count];
+        int size = 0;
+        for (int i = 0; i < count; ++i)
+            if (!hasParent[i])
+                order[size++] = i;
+        for (int i = 0; i < count; ++i)
+            if (hasParent[i])
+                order[size++] = i;
+
+        int[] component = components(children, order);
+        int componentCount = 0;
+        for (int c : component)
+            componentCount = Math.max(componentCount, c + 1);
+
+        List<List<Node>> members = new ArrayList<>(componentCount);
+        List<Set<Integer>> componentChildren = new ArrayList<>(componentCount);
+        for (int c = 0; c < componentCount; ++c) {
+            members.add(new ArrayList<>());
+            componentChildren.add(new LinkedHashSet<>());
+        }
+        Map<Node, Integer> numbers = new HashMap<>(count * 2);
+        for (int i = 0; i < count; ++i) {
+            numbers.put(concepts.get(i), component[i]);
+            members.get(component[i]).add(concepts.get(i));
+            for (int child : children[i])
+                if (component[child] != component[i])
+                    componentChildren.get(component[i]).add(component[child]);
+        }
+
+        int[][] intervals = new int[Math.max(componentCount, 16)][];
+        Node[][] memberArrays = new Node[intervals.length][];
+        for (int c = 0; c < componentCount; ++c) {
+            List<int[]> ranges = new ArrayList<>();
+            ranges.add(new int[]{c, c});
+            for (int child : componentChildren.get(c)) {
+                int[] childIntervals = intervals[child];
+                for (int i = 0; i < childIntervals.length; i += 2)
+                    ranges.add(new int[]{childIntervals[i], childIntervals[i + 1]});
+            }
+            intervals[c] = merge(ranges);
+            memberArrays[c] = members.get(c).toArray(new Node[0]);
+        }
+        return new Labels(numbers, intervals, memberArrays, componentCount);
+    }
+
+    /**
+     * Iterative Tarjan's algorithm
+     *
+     * @param children int[][]         Children of every vertex
+     * @param order    int[]           Vertices to start the traversals from, in order
+     * @return Component of every vertex, children components numbered before their parents
+     */
+    private static int[] components(int[][] children, int[] order) {
+        int count = children.length;
+        int[] index = new int[count];
+        int[] low = new int[count];
+        int[] component = new int[count];
+        int[] edge = new int[count];
+        boolean[] onStack = new boolean[count];
+        int[] stack = new int[count];
+        int[] calls = new int[count];
+        Arrays.fill(index, -1);
+
+        int counter = 0;
+        int components = 0;
+        int stackSize = 0;
+        for (int start : order) {
+            if (index[start] != -1)
+                continue;
+
+            int callSize = 0;
+            index[start] = low[start] = counter++;
+            stack[stackSize++] = start;
+            onStack[start] = true;
+            calls[callSize++] = start;
+            while (callSize > 0) {
+                int vertex = calls[callSize - 1];
+                if (edge[vertex] < children[vertex].length) {
+                    int child = children[vertex][edge[vertex]++];
+                    if (index[child] == -1) {
+                        index[child] = low[child] = counter++;
+                        stack[stackSize++] = child;
+                        onStack[child] = true;
+                        calls[callSize++] = child;
+                    } else if (onStack[child]) {
+                        low[vertex] = Math.min(low[vertex], index[child]);
+                    }
+                    continue;
+                }
+
+                callSize--;
+                if (callSize > 0)
+                    low[calls[callSize - 1]] = Math.min(low[calls[callSize - 1]], low[vertex]);
+                if (low[vertex] == index[vertex]) {
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        onStack[member] = false;
+                        component[member] = components;
+                    } while (member != vertex);
+                    components++;
+                }
+            }
+        }
+        return component;
+    }
+
+    /**
+     * @return Sorted disjoint intervals, as start and end pairs
+     */
+    private static int[] merge(List<int[]> ranges) {
+        ranges.sort((a, b) -> Integer.compare(a[0], b[0]));
+        int[] merged = new int[ranges.size() * 2];
+        int size = 0;
+        for (int[] range : ranges) {
+            if (size > 0 && range[0] <= merged[size - 1] + 1) {
+                merged[size - 1] = Math.max(merged[size - 1], range[1]);
+            } else {
+                merged[size++] = range[0];
+                merged[size++] = range[1];
+            }
+        }
+        return Arrays.copyOf(merged, size);
+    }
+
+    /**
+     * Numbering of the concepts, only modified under the write lock of the graph
+     */
+    private static final class Labels {
+        /**
+         * Number of every concept (its component, in post-order, then in order of addition)
+         */
+        private final Map<Node, Integer> numbers;
+
+        /**
+         * Numbers of the sub-concepts of every component, as sorted start and end pairs
+         */
+        private int[][] intervals;
+
+        private Node[][] members;
+
+        /**
+         * Number of components
+         */
+        private int count;
+
+        /**
+         * Number of intervals of all the components
+         */
+        private int intervalCount;
+
+        private Labels(Map<Node, Integer> numbers, int[][] intervals, Node[][] members, int count) {
+            this.numbers = numbers;
+            this.intervals = intervals;
+            this.members = members;
+            this.count = count;
+            for (int c = 0; c < count; ++c)
+                intervalCount += intervals[c].length / 2;
+        }
+
+        /**
+         * Numbers a concept without AKO links
+         */
+        private void add(Node concept) {
+            if (count == intervals.length) {
+                intervals = Arrays.copyOf(intervals, count * 2);
+                members = Arrays.copyOf(members, count * 2);
+            }
+            numbers.put(concept, count);
+            intervals[count] = new int[]{count, count};
+            members[count] = new Node[]{concept};
+            count++;
+            intervalCount++;
+        }
+
+        /**
+         * Adds intervals to the ones of a component
+         */
+        private void extend(int component, int[] added) {
+            List<int[]> ranges = new ArrayList<>();
+            int[] current = intervals[component];
+            for (int i = 0; i < current.length; i += 2)
+                ranges.add(new int[]{current[i], current[i + 1]});
+            for (int i = 0; i < added.length; i += 2)
+                ranges.add(new int[]{added[i], added[i + 1]});
+            intervals[component] = merge(ranges);
+            intervalCount += (intervals[component].length - current.length) / 2;
+        }
+
+        /**
+         * Replaces the intervals of a component
+         */
+        private void replace(int component, int[] replacement) {
+            intervalCount += (replacement.length - intervals[component].length) / 2;
+            intervals[component] = replacement;
+        }
+
+        /**
+         * @return true if the additions left much more intervals than a numbering from scratch would
+         */
+        private boolean isFragmented() {
+            return intervalCount > 2 * count + 1024;
+        }
+
+        /**
+         * Constant time under single inheritance, logarithmic in the number of intervals otherwise
+         */
+        private boolean covers(int ancestor, int number) {
+            int[] ranges = intervals[ancestor];
+            int low = 0;
+            int high = ranges.length / 2 - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (number < ranges[2 * middle])
+                    high = middle - 1;
+                else if (number > ranges[2 * middle + 1])
+                    low = middle + 1;
+                else
+                    return true;
+            }
+            return false;
+        }
+    }
+}
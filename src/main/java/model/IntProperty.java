@@ -0,0 +1,48 @@
+package model;
+
+/**
+ * Property holding an unboxed int
+ */
+public final class IntProperty extends Property<Integer> {
+    private int value;
+
+    public IntProperty(int value) {
+        this.value = value;
+    }
+
+    public int getInt() {
+        return value;
+    }
+
+    @Override
+    void store(Integer value) {
+        this.value = value;
+    }
+
+    @Override
+    public Integer getValue() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other instanceof IntProperty)
+            return value == ((IntProperty) other).value;
+        return super.equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(value);
+    }
+
+    @Override
+    public String toString() {
+        return Integer.toString(value);
+    }
+
+    @Override
+    public IntProperty clone() {
+        return (IntProperty) super.clone();
+    }
+}
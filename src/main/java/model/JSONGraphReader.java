@@ -0,0 +1,155 @@
+package model;
+
+import model.link.Link;
+import model.node.Node;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming JSON graph reader.
+ *
+ * Reads the `nodes` and `links` arrays one element at a time and creates the
+ * Node and Link objects directly, so only one element is held as a JSON object at once.
+ * Links may appear before their nodes : they are kept aside until both extremities are known.
+ */
+class JSONGraphReader {
+    private final JSONTokener tokener;
+    private final KnowledgeGraph graph;
+
+    /**
+     * Links whose extremities were not read yet
+     */
+    private final List<PendingLink> pendingLinks;
+
+    private int maxId;
+
+    JSONGraphReader(JSONTokener tokener, boolean inherit, boolean lazyInheritance) {
+        this.tokener = tokener;
+        this.graph = new KnowledgeGraph(inherit);
+        graph.setLazyInheritance(lazyInheritance);
+        this.pendingLinks = new ArrayList<>();
+        this.maxId = 0;
+    }
+
+    /**
+     * @return Graph
+     * @throws JSONException Bad JSON or link to an unknown node
+     */
+    KnowledgeGraph read() throws JSONException {
+        if (tokener.nextClean() != '{')
+            throw tokener.syntaxError("A JSON object text must begin with '{'");
+
+        boolean hasNodes = false;
+        boolean hasLinks = false;
+        char c = tokener.nextClean();
+        if (c != '}') {
+            tokener.back();
+            while (true) {
+                Object key = tokener.nextValue();
+                if (!(key instanceof String))
+                    throw tokener.syntaxError("Expected a key");
+                if (tokener.nextClean() != ':')
+                    throw tokener.syntaxError("Expected a ':' after a key");
+
+                if (key.equals("nodes")) {
+                    readArray(true);
+                    hasNodes = true;
+                } else if (key.equals("links")) {
+                    readArray(false);
+                    hasLinks = true;
+                } else {
+                    tokener.nextValue();
+                }
+
+                c = tokener.nextClean();
+                if (c == '}')
+                    break;
+                if (c != ',')
+                    throw tokener.syntaxError("Expected a ',' or '}'");
+            }
+        }
+
+        if (!hasNodes)
+            throw new JSONException("JSONObject[\"nodes\"] not found.");
+        if (!hasLinks)
+            throw new JSONException("JSONObject[\"links\"] not found.");
+
+        Node.setNextId(maxId + 1);
+
+        for (PendingLink pending : pendingLinks) {
+            if (!addLink(pending.from, pending.to, pending.link))
+                throw new JSONException("Link between unknown nodes " + pending.from + " and " + pending.to);
+        }
+        pendingLinks.clear();
+
+        return graph;
+    }
+
+    private void readArray(boolean nodes) throws JSONException {
+        if (tokener.nextClean() != '[')
+            throw tokener.syntaxError("A JSONArray text must start with '['");
+
+        char c = tokener.nextClean();
+        if (c == ']')
+            return;
+        tokener.back();
+
+        while (true) {
+            Object element = tokener.nextValue();
+            if (!(element instanceof JSONObject))
+                throw tokener.syntaxError("Expected a JSON object");
+            if (nodes)
+                readNode((JSONObject) element);
+            else
+                readLink((JSONObject) element);
+
+            c = tokener.nextClean();
+            if (c == ']')
+                return;
+            if (c != ',')
+                throw tokener.syntaxError("Expected a ',' or ']'");
+        }
+    }
+
+    private void readNode(JSONObject obj) throws JSONException {
+        Node node = Node.fromJSONObject(obj);
+        graph.addNodes(node);
+        maxId = Math.max(maxId, Integer.parseInt(node.getId()));
+    }
+
+    private void readLink(JSONObject obj) throws JSONException {
+        Link link = Link.fromJSONObject(obj);
+        String from = obj.getString("from");
+        String to = obj.getString("to");
+        if (!addLink(from, to, link))
+            pendingLinks.add(new PendingLink(from, to, link));
+    }
+
+    /**
+     * @return false if one of the extremities is unknown
+     */
+    private boolean addLink(String fromId, String toId, Link link) {
+        Node from = graph.findNode(fromId);
+        Node to = graph.findNode(toId);
+        if (from == null || to == null)
+            return false;
+        graph.addLink(from, to, link);
+        return true;
+    }
+
+    private static final class PendingLink {
+        private final String from;
+        private final String to;
+        private final Link link;
+
+        private PendingLink(String from, String to, Link link) {
+            this.from = from;
+            this.to = to;
+            this.link = link;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package model;
+
+import model.link.Link;
+import model.node.ConceptNode;
+import model.node.InstanceNode;
+import model.node.Node;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+import static model.BinaryGraphFormat.LINK_TYPES;
+
+/**
+ * Streaming JSON graph writer.
+ *
+ * Writes the `nodes` and `links` arrays element by element, with the same fields as
+ * Node.toJSONObject and Link.toJSONObject, without building a JSON document of the graph.
+ * Node and link classes unknown to the writer fall back to their toJSONObject.
+ */
+class JSONGraphWriter {
+    private final Writer out;
+
+    /**
+     * @param out Writer          Destination, neither flushed nor closed by the writer
+     */
+    JSONGraphWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * @param graph KnowledgeGraph  Graph to write
+     * @throws IOException Write error
+     */
+    void write(KnowledgeGraph graph) throws IOException {
+        try {
+            out.write("{\"nodes\":[");
+            boolean first = true;
+            for (Node node : graph.getNodes()) {
+                if (!first)
+                    out.write(',');
+                writeNode(node);
+                first = false;
+            }
+
+            out.write("],\"links\":[");
+            first = true;
+            for (Link link : graph.getLinks()) {
+                if (!first)
+                    out.write(',');
+                writeLink(link);
+                first = false;
+            }
+            out.write("]}");
+        } catch (JSONException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private void writeNode(Node node) throws IOException {
+        String type;
+        if (node instanceof ConceptNode)
+            type = "CONCEPT";
+        else if (node instanceof InstanceNode)
+            type = "INSTANCE";
+        else {
+            node.toJSONObject().write(out);
+            return;
+        }
+
+        out.write("{\"id\":");
+        JSONObject.quote(node.getId(), out);
+        out.write(",\"type\":\"");
+        out.write(type);
+        out.write("\",\"content\":{");
+        boolean first = true;
+        for (Map.Entry<String, Property<?>> property : node.getProperties().entrySet()) {
+            if (!first)
+                out.write(',');
+            JSONObject.quote(property.getKey(), out);
+            out.write(':');
+            writeValue(property.getValue().getValue());
+            first = false;
+        }
+        out.write("}}");
+    }
+
+    private void writeLink(Link link) throws IOException {
+        byte type = GraphSnapshot.typeOf(link);
+        if (type == GraphSnapshot.OTHER) {
+            link.toJSONObject().write(out);
+            return;
+        }
+
+        out.write("{\"from\":");
+        JSONObject.quote(link.getFrom().getId(), out);
+        out.write(",\"to\":");
+        JSONObject.quote(link.getTo().getId(), out);
+        out.write(",\"name\":");
+        JSONObject.quote(link.getName(), out);
+        out.write(",\"oriented\":");
+        out.write(link.isOriented() ? "true" : "false");
+        if (link.getWeight() != 1) {
+            out.write(",\"weight\":");
+            out.write(JSONObject.numberToString(link.getWeight()));
+        }
+        out.write(",\"type\":\"");
+        out.write(LINK_TYPES[type]);
+        out.write("\"}");
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null || value == JSONObject.NULL)
+            out.write("null");
+        else if (value instanceof String)
+            JSONObject.quote((String) value, out);
+        else if (value instanceof Number)
+            out.write(JSONObject.numberToString((Number) value));
+        else if (value instanceof Boolean)
+            out.write(value.toString());
+        else if (value instanceof JSONObject)
+            ((JSONObject) value).write(out);
+        else if (value instanceof JSONArray)
+            ((JSONArray) value).write(out);
+        else
+            out.write(JSONObject.valueToString(value));
+    }
+}
@@ -2,27 +2,167 @@ package model;
 
 import exceptions.IllegalLinkAssociationException;
 import exceptions.NoLinkedNodeException;
+import model.link.AkoLink;
 import model.link.Link;
+import model.node.ConceptNode;
 import model.node.Node;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 
-import org.json.JSONObject;
-import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONTokener;
 
 public class KnowledgeGraph {
     private final List<Node> nodes;
     private final List<Link> links;
+
+    /**
+     * Node index by id
+     */
+    private final Map<String, Node> nodesById;
+
+    /**
+     * Link index by id
+     */
+    private final Map<String, Link> linksById;
+
+    /**
+     * String values of the node properties, coded when the nodes join the graph (shared with the copies)
+     */
+    private PropertyDictionary values = new PropertyDictionary();
+
+    /**
+     * Path finder over the last snapshot, dropped on every structural change
+     */
+    private PathFinder pathFinder;
+
+    /**
+     * Optional inverted index of node properties (null when disabled)
+     */
+    private PropertyIndex propertyIndex;
+
+    /**
+     * Default number of results kept by the result cache
+     */
+    private static final int RESULT_CACHE_SIZE = 256;
+
+    /**
+     * Results of findNodes, findLinks and search for the current modification stamp (see stamp)
+     */
+    private final ResultCache resultCache = new ResultCache(RESULT_CACHE_SIZE);
+
+    /**
+     * Sorted index of the numeric properties chosen with setRangeIndexed
+     */
+    private final RangeIndex rangeIndex = new RangeIndex(this::getLock);
+
+    /**
+     * Optional full-text index of the string properties (null when disabled)
+     */
+    private TextIndex textIndex;
+
+    /**
+     * Reachability index of the concept hierarchy
+     */
+    private final HierarchyIndex hierarchy;
+
     private boolean inherit;
 
+    /**
+     * true if inheriting links are resolved at read time instead of copying properties (see setLazyInheritance)
+     */
+    private boolean lazyInheritance;
+
+    /**
+     * Number of threads used by search (1 for a sequential search)
+     */
+    private int searchParallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Pool running the parallel searches, created on first use
+     */
+    private ForkJoinPool searchPool;
+
+    /**
+     * Graph a copy runs its parallel searches with (see copy), null for its own pool
+     */
+    private KnowledgeGraph poolOwner;
+
+    /**
+     * Log fed with every structural modification (null when disabled)
+     */
+    private WriteAheadLog writeAheadLog;
+
+    /**
+     * Guards the node and link lists, the adjacency of the nodes and the indexes.
+     * Never blocks unless the graph is concurrent.
+     */
+    private volatile ReadWriteLock lock = NoLock.INSTANCE;
+
+    /**
+     * Serializes the path searches, which share the buffers of the path finder
+     */
+    private final Object pathLock = new Object();
+
+    /**
+     * Serializes the publication of the pinned versions, always taken after the read lock
+     */
+    private final Object versionLock = new Object();
+
+    /**
+     * Structural modification count
+     */
+    private volatile long version;
+
+    /**
+     * Latest version pinned by a reader (null before the first pin)
+     */
+    private volatile GraphVersion published;
+
+    /**
+     * Nesting depth of the batches in progress (see beginBatch)
+     */
+    private int batchDepth;
+
+    /**
+     * Links added during the batch, whose property inheritance is deferred to its end
+     */
+    private final List<Link> deferredInheritance = new ArrayList<>();
+
+    /**
+     * Nodes added or modified during the batch, indexed at its end
+     */
+    private final Set<Node> deferredIndexing = new LinkedHashSet<>();
+
     public KnowledgeGraph(boolean inherit) {
         this.inherit = inherit;
         nodes = new ArrayList<>();
         links = new ArrayList<>();
+        nodesById = new ConcurrentHashMap<>();
+        linksById = new ConcurrentHashMap<>();
+        hierarchy = new HierarchyIndex(nodes, nodesById);
     }
 
     /**
@@ -31,9 +171,30 @@ public class KnowledgeGraph {
      * @param nodes Node[]          Nodes to add
      */
     public void addNodes(Node... nodes) {
-        for (Node node : nodes)
-            if (!this.nodes.contains(node))
-                this.nodes.add(node);
+        lock.writeLock().lock();
+        try {
+            modified();
+            for (Node node : nodes) {
+                if (!nodesById.containsKey(node.getId())) {
+                    nodesById.put(node.getId(), node);
+                    this.nodes.add(node);
+                    for (Property<?> property : node.getProperties().values())
+                        property.intern(values);
+                    if (node instanceof ConceptNode)
+                        hierarchy.addConcept(node);
+                    if (isIndexing()) {
+                        if (batchDepth > 0)
+                            deferredIndexing.add(node);
+                        else
+                            indexNode(node);
+                    }
+                    if (writeAheadLog != null)
+                        writeAheadLog.addNode(node);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -42,11 +203,37 @@ public class KnowledgeGraph {
      * @param nodes Node[]          Nodes to remove
      */
     public void removeNodes(Node... nodes) {
-        this.nodes.removeAll(Arrays.asList(nodes));
+        lock.writeLock().lock();
+        try {
+            modified();
+            boolean removed = false;
+            for (Node node : nodes) {
+                Node indexed = nodesById.remove(node.getId());
+                if (indexed != null) {
+                    removed = true;
+                    if (indexed instanceof ConceptNode)
+                        hierarchy.removeConcept(indexed);
+                    unindexNode(indexed);
+                    if (writeAheadLog != null)
+                        writeAheadLog.removeNode(indexed);
+                }
+            }
+            if (removed)
+                this.nodes.removeIf(node -> !nodesById.containsKey(node.getId()));
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     public void addLink(Link link) {
-        links.add(link);
+        lock.writeLock().lock();
+        try {
+            modified();
+            if (linksById.putIfAbsent(link.getId(), link) == null)
+                links.add(link);
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -55,21 +242,38 @@ public class KnowledgeGraph {
      * @param nodeFrom Node            Link's origin node
      * @param nodeTo   Node            Link's destination node
      * @param link     Link            Link to add
+     * @return false if the link cannot join these nodes (illegal association), the graph being unchanged
      */
     public boolean addLink(Node nodeFrom, Node nodeTo, Link link) {
+        lock.writeLock().lock();
         try {
             link.setFrom(nodeFrom);
             link.setTo(nodeTo);
+            link.setLazy(inherit && lazyInheritance);
             nodeTo.addLink(link);
-            nodeFrom.addLink(link);
+            if (nodeFrom != nodeTo)
+                nodeFrom.addLink(link);
             addNodes(nodeFrom, nodeTo);
-            links.add(link);
-            if (inherit)
-                link.checkInheritProperties(nodeFrom, nodeTo);
+            addLink(link);
+            if (link instanceof AkoLink)
+                hierarchy.addAko(link);
+            if (writeAheadLog != null)
+                writeAheadLog.addLink(link);
+            if (link.isLazy()) {
+                reindexHeirs(nodeTo);
+            } else if (inherit) {
+                if (batchDepth > 0) {
+                    deferredInheritance.add(link);
+                } else {
+                    link.checkInheritProperties(nodeFrom, nodeTo);
+                    reindexNode(nodeTo);
+                }
+            }
             return true;
         } catch (IllegalLinkAssociationException e) {
-            System.out.println("Error: illegal association");
             return false;
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -81,22 +285,218 @@ public class KnowledgeGraph {
      * @param link     Link            Link to delete
      */
     public void removeLink(Node nodeFrom, Node nodeTo, Link link) {
-        List<Link> links = nodeFrom.getLinks();
-        Link myLink = null;
-        for (Link linkList : links) {
-            if (linkList.getClass() == link.getClass() && linkList == link) {
-                try {
-                    if (linkList.getLinkedNode(nodeFrom) == nodeTo) {
-                        myLink = link;
+        lock.writeLock().lock();
+        try {
+            List<Link> links = nodeFrom.getLinks();
+            Link myLink = null;
+            for (Link linkList : links) {
+                if (linkList.getClass() == link.getClass() && linkList == link) {
+                    try {
+                        if (linkList.getLinkedNode(nodeFrom) == nodeTo) {
+                            myLink = link;
+                        }
+                    } catch (NoLinkedNodeException e) {
+                        e.printStackTrace();
                     }
-                } catch (NoLinkedNodeException e) {
-                    e.printStackTrace();
                 }
             }
+            if (myLink == null)
+                return;
+            nodeFrom.removeLink(myLink);
+            nodeTo.removeLink(myLink);
+            unindexLink(myLink);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Starts a batch of modifications : until the matching endBatch, the property inheritance
+     * of the added links and the indexing of the added nodes are deferred, then done once.
+     * Inheritance is applied in the order the links were added, as without batch, but
+     * the inherited properties are not visible during the batch. Batches may be nested.
+     */
+    public void beginBatch() {
+        lock.writeLock().lock();
+        try {
+            batchDepth++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ends a batch, applying its deferred inheritance and indexing when it is the outermost one
+     *
+     * @throws IllegalStateException No batch in progress
+     */
+    public void endBatch() {
+        lock.writeLock().lock();
+        try {
+            if (batchDepth == 0)
+                throw new IllegalStateException("No batch in progress");
+            if (--batchDepth > 0)
+                return;
+
+            for (Link link : deferredInheritance) {
+                link.checkInheritProperties(link.getFrom(), link.getTo());
+                deferredIndexing.add(link.getTo());
+            }
+            deferredInheritance.clear();
+
+            for (Node node : deferredIndexing)
+                if (nodesById.get(node.getId()) == node)
+                    reindexNode(node);
+            deferredIndexing.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Called on every structural modification, under the write lock
+     */
+    private void modified() {
+        pathFinder = null;
+        version++;
+    }
+
+    /**
+     * @return Modification count (nodes and links added or removed, inheritance mode changed,
+     *         property maps modified then reindexed), monotonically increasing
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Stamp of the cached results : changes with the version or with any Property.setValue
+     */
+    private long stamp() {
+        return version + Property.getModificationCount();
+    }
+
+    /**
+     * Pins the current version of the graph. Every reader pinning the same version shares one
+     * read-only copy, taken the first time it is pinned (under the read lock), and then reads it
+     * without blocking writers nor seeing their modifications. Close the version when done.
+     *
+     * @return Current version
+     */
+    public GraphVersion pin() {
+        return pin(0);
+    }
+
+    /**
+     * Pins a version of the graph taken at most maxAge milliseconds ago, the current one if the latest
+     * pinned version is older. Taking a version copies the whole graph and holds the writers meanwhile :
+     * under continuous ingest, readers accepting this staleness share one copy per period instead of
+     * copying the graph on every pin.
+     *
+     * @param maxAge long            Staleness accepted by the reader, in milliseconds (0 for the current version)
+     * @return Recent version, to close when done
+     */
+    public GraphVersion pin(long maxAge) {
+        GraphVersion current = published;
+        if (current != null && isRecent(current, maxAge) && current.pin())
+            return current;
+
+        // the graph lock comes first : writers holding it may wait for the path lock (see searchPool)
+        lock.readLock().lock();
+        try {
+            synchronized (versionLock) {
+                current = published;
+                if (current == null || !isRecent(current, maxAge) || !current.pin()) {
+                    current = new GraphVersion(version, freeze());
+                    current.pin();
+                    if (published != null)
+                        published.retire();
+                    published = current;
+                }
+                return current;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean isRecent(GraphVersion pinned, long maxAge) {
+        return pinned.getVersion() == version
+                || System.nanoTime() - pinned.getCreationTime() <= TimeUnit.MILLISECONDS.toNanos(maxAge);
+    }
+
+    /**
+     * @return Read-only copy of the graph (see copy)
+     */
+    private KnowledgeGraph freeze() {
+        KnowledgeGraph frozen = copy();
+        frozen.lock = NoLock.READ_ONLY;
+        return frozen;
+    }
+
+    /**
+     * @return Copy of the graph, with copies of the nodes and links. The full-text index is not
+     *         copied, searchText scans the copy.
+     */
+    private KnowledgeGraph copy() {
+        KnowledgeGraph frozen = new KnowledgeGraph(inherit && lazyInheritance);
+        frozen.lazyInheritance = lazyInheritance;
+        // the copied properties keep their codes
+        frozen.values = values;
+
+        // the copied nodes already hold their eagerly inherited properties : the nodes and links are
+        // attached directly, without the checks and the inheritance of addNodes and addLink
+        for (Node node : nodes) {
+            Node copy = node.copy();
+            frozen.nodesById.put(copy.getId(), copy);
+            frozen.nodes.add(copy);
+        }
+        for (Link link : links) {
+            Node from = frozen.nodesById.get(link.getFrom().getId());
+            Node to = frozen.nodesById.get(link.getTo().getId());
+            if (from == null || to == null)
+                continue;
+
+            Link copy = link.copy();
+            try {
+                copy.setFrom(from);
+                copy.setTo(to);
+            } catch (IllegalLinkAssociationException e) {
+                throw new IllegalStateException(e);
+            }
+            copy.setLazy(link.isLazy());
+            to.addLink(copy);
+            if (from != to)
+                from.addLink(copy);
+            frozen.linksById.put(copy.getId(), copy);
+            frozen.links.add(copy);
+        }
+
+        frozen.setIndexProperties(propertyIndex != null);
+        for (String key : rangeIndex.getKeys())
+            frozen.setRangeIndexed(key, true);
+        frozen.searchParallelism = searchParallelism;
+        // no pool per copy : the pool of the original graph, created if a copy searches in parallel
+        frozen.poolOwner = poolOwner != null ? poolOwner : this;
+        return frozen;
+    }
+
+    /**
+     * Removes a link from the global list and the id index
+     *
+     * @param link Link            Link to forget
+     */
+    private void unindexLink(Link link) {
+        modified();
+        if (link instanceof AkoLink)
+            hierarchy.removeAko(link);
+        if (link.isLazy())
+            reindexHeirs(link.getTo());
+        if (linksById.remove(link.getId()) != null) {
+            this.links.remove(link);
+            if (writeAheadLog != null)
+                writeAheadLog.removeLink(link);
         }
-        nodeFrom.removeLink(myLink);
-        nodeTo.removeLink(myLink);
-        links.remove(myLink);
     }
 
     /**
@@ -107,49 +507,59 @@ public class KnowledgeGraph {
      * @return true if the link has been deleted
      */
     public boolean removeLink(Link linkToRemove, boolean deleteSameType) {
+        lock.writeLock().lock();
+        try {
 
-        // find the true link to remove in model
-        Link linkToRemoveRaw = null;
-        for (Link link : this.links) {
-            if (link.getName().equals(linkToRemove.getName()) &&
-                    link.getClass().equals(linkToRemove.getClass()) &&
-                    link.getTo().equals(linkToRemove.getTo()) &&
-                    link.getFrom().equals(linkToRemove.getFrom())) {
-                    linkToRemoveRaw = link;
-                    break;
+            // find the true link to remove in model, only the origin's links can match
+            Link linkToRemoveRaw = null;
+            for (Link link : linkToRemove.getFrom().getLinks(linkToRemove.getClass(), linkToRemove.getName())) {
+                if (link.getTo().equals(linkToRemove.getTo()) &&
+                        link.getFrom().equals(linkToRemove.getFrom())) {
+                        linkToRemoveRaw = link;
+                        break;
+                }
             }
-        }
 
-        if (linkToRemoveRaw != null) {
+            if (linkToRemoveRaw != null) {
 
-            // node references deletion
-            linkToRemoveRaw.getFrom().removeLink(linkToRemoveRaw);
-            linkToRemoveRaw.getTo().removeLink(linkToRemoveRaw);
+                // node references deletion
+                linkToRemoveRaw.getFrom().removeLink(linkToRemoveRaw);
+                linkToRemoveRaw.getTo().removeLink(linkToRemoveRaw);
 
-            // global list deletion
-            this.links.remove(linkToRemoveRaw);
+                // global list deletion
+                unindexLink(linkToRemoveRaw);
 
-            // all other link of the same type deletion
-            if (deleteSameType) {
-                List<Link> linksToRemove = new ArrayList<>();
+                // all other link of the same type deletion
+                if (deleteSameType) {
+                    List<Link> linksToRemove = new ArrayList<>();
 
-                for (Link link : this.links) {
-                    // the link will be removed if it has the same class
-                    // as the one passed in parameter
-                    if ( link.getClass().isInstance(linkToRemoveRaw) ){
-                        linksToRemove.add(link);
+                    for (Link link : this.links) {
+                        // the link will be removed if it has the same class
+                        // as the one passed in parameter
+                        if ( link.getClass().isInstance(linkToRemoveRaw) ){
+                            linksToRemove.add(link);
+                        }
                     }
+                    // we remove definitely the links in a new loop to avoid border effect
+                    for (Link link : linksToRemove) {
+                        link.getFrom().removeLink(link);
+                        link.getTo().removeLink(link);
+                        if (link.isLazy())
+                            reindexHeirs(link.getTo());
+                        if (link instanceof AkoLink)
+                            hierarchy.removeAko(link);
+                        if (linksById.remove(link.getId()) != null && writeAheadLog != null)
+                            writeAheadLog.removeLink(link);
+                    }
+                    modified();
+                    this.links.removeIf(link -> !linksById.containsKey(link.getId()));
                 }
-                // we remove definitely the links in a new loop to avoid border effect
-                for (Link link : linksToRemove) {
-                    link.getFrom().removeLink(link);
-                    link.getTo().removeLink(link);
-                    this.links.remove(link);
-                }
+                return true;
             }
-            return true;
+            return false;
+        } finally {
+            lock.writeLock().unlock();
         }
-        return false;
     }
 
     /**
@@ -159,28 +569,138 @@ public class KnowledgeGraph {
      * @return Nodes matching the filter
      */
     public List<Node> findNodes(Map<String, Property<?>> properties) {
+        return findNodes(properties, Collections.emptyMap());
+    }
+
+    /**
+     * Find all nodes in graph that matches the given properties and whose numeric properties are within
+     * the given ranges. Starts from the property index if enabled, else from the sorted index of a range
+     * property if any (see setRangeIndexed), else scans the nodes. The results are cached until the next
+     * modification (see setResultCacheSize).
+     *
+     * @param properties Map<>           Properties filter
+     * @param ranges     Map<>           Ranges of values by property key
+     * @return Nodes matching the filters
+     */
+    public List<Node> findNodes(Map<String, Property<?>> properties, Map<String, Range> ranges) {
+        lock.readLock().lock();
+        try {
+            long stamp = stamp();
+            Object key = ResultCache.nodesKey(properties, ranges);
+            Object cached = resultCache.get(key, stamp);
+            if (cached != null)
+                return ResultCache.copy(cached);
+
+            List<Node> found = ranges.isEmpty() ? matchNodes(properties) : matchNodes(properties, ranges);
+            resultCache.put(key, List.copyOf(found), stamp);
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Node> matchNodes(Map<String, Property<?>> properties) {
+        if (propertyIndex != null && batchDepth == 0 && !properties.isEmpty())
+            return propertyIndex.find(properties);
+
         List<Node> found = new ArrayList<>();
+        PropertyMap filter = encode(properties);
+        if (filter == null)
+            return found;
 
         for (Node node : nodes) {
-            // Comparing properties
+            // Adding to return list if properties match
+            if (matches(node, filter)) {
+                found.add(node);
+            }
+        }
+
+        return found;
+    }
+
+    private List<Node> matchNodes(Map<String, Property<?>> properties, Map<String, Range> ranges) {
+        List<Node> found = new ArrayList<>();
+        PropertyMap filter = encode(properties);
+        if (filter == null)
+            return found;
+
+        List<Node> candidates = nodes;
+        if (batchDepth == 0) {
+            if (propertyIndex != null && !properties.isEmpty()) {
+                candidates = propertyIndex.find(properties);
+            } else {
+                for (Map.Entry<String, Range> range : ranges.entrySet()) {
+                    if (rangeIndex.covers(range.getKey())) {
+                        candidates = rangeIndex.find(range.getKey(), range.getValue());
+                        break;
+                    }
+                }
+            }
+        }
+
+        for (Node node : candidates) {
+            if (!matches(node, filter))
+                continue;
             boolean match = true;
-            for (String propertyName : properties.keySet()) {
-                if (node.getProperties().get(propertyName) == null ||
-                        !node.getProperties().get(propertyName).equals(properties.get(propertyName))) {
+            for (Map.Entry<String, Range> range : ranges.entrySet()) {
+                Property<?> property = node.getProperty(range.getKey());
+                if (property == null || !range.getValue().contains(property.getValue())) {
                     match = false;
                     break;
                 }
             }
-
-            // Adding to return list if properties match
-            if (match) {
+            if (match)
                 found.add(node);
-            }
         }
-
         return found;
     }
 
+    /**
+     * Encodes a properties filter once, for comparing codes
+     *
+     * @return Filter keyed by code, string values coded in the dictionary of the graph,
+     *         null if a key or a string value is used by no property (no node can match)
+     */
+    private PropertyMap encode(Map<String, Property<?>> properties) {
+        PropertyMap filter = new PropertyMap();
+        for (Map.Entry<String, Property<?>> property : properties.entrySet()) {
+            int key = PropertyDictionary.KEYS.find(property.getKey());
+            Property<?> value = property.getValue().lookup(values);
+            if (key < 0 || value == null)
+                return null;
+            filter.put(key, value);
+        }
+        return filter;
+    }
+
+    private static boolean matches(Node node, PropertyMap filter) {
+        for (int i = 0; i < filter.size(); ++i) {
+            Property<?> property = node.getProperty(filter.keyAt(i));
+            if (property == null || !property.equals(filter.valueAt(i)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Full-text search of the string properties : every word of the text must start a word of the node,
+     * accents and case ignored. Uses the full-text index if enabled (see setIndexText), else scans the nodes.
+     *
+     * @param text  String          Words to look for, e.g. "pneumo" or "cancer du"
+     * @param limit int             Maximum number of hits
+     * @return Matching nodes, best first : whole words before prefixes, then the nodes with the fewest words
+     */
+    public List<Node> searchText(String text, int limit) {
+        lock.readLock().lock();
+        try {
+            if (textIndex != null && batchDepth == 0)
+                return textIndex.search(text, limit);
+            return TextIndex.scan(nodes, text, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     /**
      * Find all nodes in graph that matches the given properties
      * for a given node type (instance)
@@ -196,18 +716,72 @@ public class KnowledgeGraph {
         return found;
     }
 
-    public List<Link> findLinks(Link template) {
-        List<Link> found = new ArrayList<Link>();
+    /**
+     * Subsumption test through the hierarchy index, in constant time under single inheritance
+     *
+     * @param node    Node            Concept or instance
+     * @param concept Node            Concept
+     * @return true if the node is the concept, one of its sub-concepts (AKO links) or one of their instances
+     */
+    public boolean isA(Node node, Node concept) {
+        lock.readLock().lock();
+        try {
+            return hierarchy.isA(node, concept);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
-        for (Link link : template.getTo().getLinks()) {
-            try {
-                if (link.getLinkedNode(template.getTo()).equals(template.getFrom())) {
-                    found.add(link);
-                }
-            } catch (NoLinkedNodeException e) { }
+    /**
+     * @param concept Node            Concept
+     * @return The concept and its sub-concepts, through any number of AKO links
+     */
+    public List<Node> getSubConcepts(Node concept) {
+        lock.readLock().lock();
+        try {
+            return hierarchy.getSubConcepts(concept);
+        } finally {
+            lock.readLock().unlock();
         }
+    }
 
-        return found;
+    /**
+     * @param concept Node            Concept
+     * @return Instances of the concept and of its sub-concepts
+     */
+    public List<Node> getInstances(Node concept) {
+        lock.readLock().lock();
+        try {
+            return hierarchy.getInstances(concept);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Link> findLinks(Link template) {
+        lock.readLock().lock();
+        try {
+            long stamp = stamp();
+            Object key = ResultCache.linksKey(template);
+            Object cached = resultCache.get(key, stamp);
+            if (cached != null)
+                return ResultCache.copy(cached);
+
+            List<Link> found = new ArrayList<Link>();
+
+            for (Link link : template.getTo().getLinks()) {
+                try {
+                    if (link.getLinkedNode(template.getTo()).equals(template.getFrom())) {
+                        found.add(link);
+                    }
+                } catch (NoLinkedNodeException e) { }
+            }
+
+            resultCache.put(key, List.copyOf(found), stamp);
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
@@ -217,66 +791,135 @@ public class KnowledgeGraph {
      * @return Corresponding node
      */
     public Node findNode(String id) {
-        for (Node node : getNodes())
-            if (node.getId().equals(id))
-                return node;
-        return null;
+        // lock-free : the id index is a concurrent map
+        return nodesById.get(id);
     }
 
     @Override
     public String toString() {
-        StringBuilder res = new StringBuilder("KnowledgeGraph :\n");
-        for (Node node : this.nodes) {
-            for (Link link : node.getLinks()) {
-                if (link.getFrom().equals(node)) {
-                    res.append(node)
-                       .append(" ---[ ")
-                       .append(link.getName())
-                       .append(" ]--> ")
-                       .append(link.getTo().toString())
-                       .append("\n");
+        lock.readLock().lock();
+        try {
+            StringBuilder res = new StringBuilder("KnowledgeGraph :\n");
+            for (Node node : this.nodes) {
+                for (Link link : node.getLinks()) {
+                    if (link.getFrom().equals(node)) {
+                        res.append(node)
+                           .append(" ---[ ")
+                           .append(link.getName())
+                           .append(" ]--> ")
+                           .append(link.getTo().toString())
+                           .append("\n");
+                    }
                 }
             }
+            return res.toString();
+        } finally {
+            lock.readLock().unlock();
         }
-        return res.toString();
     }
 
+    /**
+     * @return Nodes of the graph, a copy if the graph is concurrent
+     */
     public List<Node> getNodes() {
-        return nodes;
+        if (!isConcurrent())
+            return nodes;
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(nodes);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
+    /**
+     * @return Links of the graph, a copy if the graph is concurrent
+     */
     public List<Link> getLinks() {
-        return links;
+        if (!isConcurrent())
+            return links;
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(links);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public Link getLink(String id) {
-        for (Link link : links) {
-            if (link.getId().equals(id)) {
-                return link;
-            }
+        return linksById.get(id);
+    }
+
+    /**
+     * Freezes the current state of the graph into an immutable CSR structure.
+     * Later modifications of the graph are not reflected in the snapshot.
+     *
+     * @return GraphSnapshot
+     */
+    public GraphSnapshot snapshot() {
+        lock.readLock().lock();
+        try {
+            return new GraphSnapshot(nodes, links);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs a reader under the read lock, so that the nodes and links it reads
+     * (e.g. their properties) are not modified meanwhile
+     *
+     * @param reader Supplier        Read of the graph
+     * @return Result of the reader
+     */
+    public <T> T read(Supplier<T> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.get();
+        } finally {
+            lock.readLock().unlock();
         }
-        return null;
     }
 
     /**
      * @return JSON graph
      */
     public String toJSON() {
-        JSONObject obj = new JSONObject();
-
-        JSONArray nodes = new JSONArray();
-        for (Node node : getNodes()) {
-            nodes.put(node.toJSONObject());
+        StringWriter out = new StringWriter();
+        try {
+            toJSON(out);
+        } catch (IOException e) {
+            throw new JSONException(e);
         }
-        obj.put("nodes", nodes);
+        return out.toString();
+    }
 
-        JSONArray links = new JSONArray();
-        for (Link link : getLinks()) {
-            links.put(link.toJSONObject());
+    /**
+     * Writes the JSON graph one node or link at a time,
+     * without building the whole JSON document in memory
+     *
+     * @param out Writer          Destination, not flushed nor closed
+     * @throws IOException Write error
+     */
+    public void toJSON(Writer out) throws IOException {
+        lock.readLock().lock();
+        try {
+            new JSONGraphWriter(out).write(this);
+        } finally {
+            lock.readLock().unlock();
         }
-        obj.put("links", links);
+    }
 
-        return obj.toString();
+    /**
+     * Writes the UTF-8 JSON graph one node or link at a time
+     *
+     * @param out OutputStream    Destination, flushed but not closed
+     * @throws IOException Write error
+     */
+    public void toJSON(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        toJSON(writer);
+        writer.flush();
     }
 
     /**
@@ -285,75 +928,188 @@ public class KnowledgeGraph {
      * @throws JSONException Bad JSON
      */
     public static KnowledgeGraph fromJSON(String json, boolean inherit) throws JSONException {
-        KnowledgeGraph graph = new KnowledgeGraph(inherit);
-        JSONObject main = new JSONObject(json);
+        return new JSONGraphReader(new JSONTokener(json), inherit, false).read();
+    }
+
+    /**
+     * Reads a JSON graph from a stream, one node or link at a time,
+     * without building the whole JSON document in memory
+     *
+     * @param in      InputStream     UTF-8 JSON graph
+     * @param inherit boolean         Property inheritance of the graph
+     * @return Graph
+     * @throws JSONException Bad JSON
+     */
+    public static KnowledgeGraph fromJSON(InputStream in, boolean inherit) throws JSONException {
+        return fromJSON(in, inherit, false);
+    }
+
+    /**
+     * @param in              InputStream     UTF-8 JSON graph
+     * @param inherit         boolean         Property inheritance of the graph
+     * @param lazyInheritance boolean         Inheritance resolved at read time (see setLazyInheritance)
+     * @return Graph
+     * @throws JSONException Bad JSON
+     */
+    public static KnowledgeGraph fromJSON(InputStream in, boolean inherit, boolean lazyInheritance) throws JSONException {
+        Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+        return new JSONGraphReader(new JSONTokener(reader), inherit, lazyInheritance).read();
+    }
+
+    /**
+     * Writes the graph in the binary graph format
+     *
+     * @param out OutputStream    Destination, not closed
+     * @throws IOException Write error
+     */
+    public void toBinary(OutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            new BinaryGraphWriter(out).write(this);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param in      InputStream     Binary graph, not closed
+     * @param inherit boolean         Property inheritance of the graph
+     * @return Graph
+     * @throws IOException Read error or bad format
+     */
+    public static KnowledgeGraph fromBinary(InputStream in, boolean inherit) throws IOException {
+        return fromBinary(in, inherit, false);
+    }
 
-        int maxId = 0;
+    /**
+     * @param in              InputStream     Binary graph, not closed
+     * @param inherit         boolean         Property inheritance of the graph
+     * @param lazyInheritance boolean         Inheritance resolved at read time (see setLazyInheritance)
+     * @return Graph
+     * @throws IOException Read error or bad format
+     */
+    public static KnowledgeGraph fromBinary(InputStream in, boolean inherit, boolean lazyInheritance) throws IOException {
+        return new BinaryGraphReader(in).read(inherit, lazyInheritance);
+    }
 
-        JSONArray nodes = main.getJSONArray("nodes");
-        for (Object nodeObject : nodes) {
-            Node node = Node.fromJSONObject((JSONObject) nodeObject);
-            graph.addNodes(node);
-            if (Integer.parseInt(node.getId()) > maxId) {
-                maxId = Integer.parseInt(node.getId());
+    /**
+     * Finds every embedding of a query graph in this graph
+     *
+     * @param searchedGraph KnowledgeGraph  Query graph
+     * @return Every distinct binding, query node -> node of this graph
+     */
+    public List<Map<Node, Node>> findMatches(KnowledgeGraph searchedGraph) {
+        lock.readLock().lock();
+        try {
+            return match(new PatternMatcher(this, searchedGraph));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds every embedding of a query graph in this graph
+     *
+     * @param searchedGraph KnowledgeGraph  Query graph
+     * @return Graph made of copies of the matched nodes and links
+     */
+    public KnowledgeGraph search(KnowledgeGraph searchedGraph) {
+        lock.readLock().lock();
+        try {
+            long stamp = stamp();
+            Object key = ResultCache.searchKey(searchedGraph);
+            KnowledgeGraph result = (KnowledgeGraph) resultCache.get(key, stamp);
+            if (result == null) {
+                PatternMatcher matcher = new PatternMatcher(this, searchedGraph);
+                result = matcher.toGraph(match(matcher));
+                resultCache.put(key, result, stamp);
             }
+            // the cached graph is never handed out, its copies search with the pool of this graph
+            KnowledgeGraph copy = result.copy();
+            copy.poolOwner = poolOwner != null ? poolOwner : this;
+            return copy;
+        } finally {
+            lock.readLock().unlock();
         }
-        Node.setNextId(maxId + 1);
+    }
+
+    private List<Map<Node, Node>> match(PatternMatcher matcher) {
+        if (searchParallelism <= 1 || matcher.getSeeds().size() <= 1)
+            return matcher.match();
+
+        return matcher.match(searchPool());
+    }
 
-        JSONArray links = main.getJSONArray("links");
-        for (Object linkObject : links) {
-            JSONObject linkJSON = (JSONObject) linkObject;
-            Link link = Link.fromJSONObject(linkJSON);
-            Node from = graph.findNode(linkJSON.getString("from"));
-            Node to = graph.findNode(linkJSON.getString("to"));
-            graph.addLink(from, to, link);
+    /**
+     * @return Pool running the parallel searches, shared with the pinned versions and the search results
+     */
+    private ForkJoinPool searchPool() {
+        if (poolOwner != null)
+            return poolOwner.searchPool();
+
+        synchronized (pathLock) {
+            if (searchPool == null)
+                searchPool = new ForkJoinPool(searchParallelism);
+            return searchPool;
         }
+    }
 
-        return graph;
+    public int getSearchParallelism() {
+        return searchParallelism;
     }
 
-    public KnowledgeGraph search(KnowledgeGraph searchedGraph) {
-        KnowledgeGraph resultGraph = new KnowledgeGraph(false);
+    /**
+     * @param size int             Number of results kept by the cache of findNodes, findLinks and search,
+     *                             0 to disable it
+     */
+    public void setResultCacheSize(int size) {
+        resultCache.setCapacity(size);
+    }
 
-        for (Node searchedNode : searchedGraph.nodes) {
-            if (!searchedNode.isSearched())
-                continue;
+    public int getResultCacheSize() {
+        return resultCache.getCapacity();
+    }
 
-            for (Link link : searchedGraph.links) {
-                Node foundNodeInSearchedGraph;
-                try {
-                    foundNodeInSearchedGraph = link.getLinkedNode(searchedNode);
-                } catch (Exception e) {
-                    continue;
-                }
+    /**
+     * @return Number of results currently cached
+     */
+    public int getCachedResults() {
+        return resultCache.size();
+    }
 
-                for (Node matchedNodeInOriginalGraph : nodes) {
-                    if (!foundNodeInSearchedGraph.isSubsetOf(matchedNodeInOriginalGraph))
-                        continue;
-
-                    resultGraph.addNodes(matchedNodeInOriginalGraph);
-                    System.out.println(matchedNodeInOriginalGraph);
-
-                    for (Link possibleRelation : searchedNode.getLinks()) {
-                        List<Link> matchingLinks = matchedNodeInOriginalGraph.getMatchingLinks(searchedNode, possibleRelation);
-
-                        for (Link matchingLink : matchingLinks) {
-                            try {
-                                Node otherExtremity = matchingLink.getLinkedNode(matchedNodeInOriginalGraph);
-                                System.out.println(otherExtremity);
-                                resultGraph.addNodes(otherExtremity);
-                                resultGraph.addLink(matchingLink);
-                            } catch (Exception e) {
-                                e.printStackTrace();
-                            }
-                        }
-                    }
-                }
+    /**
+     * @return Number of queries answered from the result cache
+     */
+    public long getCacheHits() {
+        return resultCache.getHits();
+    }
+
+    /**
+     * @return Number of queries computed while the result cache was enabled
+     */
+    public long getCacheMisses() {
+        return resultCache.getMisses();
+    }
+
+    /**
+     * @param searchParallelism int     Number of threads used by search (1 for a sequential search)
+     */
+    public void setSearchParallelism(int searchParallelism) {
+        lock.writeLock().lock();
+        try {
+            if (searchParallelism < 1)
+                throw new IllegalArgumentException("Search parallelism must be at least 1");
+
+            // the previous pool may still serve pinned versions : it is dropped, not shut down,
+            // and its idle workers terminate by themselves
+            synchronized (pathLock) {
+                if (searchParallelism != this.searchParallelism)
+                    searchPool = null;
+                this.searchParallelism = searchParallelism;
             }
+        } finally {
+            lock.writeLock().unlock();
         }
-
-        // lmao hacky af
-        return KnowledgeGraph.fromJSON(resultGraph.toJSON(), true);
     }
 
     /**
@@ -375,67 +1131,236 @@ public class KnowledgeGraph {
     }
 
     /**
-     * Dijkstra's algorithm : Finds the shortest path between two nodes
+     * Dijkstra's algorithm : Finds the shortest path between two nodes,
+     * using link weights and ignoring link orientation
      * @param origin        Origin Node
      * @param destination   Destination Node
-     * @return              List of the nodes to get from origin to destination
+     * @return              List of the nodes to get from origin to destination, empty if unreachable
      */
     public List<Node> dijkstra(Node origin, Node destination) {
+        return shortestPath(origin, destination, PathFinder.Mode.DIJKSTRA);
+    }
 
-        int[] weights = new int[nodes.size()];
-        Arrays.fill(weights, Integer.MAX_VALUE);
+    /**
+     * Finds the shortest path between two nodes, using link weights and ignoring link orientation.
+     * The snapshot and landmarks used by the search are kept until the graph structure changes
+     * (weights modified on links already in the graph are not tracked).
+     *
+     * @param origin        Origin Node
+     * @param destination   Destination Node
+     * @param mode          Search algorithm
+     * @return              List of the nodes to get from origin to destination, empty if unreachable
+     */
+    public List<Node> shortestPath(Node origin, Node destination, PathFinder.Mode mode) {
+        lock.readLock().lock();
+        try {
+            synchronized (pathLock) {
+                if (pathFinder == null)
+                    pathFinder = new PathFinder(snapshot());
+                return pathFinder.shortestPath(origin, destination, mode);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
-        Node[] pathsBy = new Node[nodes.size()];
+    /**
+     * Enables or disables the inverted property index used by findNodes
+     *
+     * @param indexProperties boolean     true to build and maintain the index
+     */
+    public void setIndexProperties(boolean indexProperties) {
+        lock.writeLock().lock();
+        try {
+            if (indexProperties && propertyIndex == null) {
+                propertyIndex = new PropertyIndex(this::getLock, values);
+                for (Node node : nodes)
+                    propertyIndex.add(node);
+            } else if (!indexProperties && propertyIndex != null) {
+                for (Node node : nodes)
+                    propertyIndex.remove(node);
+                propertyIndex = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
-        KnowledgeGraph sub = new KnowledgeGraph(inherit);
+    public boolean isIndexingProperties() {
+        return propertyIndex != null;
+    }
 
-        weights[nodes.indexOf(origin)] = 0;
+    /**
+     * Enables or disables the full-text index used by searchText
+     *
+     * @param indexText boolean     true to build and maintain the index
+     */
+    public void setIndexText(boolean indexText) {
+        lock.writeLock().lock();
+        try {
+            if (indexText && textIndex == null) {
+                textIndex = new TextIndex(this::getLock);
+                for (Node node : nodes)
+                    textIndex.add(node);
+            } else if (!indexText && textIndex != null) {
+                for (Node node : nodes)
+                    textIndex.remove(node);
+                textIndex = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
-        KnowledgeGraph complement;
-        do {
-            complement = complement(this, sub);
+    public boolean isIndexingText() {
+        return textIndex != null;
+    }
 
-            int nodeIndex = -1;
-            for (int i = 0 ; i < weights.length ; ++i)
-                if (!sub.nodes.contains(nodes.get(i)))
-                    if (nodeIndex == -1 || (weights[i] < weights[nodeIndex] && weights[i] != -1))
-                        nodeIndex = i;
-            Node shortestNodeA = nodes.get(nodeIndex);
+    /**
+     * Adds or removes a numeric property from the sorted index used by range queries
+     * (see findNodes(Map, Map))
+     *
+     * @param key     String          Property key
+     * @param indexed boolean         true to build and maintain the index of the property
+     */
+    public void setRangeIndexed(String key, boolean indexed) {
+        lock.writeLock().lock();
+        try {
+            if (indexed)
+                rangeIndex.addKey(key, nodes);
+            else
+                rangeIndex.removeKey(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
-            sub.addNodes(shortestNodeA);
+    public boolean isRangeIndexed(String key) {
+        return rangeIndex.covers(key);
+    }
+
+    /**
+     * @return Keys of the properties in the sorted index
+     */
+    public Set<String> getRangeIndexedKeys() {
+        lock.readLock().lock();
+        try {
+            return new LinkedHashSet<>(rangeIndex.getKeys());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
-            for (Node nodeB : shortestNodeA.getNeighbours()) {
-                if (!sub.nodes.contains(nodeB)) {
+    /**
+     * Re-indexes the properties of a node, and of the nodes lazily inheriting them,
+     * after its property map has been modified directly (Property.setValue is tracked automatically)
+     *
+     * @param node Node            Modified node
+     */
+    public void reindexProperties(Node node) {
+        lock.writeLock().lock();
+        try {
+            modified();
+            node.invalidateInheritance();
+            if (nodesById.get(node.getId()) == node)
+                reindexHeirs(node);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
-                    int weightA = weights[nodes.indexOf(shortestNodeA)];
-                    int weightB = weights[nodes.indexOf(nodeB)];
-                    int weightAB = 1; // TODO change to put weight on links
+    /**
+     * Re-indexes a node and its heirs, whose inherited properties changed (deferred during a batch)
+     */
+    private void reindexHeirs(Node node) {
+        if (!isIndexing())
+            return;
+        for (Node heir : node.getHeirs()) {
+            if (batchDepth > 0)
+                deferredIndexing.add(heir);
+            else if (nodesById.get(heir.getId()) == heir)
+                reindexNode(heir);
+        }
+    }
 
-                    if ((weightB == -1 || weightB > weightA + weightAB) && weightA != -1) {
+    private boolean isIndexing() {
+        return propertyIndex != null || textIndex != null || !rangeIndex.isEmpty();
+    }
 
-                        weights[nodes.indexOf(nodeB)] = weightA + weightAB;
+    private void indexNode(Node node) {
+        if (propertyIndex != null)
+            propertyIndex.add(node);
+        if (textIndex != null)
+            textIndex.add(node);
+        rangeIndex.add(node);
+    }
 
-                        pathsBy[nodes.indexOf(nodeB)] = shortestNodeA;
-                    }
-                }
-            }
+    private void unindexNode(Node node) {
+        if (propertyIndex != null)
+            propertyIndex.remove(node);
+        if (textIndex != null)
+            textIndex.remove(node);
+        rangeIndex.remove(node);
+    }
 
-        } while (complement.nodes.size() > 1);
+    private void reindexNode(Node node) {
+        if (propertyIndex != null)
+            propertyIndex.update(node);
+        if (textIndex != null)
+            textIndex.update(node);
+        rangeIndex.update(node);
+    }
 
-        // Debug
-        for (int i = 0 ; i < weights.length ; ++i) {
-            //System.err.println(nodes.get(i) + "\t\t : " + weights[i] + "\t\t\tby " + (pathsBy[i] != null ? pathsBy[i] : "-"));
+    /**
+     * Attaches a write-ahead log fed with every node and link addition or removal.
+     * Records are buffered until WriteAheadLog.sync().
+     *
+     * @param writeAheadLog WriteAheadLog   Log, null to stop logging
+     */
+    public void setWriteAheadLog(WriteAheadLog writeAheadLog) {
+        lock.writeLock().lock();
+        try {
+            this.writeAheadLog = writeAheadLog;
+        } finally {
+            lock.writeLock().unlock();
         }
+    }
 
-        List<Node> path = new ArrayList<>();
-        Node currentNode = destination;
-        do {
-            path.add(currentNode);
-            currentNode = pathsBy[nodes.indexOf(currentNode)];
-        } while (!currentNode.equals(origin));
-        path.add(origin);
+    public WriteAheadLog getWriteAheadLog() {
+        return writeAheadLog;
+    }
 
-        return path;
+    /**
+     * @return Lock guarding the graph, for the operations of the package that must exclude the writers
+     *         across several calls (see WriteAheadLog.checkpoint)
+     */
+    ReadWriteLock getLock() {
+        return lock;
+    }
+
+    /**
+     * @return Dictionary coding the string values of the nodes
+     */
+    PropertyDictionary getValues() {
+        return values;
+    }
+
+    /**
+     * Makes the graph safe to share between threads. Modifications take an exclusive lock,
+     * reads (find, search, path, export) a shared one and findNode none;
+     * getNodes and getLinks return copies. Must be set before the graph is shared.
+     *
+     * @param concurrent boolean     true to lock, false for single-threaded use
+     */
+    public void setConcurrent(boolean concurrent) {
+        if (lock == NoLock.READ_ONLY)
+            throw new UnsupportedOperationException("Read-only graph");
+        if (concurrent != isConcurrent())
+            lock = concurrent ? new ReentrantReadWriteLock() : NoLock.INSTANCE;
+    }
+
+    public boolean isConcurrent() {
+        return !(lock instanceof NoLock);
     }
 
     public boolean shouldInherit() {
@@ -443,6 +1368,50 @@ public class KnowledgeGraph {
     }
 
     public void setInherit(boolean inherit) {
-        this.inherit = inherit;
+        lock.writeLock().lock();
+        try {
+            this.inherit = inherit;
+            applyInheritance();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isLazyInheritance() {
+        return lazyInheritance;
+    }
+
+    /**
+     * Chooses how the destinations of AKO and instance links inherit the properties of their origin.
+     * Eagerly (default), the properties are copied when the link is added, and later changes of the
+     * origin are not reflected. Lazily, they are resolved through the links at read time (find,
+     * search, display), memoized per node, and the ancestors' properties are shared instead of copied.
+     * Properties already copied stay own properties of the nodes.
+     *
+     * @param lazyInheritance boolean     true to resolve inherited properties at read time
+     */
+    public void setLazyInheritance(boolean lazyInheritance) {
+        lock.writeLock().lock();
+        try {
+            this.lazyInheritance = lazyInheritance;
+            applyInheritance();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Updates the links already in the graph to the inheritance mode
+     */
+    private void applyInheritance() {
+        boolean lazy = inherit && lazyInheritance;
+        for (Link link : links) {
+            if (link.inheritsProperties() && link.isLazy() != lazy) {
+                modified();
+                link.setLazy(lazy);
+                link.getTo().invalidateInheritance();
+                reindexHeirs(link.getTo());
+            }
+        }
     }
 }
@@ -0,0 +1,48 @@
+package model;
+
+/**
+ * Property holding an unboxed long
+ */
+public final class LongProperty extends Property<Long> {
+    private long value;
+
+    public LongProperty(long value) {
+        this.value = value;
+    }
+
+    public long getLong() {
+        return value;
+    }
+
+    @Override
+    void store(Long value) {
+        this.value = value;
+    }
+
+    @Override
+    public Long getValue() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other instanceof LongProperty)
+            return value == ((LongProperty) other).value;
+        return super.equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(value);
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(value);
+    }
+
+    @Override
+    public LongProperty clone() {
+        return (LongProperty) super.clone();
+    }
+}
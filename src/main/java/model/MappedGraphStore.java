@@ -0,0 +1,704 @@
+package model;
+
+import model.link.Link;
+import model.node.ConceptNode;
+import model.node.Node;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static model.BinaryGraphFormat.*;
+
+/**
+ * Read-only graph whose adjacency and properties live in a memory-mapped file.
+ *
+ * Only the section positions are kept on the heap : the operating system page cache
+ * holds the data. Nodes are addressed by dense int indexes and materialized as detached
+ * Node objects (without links) on demand. Files are written by MappedGraphStore.write.
+ *
+ * <pre>
+ * header      : magic version nodeCount edgeCount stringCount, then the position of every section
+ * strings     : long offsets[stringCount + 1], utf8 bytes
+ * string hash : int slots[capacity] (string code + 1, open addressing on String.hashCode)
+ * nodes       : int id[nodeCount] (string code), byte flags[nodeCount], int nodeByString[stringCount]
+ * properties  : long offsets[nodeCount + 1], { int key, int tag, long value }
+ * adjacency   : int offsets[nodeCount + 1], int targets[edgeCount], byte types[edgeCount],
+ *               int names[edgeCount], double weights[edgeCount]
+ * </pre>
+ *
+ * Like GraphSnapshot, every link is stored on both extremities (once for self-loops).
+ */
+public class MappedGraphStore implements Closeable {
+    private static final int MAGIC_NUMBER = 0x4B474D31; // KGM1
+    private static final int STORE_VERSION = 1;
+    private static final int HEADER_SIZE = 256;
+
+    // edge flags, on top of the GraphSnapshot type code
+    private static final int EDGE_OUTGOING = GraphSnapshot.OUTGOING;
+    private static final int EDGE_ORIENTED = 0x20;
+    private static final int EDGE_SEARCH = 0x40;
+    private static final int EDGE_TYPE_MASK = 0x0F;
+
+    private static final int PROPERTY_SIZE = 16;
+
+    private final FileChannel channel;
+    private final MappedRegion region;
+
+    private final int nodeCount;
+    private final int edgeCount;
+    private final int stringCount;
+    private final int stringSlots;
+
+    private final long stringOffsetsPos;
+    private final long stringBytesPos;
+    private final long stringTablePos;
+    private final long nodeIdsPos;
+    private final long nodeFlagsPos;
+    private final long nodeByStringPos;
+    private final long propertyOffsetsPos;
+    private final long propertiesPos;
+    private final long adjacencyOffsetsPos;
+    private final long targetsPos;
+    private final long typesPos;
+    private final long namesPos;
+    private final long weightsPos;
+
+    private MappedGraphStore(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.region = new MappedRegion(channel);
+
+        if (region.getInt(0) != MAGIC_NUMBER)
+            throw new IOException("Not a mapped graph file");
+        if (region.getInt(4) != STORE_VERSION)
+            throw new IOException("Unsupported mapped graph version " + region.getInt(4));
+
+        nodeCount = region.getInt(8);
+        edgeCount = region.getInt(12);
+        stringCount = region.getInt(16);
+        stringSlots = region.getInt(20);
+
+        long pos = 24;
+        stringOffsetsPos = region.getLong(pos);
+        stringBytesPos = region.getLong(pos += 8);
+        stringTablePos = region.getLong(pos += 8);
+        nodeIdsPos = region.getLong(pos += 8);
+        nodeFlagsPos = region.getLong(pos += 8);
+        nodeByStringPos = region.getLong(pos += 8);
+        propertyOffsetsPos = region.getLong(pos += 8);
+        propertiesPos = region.getLong(pos += 8);
+        adjacencyOffsetsPos = region.getLong(pos += 8);
+        targetsPos = region.getLong(pos += 8);
+        typesPos = region.getLong(pos += 8);
+        namesPos = region.getLong(pos += 8);
+        weightsPos = region.getLong(pos + 8);
+    }
+
+    /**
+     * Maps a store file in memory
+     *
+     * @param path String          Store file written by write()
+     * @return Read-only store
+     * @throws IOException Read error or bad format
+     */
+    public static MappedGraphStore open(String path) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        try {
+            return new MappedGraphStore(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return Number of edges (each link counts once per distinct extremity)
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * @param id Node ID
+     * @return Dense index of the node, -1 if absent
+     */
+    public int indexOf(String id) {
+        int code = findString(id);
+        return code == -1 ? -1 : region.getInt(nodeByStringPos + 4L * code);
+    }
+
+    /**
+     * Find a node according to its id
+     *
+     * @param id Node ID
+     * @return Detached copy of the node (without links), null if absent
+     */
+    public Node findNode(String id) {
+        int node = indexOf(id);
+        return node == -1 ? null : getNode(node);
+    }
+
+    /**
+     * @param node Dense node index
+     * @return Detached copy of the node (without links)
+     */
+    public Node getNode(int node) {
+        Map<String, Property<?>> properties = new PropertyMap();
+        long end = region.getLong(propertyOffsetsPos + 8L * (node + 1));
+        for (long entry = region.getLong(propertyOffsetsPos + 8L * node); entry < end; ++entry) {
+            long pos = propertiesPos + PROPERTY_SIZE * entry;
+            properties.put(getString(region.getInt(pos)),
+                    Property.of(decode(region.getInt(pos + 4), region.getLong(pos + 8))));
+        }
+        int flags = region.getByte(nodeFlagsPos + node);
+        return Node.of((flags & FLAG_CONCEPT) != 0 ? "CONCEPT" : "INSTANCE", properties,
+                getString(region.getInt(nodeIdsPos + 4L * node)), (flags & FLAG_SEARCH) != 0);
+    }
+
+    public boolean isConcept(int node) {
+        return (region.getByte(nodeFlagsPos + node) & FLAG_CONCEPT) != 0;
+    }
+
+    /**
+     * Find all nodes that match the given properties, comparing encoded values without decoding them
+     *
+     * @param properties Map<>           Properties filter
+     * @return Dense indexes of the matching nodes
+     */
+    public BitSet findNodeIndexes(Map<String, Property<?>> properties) {
+        BitSet found = new BitSet(nodeCount);
+        int[] keys = new int[properties.size()];
+        int[] tags = new int[properties.size()];
+        long[] values = new long[properties.size()];
+        int i = 0;
+        for (Map.Entry<String, Property<?>> property : properties.entrySet()) {
+            keys[i] = findString(property.getKey());
+            Object value = property.getValue().getValue();
+            tags[i] = tagOf(value);
+            values[i] = tags[i] == -1 ? 0 : payloadOf(value, tags[i]);
+            // unknown key or value : nothing can match
+            if (keys[i] == -1 || tags[i] == -1 || values[i] == -1 && isDictionaryTag(tags[i]))
+                return found;
+            i++;
+        }
+
+        for (int node = 0; node < nodeCount; ++node)
+            if (matches(node, keys, tags, values))
+                found.set(node);
+        return found;
+    }
+
+    /**
+     * Find all nodes that match the given properties
+     *
+     * @param properties Map<>           Properties filter
+     * @return Detached copies of the matching nodes
+     */
+    public List<Node> findNodes(Map<String, Property<?>> properties) {
+        List<Node> found = new ArrayList<>();
+        BitSet indexes = findNodeIndexes(properties);
+        for (int node = indexes.nextSetBit(0); node >= 0; node = indexes.nextSetBit(node + 1))
+            found.add(getNode(node));
+        return found;
+    }
+
+    public int getDegree(int node) {
+        return getFirstEdge(node + 1) - getFirstEdge(node);
+    }
+
+    public int getFirstEdge(int node) {
+        return region.getInt(adjacencyOffsetsPos + 4L * node);
+    }
+
+    public int getEndEdge(int node) {
+        return getFirstEdge(node + 1);
+    }
+
+    public int getTarget(int edge) {
+        return region.getInt(targetsPos + 4L * edge);
+    }
+
+    /**
+     * @return GraphSnapshot type code of the edge
+     */
+    public byte getType(int edge) {
+        return (byte) (region.getByte(typesPos + edge) & EDGE_TYPE_MASK);
+    }
+
+    public boolean isOutgoing(int edge) {
+        return (region.getByte(typesPos + edge) & EDGE_OUTGOING) != 0;
+    }
+
+    public double getWeight(int edge) {
+        return region.getDouble(weightsPos + 8L * edge);
+    }
+
+    /**
+     * @param node Node            Node of the store
+     * @return Detached copies of the neighbours of the node, ignoring link orientation
+     */
+    public List<Node> getNeighbours(Node node) {
+        List<Node> neighbours = new ArrayList<>();
+        int index = indexOf(node.getId());
+        if (index == -1)
+            return neighbours;
+        for (int edge = getFirstEdge(index); edge < getEndEdge(index); ++edge)
+            neighbours.add(getNode(getTarget(edge)));
+        return neighbours;
+    }
+
+    /**
+     * Finds every embedding of a query graph in the store, walking the mapped adjacency
+     *
+     * @param searchedGraph KnowledgeGraph  Query graph
+     * @return Graph made of copies of the matched nodes and links
+     */
+    public KnowledgeGraph search(KnowledgeGraph searchedGraph) {
+        MappedPatternMatcher matcher = new MappedPatternMatcher(this, searchedGraph);
+        return matcher.toGraph(matcher.match());
+    }
+
+    /**
+     * Finds every embedding of a query graph in the store
+     *
+     * @param searchedGraph KnowledgeGraph  Query graph
+     * @return Every distinct binding, query node -> detached copy of the store node
+     */
+    public List<Map<Node, Node>> findMatches(KnowledgeGraph searchedGraph) {
+        MappedPatternMatcher matcher = new MappedPatternMatcher(this, searchedGraph);
+        return matcher.toNodes(matcher.match());
+    }
+
+    /**
+     * @return Detached copy of the link of an edge
+     */
+    Link getLink(int edge) {
+        int flags = region.getByte(typesPos + edge);
+        String name = getString(region.getInt(namesPos + 4L * edge));
+        Link link = Link.of(LINK_TYPES[flags & EDGE_TYPE_MASK], name, (flags & EDGE_ORIENTED) != 0);
+        if (!link.getName().equals(name))
+            link.setName(name);
+        link.setSearch((flags & EDGE_SEARCH) != 0);
+        link.setWeight(getWeight(edge));
+        return link;
+    }
+
+    private boolean matches(int node, int[] keys, int[] tags, long[] values) {
+        long start = region.getLong(propertyOffsetsPos + 8L * node);
+        long end = region.getLong(propertyOffsetsPos + 8L * (node + 1));
+        for (int i = 0; i < keys.length; ++i) {
+            boolean found = false;
+            for (long entry = start; entry < end; ++entry) {
+                long pos = propertiesPos + PROPERTY_SIZE * entry;
+                if (region.getInt(pos) == keys[i]) {
+                    found = region.getInt(pos + 4) == tags[i] && region.getLong(pos + 8) == values[i];
+                    break;
+                }
+            }
+            if (!found)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Code of the string in the dictionary, -1 if absent
+     */
+    private int findString(String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        int mask = stringSlots - 1;
+        for (int slot = mix(string.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            int code = region.getInt(stringTablePos + 4L * slot) - 1;
+            if (code == -1)
+                return -1;
+            if (stringEquals(code, bytes))
+                return code;
+        }
+    }
+
+    private boolean stringEquals(int code, byte[] bytes) {
+        long start = region.getLong(stringOffsetsPos + 8L * code);
+        long end = region.getLong(stringOffsetsPos + 8L * (code + 1));
+        if (end - start != bytes.length)
+            return false;
+        for (int i = 0; i < bytes.length; ++i)
+            if (region.getByte(stringBytesPos + start + i) != bytes[i])
+                return false;
+        return true;
+    }
+
+    private String getString(int code) {
+        long start = region.getLong(stringOffsetsPos + 8L * code);
+        long end = region.getLong(stringOffsetsPos + 8L * (code + 1));
+        byte[] bytes = new byte[(int) (end - start)];
+        for (int i = 0; i < bytes.length; ++i)
+            bytes[i] = region.getByte(stringBytesPos + start + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Object decode(int tag, long payload) {
+        switch (tag) {
+            case TAG_STRING:
+                return getString((int) payload);
+            case TAG_INT:
+                return (int) payload;
+            case TAG_LONG:
+                return payload;
+            case TAG_DOUBLE:
+                return Double.longBitsToDouble(payload);
+            case TAG_FLOAT:
+                return Float.intBitsToFloat((int) payload);
+            case TAG_TRUE:
+                return true;
+            case TAG_FALSE:
+                return false;
+            case TAG_BIG_INTEGER:
+                return new BigInteger(getString((int) payload));
+            case TAG_BIG_DECIMAL:
+                return new BigDecimal(getString((int) payload));
+            case TAG_JSON_OBJECT:
+                return new JSONObject(getString((int) payload));
+            case TAG_JSON_ARRAY:
+                return new JSONArray(getString((int) payload));
+            default:
+                return JSONObject.NULL;
+        }
+    }
+
+    /**
+     * @return Tag of a property value, -1 if it cannot be stored
+     */
+    private static int tagOf(Object value) {
+        if (value == null || value == JSONObject.NULL)
+            return TAG_NULL;
+        if (value instanceof String)
+            return TAG_STRING;
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte)
+            return TAG_INT;
+        if (value instanceof Long)
+            return TAG_LONG;
+        if (value instanceof Double)
+            return TAG_DOUBLE;
+        if (value instanceof Float)
+            return TAG_FLOAT;
+        if (value instanceof Boolean)
+            return (Boolean) value ? TAG_TRUE : TAG_FALSE;
+        if (value instanceof BigInteger)
+            return TAG_BIG_INTEGER;
+        if (value instanceof BigDecimal)
+            return TAG_BIG_DECIMAL;
+        if (value instanceof JSONObject)
+            return TAG_JSON_OBJECT;
+        if (value instanceof JSONArray)
+            return TAG_JSON_ARRAY;
+        return -1;
+    }
+
+    private static boolean isDictionaryTag(int tag) {
+        return tag == TAG_STRING || tag >= TAG_BIG_INTEGER;
+    }
+
+    /**
+     * @return Payload of a value in the store, the dictionary code (-1 if absent) for strings and texts
+     */
+    private long payloadOf(Object value, int tag) {
+        switch (tag) {
+            case TAG_INT:
+                return ((Number) value).intValue();
+            case TAG_LONG:
+                return (Long) value;
+            case TAG_DOUBLE:
+                return Double.doubleToLongBits((Double) value);
+            case TAG_FLOAT:
+                return Float.floatToIntBits((Float) value);
+            case TAG_NULL:
+            case TAG_TRUE:
+            case TAG_FALSE:
+                return 0;
+            default:
+                return findString(value.toString());
+        }
+    }
+
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Writes a graph in the mapped store format
+     *
+     * @param graph KnowledgeGraph  Graph to write
+     * @param path  String          Destination file (created or truncated)
+     * @throws IOException Write error or unsupported property value
+     */
+    public static void write(KnowledgeGraph graph, String path) throws IOException {
+        List<Node> nodes = graph.getNodes();
+        Map<String, Integer> ranks = new HashMap<>();
+        for (Node node : nodes)
+            ranks.put(node.getId(), ranks.size());
+
+        // dictionary
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        for (Node node : nodes) {
+            dictionary.putIfAbsent(node.getId(), dictionary.size());
+            for (Map.Entry<String, Property<?>> property : node.getAllProperties().entrySet()) {
+                dictionary.putIfAbsent(property.getKey(), dictionary.size());
+                Object value = property.getValue().getValue();
+                int tag = tagOf(value);
+                if (tag == -1)
+                    throw new IOException("Unsupported property type " + value.getClass().getName());
+                if (isDictionaryTag(tag))
+                    dictionary.putIfAbsent(value.toString(), dictionary.size());
+            }
+        }
+        for (Link link : graph.getLinks()) {
+            if (GraphSnapshot.typeOf(link) == GraphSnapshot.OTHER)
+                throw new IOException("Unsupported link type " + link.getClass().getName());
+            dictionary.putIfAbsent(link.getName(), dictionary.size());
+        }
+
+        List<byte[]> strings = new ArrayList<>(dictionary.size());
+        long stringBytes = 0;
+        for (String string : dictionary.keySet()) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            strings.add(bytes);
+            stringBytes += bytes.length;
+        }
+        int stringSlots = Integer.highestOneBit(Math.max(2, dictionary.size() * 2 - 1)) << 1;
+        int[] stringTable = new int[stringSlots];
+        for (Map.Entry<String, Integer> entry : dictionary.entrySet()) {
+            int slot = mix(entry.getKey().hashCode()) & (stringSlots - 1);
+            while (stringTable[slot] != 0)
+                slot = (slot + 1) & (stringSlots - 1);
+            stringTable[slot] = entry.getValue() + 1;
+        }
+
+        // adjacency degrees
+        int[] degrees = new int[nodes.size()];
+        for (Link link : graph.getLinks()) {
+            int from = ranks.get(link.getFrom().getId());
+            int to = ranks.get(link.getTo().getId());
+            degrees[from]++;
+            if (from != to)
+                degrees[to]++;
+        }
+        long edgeTotal = 0;
+        for (int degree : degrees)
+            edgeTotal += degree;
+        if (edgeTotal > Integer.MAX_VALUE)
+            throw new IOException("Too many links for the mapped store");
+        int edgeCount = (int) edgeTotal;
+
+        long propertyCount = 0;
+        for (Node node : nodes)
+            propertyCount += node.getAllProperties().size();
+
+        // section positions
+        int nodeCount = nodes.size();
+        long[] sections = new long[14];
+        long pos = HEADER_SIZE;
+        long[] sizes = {
+                8L * (dictionary.size() + 1), stringBytes, 4L * stringSlots,
+                4L * nodeCount, nodeCount, 4L * dictionary.size(),
+                8L * (nodeCount + 1), PROPERTY_SIZE * propertyCount,
+                4L * (nodeCount + 1), 4L * edgeCount, edgeCount, 4L * edgeCount, 8L * edgeCount
+        };
+        for (int i = 0; i < sizes.length; ++i) {
+            sections[i] = pos;
+            pos = align(pos + sizes[i]);
+        }
+        sections[13] = pos;
+
+        try (OutputStream file = Files.newOutputStream(Paths.get(path));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(MAGIC_NUMBER);
+            out.writeInt(STORE_VERSION);
+            out.writeInt(nodeCount);
+            out.writeInt(edgeCount);
+            out.writeInt(dictionary.size());
+            out.writeInt(stringSlots);
+            for (int i = 0; i < 13; ++i)
+                out.writeLong(sections[i]);
+            pad(out, HEADER_SIZE);
+
+            long offset = 0;
+            for (byte[] bytes : strings) {
+                out.writeLong(offset);
+                offset += bytes.length;
+            }
+            out.writeLong(offset);
+            pad(out, sections[1]);
+            for (byte[] bytes : strings)
+                out.write(bytes);
+            pad(out, sections[2]);
+            for (int slot : stringTable)
+                out.writeInt(slot);
+            pad(out, sections[3]);
+
+            for (Node node : nodes)
+                out.writeInt(dictionary.get(node.getId()));
+            pad(out, sections[4]);
+            for (Node node : nodes)
+                out.writeByte((node instanceof ConceptNode ? FLAG_CONCEPT : 0) | (node.isSearched() ? FLAG_SEARCH : 0));
+            pad(out, sections[5]);
+            int[] nodeByString = new int[dictionary.size()];
+            java.util.Arrays.fill(nodeByString, -1);
+            for (int i = 0; i < nodeCount; ++i)
+                nodeByString[dictionary.get(nodes.get(i).getId())] = i;
+            for (int node : nodeByString)
+                out.writeInt(node);
+            pad(out, sections[6]);
+
+            long entry = 0;
+            for (Node node : nodes) {
+                out.writeLong(entry);
+                entry += node.getAllProperties().size();
+            }
+            out.writeLong(entry);
+            pad(out, sections[7]);
+            for (Node node : nodes) {
+                for (Map.Entry<String, Property<?>> property : node.getAllProperties().entrySet()) {
+                    Object value = property.getValue().getValue();
+                    int tag = tagOf(value);
+                    out.writeInt(dictionary.get(property.getKey()));
+                    out.writeInt(tag);
+                    out.writeLong(isDictionaryTag(tag) ? dictionary.get(value.toString()) : payloadOfValue(value, tag));
+                }
+            }
+            pad(out, sections[8]);
+
+            // adjacency, built one section at a time to keep a single int[] per section in memory
+            int[] offsets = new int[nodeCount + 1];
+            for (int i = 0; i < nodeCount; ++i)
+                offsets[i + 1] = offsets[i] + degrees[i];
+            for (int value : offsets)
+                out.writeInt(value);
+            pad(out, sections[9]);
+
+            Link[] edgeLinks = new Link[edgeCount];
+            boolean[] outgoing = new boolean[edgeCount];
+            int[] targets = new int[edgeCount];
+            int[] cursor = java.util.Arrays.copyOf(offsets, nodeCount);
+            for (Link link : graph.getLinks()) {
+                int from = ranks.get(link.getFrom().getId());
+                int to = ranks.get(link.getTo().getId());
+                int edge = cursor[from]++;
+                edgeLinks[edge] = link;
+                outgoing[edge] = true;
+                targets[edge] = to;
+                if (from != to) {
+                    edge = cursor[to]++;
+                    edgeLinks[edge] = link;
+                    targets[edge] = from;
+                }
+            }
+            for (int target : targets)
+                out.writeInt(target);
+            pad(out, sections[10]);
+            for (int edge = 0; edge < edgeCount; ++edge) {
+                Link link = edgeLinks[edge];
+                out.writeByte(GraphSnapshot.typeOf(link) | (outgoing[edge] ? EDGE_OUTGOING : 0)
+                        | (link.isOriented() ? EDGE_ORIENTED : 0) | (link.isSearched() ? EDGE_SEARCH : 0));
+            }
+            pad(out, sections[11]);
+            for (Link link : edgeLinks)
+                out.writeInt(dictionary.get(link.getName()));
+            pad(out, sections[12]);
+            for (Link link : edgeLinks)
+                out.writeDouble(link.getWeight());
+            pad(out, sections[13]);
+        }
+    }
+
+    private static long payloadOfValue(Object value, int tag) {
+        switch (tag) {
+            case TAG_INT:
+                return ((Number) value).intValue();
+            case TAG_LONG:
+                return (Long) value;
+            case TAG_DOUBLE:
+                return Double.doubleToLongBits((Double) value);
+            case TAG_FLOAT:
+                return Float.floatToIntBits((Float) value);
+            default:
+                return 0;
+        }
+    }
+
+    private static long align(long pos) {
+        return (pos + 7) & ~7L;
+    }
+
+    private static void pad(DataOutputStream out, long pos) throws IOException {
+        while (out.size() < pos && out.size() != Integer.MAX_VALUE)
+            out.writeByte(0);
+    }
+
+    /**
+     * Read-only mapping of a whole file, split in chunks so that it may exceed 2 GB.
+     * Values are 8-byte aligned in the file so that none of them spans two chunks.
+     */
+    private static final class MappedRegion {
+        private static final int CHUNK_BITS = 30;
+        private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+        private final ByteBuffer[] chunks;
+
+        private MappedRegion(FileChannel channel) throws IOException {
+            long size = channel.size();
+            chunks = new ByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_BITS)];
+            for (int i = 0; i < chunks.length; ++i) {
+                long start = (long) i << CHUNK_BITS;
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(size - start, 1L << CHUNK_BITS));
+                chunks[i] = chunk;
+            }
+        }
+
+        private byte getByte(long pos) {
+            return chunks[(int) (pos >>> CHUNK_BITS)].get((int) (pos & CHUNK_MASK));
+        }
+
+        private int getInt(long pos) {
+            return chunks[(int) (pos >>> CHUNK_BITS)].getInt((int) (pos & CHUNK_MASK));
+        }
+
+        private long getLong(long pos) {
+            return chunks[(int) (pos >>> CHUNK_BITS)].getLong((int) (pos & CHUNK_MASK));
+        }
+
+        private double getDouble(long pos) {
+            return chunks[(int) (pos >>> CHUNK_BITS)].getDouble((int) (pos & CHUNK_MASK));
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package model;
+
+import exceptions.NoLinkedNodeException;
+import model.link.Link;
+import model.node.ConceptNode;
+import model.node.Node;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Finds every embedding of a query graph into a mapped graph store, with the semantics of PatternMatcher,
+ * walking the mapped adjacency by dense node index. Only the nodes and links of the matches are
+ * materialized : the heap holds the candidate bit sets of the constrained query nodes, and the bindings.
+ *
+ * Query nodes with properties start from the store nodes matching them, then the candidates are propagated
+ * along the query links. Query nodes left unconstrained are never enumerated unless the whole query is :
+ * their candidates come from the adjacency of the already matched nodes.
+ */
+class MappedPatternMatcher {
+    private final MappedGraphStore store;
+    private final KnowledgeGraph query;
+
+    /**
+     * Query nodes in matching order
+     */
+    private final Node[] order;
+
+    /**
+     * For each position, the query links towards nodes of lower positions, self-loops last
+     */
+    private final List<List<Link>> backLinks;
+
+    /**
+     * For each position, the store nodes compatible with the query node, null if unconstrained
+     */
+    private final BitSet[] candidates;
+
+    /**
+     * For each position, the minimum number of edges of each link type
+     */
+    private final int[][] degrees;
+
+    MappedPatternMatcher(MappedGraphStore store, KnowledgeGraph query) {
+        this.store = store;
+        this.query = query;
+
+        List<Node> queryNodes = query.getNodes();
+        Map<Node, BitSet> compatible = findCandidates(queryNodes);
+
+        order = new Node[queryNodes.size()];
+        backLinks = new ArrayList<>();
+        candidates = new BitSet[order.length];
+        degrees = new int[order.length][];
+
+        Set<Node> placed = new HashSet<>();
+        for (int position = 0; position < order.length; ++position) {
+            // most connected to the already placed nodes, then most selective
+            Node next = null;
+            int nextLinks = -1;
+            for (Node queryNode : queryNodes) {
+                if (placed.contains(queryNode))
+                    continue;
+                int links = 0;
+                for (Link link : queryNode.getLinks())
+                    if (placed.contains(otherExtremity(link, queryNode)))
+                        links++;
+                if (next == null || links > nextLinks ||
+                        (links == nextLinks && size(compatible.get(queryNode)) < size(compatible.get(next)))) {
+                    next = queryNode;
+                    nextLinks = links;
+                }
+            }
+
+            List<Link> back = new ArrayList<>();
+            List<Link> loops = new ArrayList<>();
+            int[] nodeDegrees = new int[GraphSnapshot.OTHER + 1];
+            for (Link link : next.getLinks()) {
+                Node other = otherExtremity(link, next);
+                if (other == next)
+                    loops.add(link);
+                else if (placed.contains(other))
+                    back.add(link);
+                nodeDegrees[GraphSnapshot.typeOf(link)]++;
+            }
+            back.addAll(loops);
+
+            order[position] = next;
+            placed.add(next);
+            backLinks.add(back);
+            candidates[position] = compatible.get(next);
+            degrees[position] = nodeDegrees;
+        }
+    }
+
+    /**
+     * @return Every distinct binding, query node -> dense store node index
+     */
+    List<Map<Node, Integer>> match() {
+        List<Map<Node, Integer>> matches = new ArrayList<>();
+        if (order.length == 0)
+            return matches;
+
+        int[] images = new int[order.length];
+        for (int seed : getCandidates(0, images))
+            if (accepts(0, seed, images))
+                extend(1, images, matches);
+        return matches;
+    }
+
+    /**
+     * @param matches List<>          Bindings
+     * @return Bindings to detached copies of the store nodes, each store node materialized once
+     */
+    List<Map<Node, Node>> toNodes(List<Map<Node, Integer>> matches) {
+        Map<Integer, Node> nodes = new HashMap<>();
+        List<Map<Node, Node>> bindings = new ArrayList<>(matches.size());
+        for (Map<Node, Integer> match : matches) {
+            Map<Node, Node> binding = new LinkedHashMap<>();
+            for (Map.Entry<Node, Integer> image : match.entrySet())
+                binding.put(image.getKey(), nodes.computeIfAbsent(image.getValue(), store::getNode));
+            bindings.add(binding);
+        }
+        return bindings;
+    }
+
+    /**
+     * Builds the union of the bindings as a standalone graph made of the matched store nodes and links
+     *
+     * @param matches List<>          Bindings
+     * @return Result graph
+     */
+    KnowledgeGraph toGraph(List<Map<Node, Integer>> matches) {
+        KnowledgeGraph result = new KnowledgeGraph(false);
+        Map<Integer, Node> copies = new HashMap<>();
+        Set<Integer> copiedEdges = new HashSet<>();
+
+        for (Map<Node, Integer> binding : matches) {
+            for (int image : binding.values()) {
+                if (!copies.containsKey(image)) {
+                    Node copy = store.getNode(image);
+                    copies.put(image, copy);
+                    result.addNodes(copy);
+                }
+            }
+
+            for (Link queryLink : query.getLinks()) {
+                Integer from = binding.get(queryLink.getFrom());
+                Integer to = binding.get(queryLink.getTo());
+                if (from == null || to == null)
+                    continue;
+                byte type = GraphSnapshot.typeOf(queryLink);
+                // every store link is identified by its outgoing edge
+                copyLinks(result, copies, copiedEdges, from, to, type);
+                if (!queryLink.isOriented() && !from.equals(to))
+                    copyLinks(result, copies, copiedEdges, to, from, type);
+            }
+        }
+        return result;
+    }
+
+    private void copyLinks(KnowledgeGraph result, Map<Integer, Node> copies, Set<Integer> copiedEdges,
+                           int from, int to, byte type) {
+        for (int edge = store.getFirstEdge(from); edge < store.getEndEdge(from); ++edge) {
+            if (store.getTarget(edge) == to && store.getType(edge) == type && store.isOutgoing(edge)
+                    && copiedEdges.add(edge))
+                result.addLink(copies.get(from), copies.get(to), store.getLink(edge));
+        }
+    }
+
+    private void extend(int position, int[] images, List<Map<Node, Integer>> matches) {
+        if (position == order.length) {
+            matches.add(toBinding(images));
+            return;
+        }
+
+        for (int candidate : getCandidates(position, images))
+            if (accepts(position, candidate, images))
+                extend(position + 1, images, matches);
+    }
+
+    /**
+     * Store nodes to try for a position : the neighbours of a matched node through the first back link,
+     * else the compatible nodes, else every node
+     */
+    private Iterable<Integer> getCandidates(int position, int[] images) {
+        List<Link> back = backLinks.get(position);
+        if (back.isEmpty() || back.get(0).getFrom() == back.get(0).getTo())
+            return candidates[position] != null ? candidates[position].stream()::iterator : allNodes();
+
+        Link anchor = back.get(0);
+        boolean anchorIsOrigin = anchor.getTo() == order[position];
+        int anchorImage = images[indexOf(otherExtremity(anchor, order[position]))];
+        byte type = GraphSnapshot.typeOf(anchor);
+        Set<Integer> neighbours = new LinkedHashSet<>();
+        for (int edge = store.getFirstEdge(anchorImage); edge < store.getEndEdge(anchorImage); ++edge) {
+            if (store.getType(edge) != type)
+                continue;
+            // an oriented query link only follows store links in the same direction
+            if (anchor.isOriented() && store.isOutgoing(edge) != anchorIsOrigin)
+                continue;
+            neighbours.add(store.getTarget(edge));
+        }
+        return neighbours;
+    }
+
+    private Iterable<Integer> allNodes() {
+        return () -> IntStream.range(0, store.getNodeCount()).iterator();
+    }
+
+    /**
+     * Binds the candidate to the position if it is compatible with the bindings of the previous positions
+     *
+     * @return true if the candidate has been bound
+     */
+    private boolean accepts(int position, int candidate, int[] images) {
+        for (int i = 0; i < position; ++i)
+            if (images[i] == candidate)
+                return false;
+        if (candidates[position] != null ? !candidates[position].get(candidate)
+                : store.isConcept(candidate) != (order[position] instanceof ConceptNode))
+            return false;
+        if (!hasDegrees(candidate, degrees[position]))
+            return false;
+
+        images[position] = candidate;
+        for (Link queryLink : backLinks.get(position)) {
+            int from = images[indexOf(queryLink.getFrom())];
+            int to = images[indexOf(queryLink.getTo())];
+            if (!hasEdge(from, to, GraphSnapshot.typeOf(queryLink), queryLink.isOriented()))
+                return false;
+        }
+        return true;
+    }
+
+    private boolean hasDegrees(int node, int[] minimum) {
+        int[] found = new int[minimum.length];
+        for (int edge = store.getFirstEdge(node); edge < store.getEndEdge(node); ++edge) {
+            int type = store.getType(edge);
+            if (type < found.length)
+                found[type]++;
+        }
+        for (int type = 0; type < minimum.length; ++type)
+            if (found[type] < minimum[type])
+                return false;
+        return true;
+    }
+
+    /**
+     * @return true if a store link of the type goes from `from` to `to` (in either direction if not oriented),
+     *         looked up in the adjacency of the extremity of lower degree
+     */
+    private boolean hasEdge(int from, int to, byte type, boolean oriented) {
+        boolean fromSide = from == to || store.getDegree(from) <= store.getDegree(to);
+        int node = fromSide ? from : to;
+        int target = fromSide ? to : from;
+        for (int edge = store.getFirstEdge(node); edge < store.getEndEdge(node); ++edge) {
+            if (store.getTarget(edge) == target && store.getType(edge) == type
+                    && (!oriented || store.isOutgoing(edge) == fromSide))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Candidates of the query nodes with properties, restricted along the query links until nothing changes
+     */
+    private Map<Node, BitSet> findCandidates(List<Node> queryNodes) {
+        Map<Node, BitSet> compatible = new HashMap<>();
+        for (Node queryNode : queryNodes)
+            if (!queryNode.getProperties().isEmpty())
+                compatible.put(queryNode, filterType(store.findNodeIndexes(queryNode.getProperties()), queryNode));
+
+        boolean changed = true;
+        for (int round = 0; changed && round <= queryNodes.size(); ++round) {
+            changed = false;
+            for (Link queryLink : query.getLinks()) {
+                changed |= propagate(compatible, queryLink, queryLink.getFrom(), queryLink.getTo(), true);
+                changed |= propagate(compatible, queryLink, queryLink.getTo(), queryLink.getFrom(), false);
+            }
+        }
+        return compatible;
+    }
+
+    /**
+     * Restricts the candidates of `to` to the neighbours of the candidates of `from` through the query link
+     *
+     * @return true if the candidates of `to` changed
+     */
+    private boolean propagate(Map<Node, BitSet> compatible, Link queryLink, Node from, Node to, boolean forward) {
+        BitSet origins = compatible.get(from);
+        if (origins == null)
+            return false;
+
+        byte type = GraphSnapshot.typeOf(queryLink);
+        BitSet reached = new BitSet(store.getNodeCount());
+        for (int node = origins.nextSetBit(0); node >= 0; node = origins.nextSetBit(node + 1)) {
+            for (int edge = store.getFirstEdge(node); edge < store.getEndEdge(node); ++edge) {
+                if (store.getType(edge) != type)
+                    continue;
+                if (queryLink.isOriented() && store.isOutgoing(edge) != forward)
+                    continue;
+                reached.set(store.getTarget(edge));
+            }
+        }
+        reached = filterType(reached, to);
+
+        BitSet current = compatible.get(to);
+        if (current == null) {
+            compatible.put(to, reached);
+            return true;
+        }
+        int before = current.cardinality();
+        current.and(reached);
+        return current.cardinality() != before;
+    }
+
+    private BitSet filterType(BitSet nodes, Node queryNode) {
+        boolean concept = queryNode instanceof ConceptNode;
+        for (int node = nodes.nextSetBit(0); node >= 0; node = nodes.nextSetBit(node + 1))
+            if (store.isConcept(node) != concept)
+                nodes.clear(node);
+        return nodes;
+    }
+
+    private int size(BitSet nodes) {
+        return nodes == null ? store.getNodeCount() : nodes.cardinality();
+    }
+
+    private int indexOf(Node queryNode) {
+        for (int i = 0; i < order.length; ++i)
+            if (order[i] == queryNode)
+                return i;
+        return -1;
+    }
+
+    private Map<Node, Integer> toBinding(int[] images) {
+        Map<Node, Integer> binding = new LinkedHashMap<>();
+        for (Node queryNode : query.getNodes())
+            binding.put(queryNode, images[indexOf(queryNode)]);
+        return binding;
+    }
+
+    private static Node otherExtremity(Link link, Node node) {
+        try {
+            return link.getLinkedNode(node);
+        } catch (NoLinkedNodeException e) {
+            return null;
+        }
+    }
+}
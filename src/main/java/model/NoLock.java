@@ -0,0 +1,81 @@
+package model;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * Read/write lock that never blocks, used by graphs that are not shared between threads.
+ * The read-only variant refuses the write lock, which makes every modification of the graph fail.
+ */
+final class NoLock implements ReadWriteLock {
+    static final NoLock INSTANCE = new NoLock(new Free(), new Free());
+    static final NoLock READ_ONLY = new NoLock(new Free(), new Refused());
+
+    private final Lock readLock;
+    private final Lock writeLock;
+
+    private NoLock(Lock readLock, Lock writeLock) {
+        this.readLock = readLock;
+        this.writeLock = writeLock;
+    }
+
+    @Override
+    public Lock readLock() {
+        return readLock;
+    }
+
+    @Override
+    public Lock writeLock() {
+        return writeLock;
+    }
+
+    private static class Free implements Lock {
+        @Override
+        public void lock() {}
+
+        @Override
+        public void lockInterruptibly() {}
+
+        @Override
+        public boolean tryLock() {
+            return true;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) {
+            return true;
+        }
+
+        @Override
+        public void unlock() {}
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException("NoLock has no condition");
+        }
+    }
+
+    private static final class Refused extends Free {
+        @Override
+        public void lock() {
+            throw new UnsupportedOperationException("Read-only graph");
+        }
+
+        @Override
+        public void lockInterruptibly() {
+            lock();
+        }
+
+        @Override
+        public boolean tryLock() {
+            return false;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) {
+            return false;
+        }
+    }
+}
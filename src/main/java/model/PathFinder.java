@@ -0,0 +1,389 @@
+package model;
+
+import model.node.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shortest path search over a GraphSnapshot, ignoring link orientation.
+ * Work buffers are allocated once and reused by every search.
+ */
+public class PathFinder {
+    /**
+     * Search algorithm
+     */
+    public enum Mode {
+        /**
+         * Dijkstra's algorithm with a binary heap, or a plain BFS when every link weighs 1
+         */
+        DIJKSTRA,
+
+        /**
+         * Dijkstra's algorithm run from both extremities until the searches meet
+         */
+        BIDIRECTIONAL,
+
+        /**
+         * A* guided by landmark distance bounds (ALT)
+         */
+        ASTAR
+    }
+
+    /**
+     * Number of landmarks used by the A* mode
+     */
+    public static final int DEFAULT_LANDMARKS = 8;
+
+    private final GraphSnapshot graph;
+
+    private final double[] distances;
+    private final int[] parents;
+    private final int[] hops;
+    private final int[] queue;
+    private final boolean[] settled;
+
+    private final NodeHeap heap;
+
+    /**
+     * Backward search buffers (lazily allocated)
+     */
+    private double[] backDistances;
+    private int[] backParents;
+    private boolean[] backSettled;
+    private NodeHeap backHeap;
+
+    /**
+     * Distances from each landmark to every node (lazily computed)
+     */
+    private double[][] landmarkDistances;
+
+    public PathFinder(GraphSnapshot graph) {
+        this.graph = graph;
+        int nodeCount = graph.getNodeCount();
+        distances = new double[nodeCount];
+        parents = new int[nodeCount];
+        hops = new int[nodeCount];
+        queue = new int[nodeCount];
+        settled = new boolean[nodeCount];
+        heap = new NodeHeap(16);
+    }
+
+    /**
+     * @param origin      Origin Node
+     * @param destination Destination Node
+     * @return List of the nodes to get from origin to destination, empty if unreachable
+     */
+    public List<Node> shortestPath(Node origin, Node destination) {
+        return shortestPath(origin, destination, Mode.DIJKSTRA);
+    }
+
+    /**
+     * @param origin      Origin Node
+     * @param destination Destination Node
+     * @param mode        Mode            Search algorithm
+     * @return List of the nodes to get from origin to destination, empty if unreachable
+     */
+    public List<Node> shortestPath(Node origin, Node destination, Mode mode) {
+        int source = graph.indexOf(origin);
+        int target = graph.indexOf(destination);
+        if (source == -1 || target == -1)
+            return Collections.emptyList();
+
+        switch (mode) {
+            case BIDIRECTIONAL:
+                int meeting = bidirectional(source, target);
+                return meeting == -1 ? Collections.emptyList() : buildBidirectionalPath(meeting);
+
+            case ASTAR:
+                if (landmarkDistances == null)
+                    prepareLandmarks(DEFAULT_LANDMARKS);
+                return astar(source, target) ? buildPath(target) : Collections.emptyList();
+
+            default:
+                boolean reached = graph.isUnweighted() ? bfs(source, target) : dijkstra(source, target);
+                return reached ? buildPath(target) : Collections.emptyList();
+        }
+    }
+
+    /**
+     * Precomputes the distances from `count` landmarks used by the A* mode.
+     * Landmarks are picked one after the other as the node farthest from the
+     * already chosen ones (the first one being the node of highest degree).
+     *
+     * @param count int             Number of landmarks
+     */
+    public void prepareLandmarks(int count) {
+        int nodeCount = graph.getNodeCount();
+        count = Math.min(count, nodeCount);
+        landmarkDistances = new double[count][];
+        if (count == 0)
+            return;
+
+        int landmark = 0;
+        for (int node = 1; node < nodeCount; ++node)
+            if (graph.getDegree(node) > graph.getDegree(landmark))
+                landmark = node;
+
+        double[] closest = new double[nodeCount];
+        Arrays.fill(closest, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < count; ++i) {
+            if (graph.isUnweighted())
+                bfs(landmark, -1);
+            else
+                dijkstra(landmark, -1);
+            landmarkDistances[i] = distances.clone();
+
+            // next landmark : reachable node farthest from every landmark
+            int next = -1;
+            for (int node = 0; node < nodeCount; ++node) {
+                if (distances[node] < closest[node])
+                    closest[node] = distances[node];
+                if (closest[node] != Double.POSITIVE_INFINITY && (next == -1 || closest[node] > closest[next]))
+                    next = node;
+            }
+            if (next == -1 || closest[next] == 0) {
+                landmarkDistances = Arrays.copyOf(landmarkDistances, i + 1);
+                break;
+            }
+            landmark = next;
+        }
+    }
+
+    /**
+     * @param destination Node
+     * @return Distance from the origin of the last search, Double.POSITIVE_INFINITY if not reached
+     */
+    public double getLastDistance(Node destination) {
+        int target = graph.indexOf(destination);
+        return target == -1 ? Double.POSITIVE_INFINITY : distances[target];
+    }
+
+    private boolean bfs(int source, int target) {
+        graph.bfs(source, hops, parents, queue);
+        for (int i = 0; i < hops.length; ++i)
+            distances[i] = hops[i] == -1 ? Double.POSITIVE_INFINITY : hops[i];
+        return target != -1 && hops[target] != -1;
+    }
+
+    private boolean dijkstra(int source, int target) {
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        Arrays.fill(parents, -1);
+        Arrays.fill(settled, false);
+        heap.clear();
+
+        distances[source] = 0;
+        heap.push(source, 0);
+        while (!heap.isEmpty()) {
+            int node = heap.pop();
+            if (settled[node])
+                continue; // stale heap entry
+            settled[node] = true;
+            if (node == target)
+                return true;
+
+            for (int edge = graph.getFirstEdge(node); edge < graph.getEndEdge(node); ++edge) {
+                int next = graph.getTarget(edge);
+                double distance = distances[node] + graph.getWeight(edge);
+                if (!settled[next] && distance < distances[next]) {
+                    distances[next] = distance;
+                    parents[next] = node;
+                    heap.push(next, distance);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Meeting node of the forward and backward searches, -1 if unreachable
+     */
+    private int bidirectional(int source, int target) {
+        int nodeCount = graph.getNodeCount();
+        if (backHeap == null) {
+            backDistances = new double[nodeCount];
+            backParents = new int[nodeCount];
+            backSettled = new boolean[nodeCount];
+            backHeap = new NodeHeap(16);
+        }
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        Arrays.fill(parents, -1);
+        Arrays.fill(settled, false);
+        Arrays.fill(backDistances, Double.POSITIVE_INFINITY);
+        Arrays.fill(backParents, -1);
+        Arrays.fill(backSettled, false);
+        heap.clear();
+        backHeap.clear();
+
+        distances[source] = 0;
+        backDistances[target] = 0;
+        heap.push(source, 0);
+        backHeap.push(target, 0);
+
+        double best = source == target ? 0 : Double.POSITIVE_INFINITY;
+        int meeting = source == target ? source : -1;
+        while (!heap.isEmpty() && !backHeap.isEmpty()) {
+            if (heap.peekKey() + backHeap.peekKey() >= best)
+                break;
+
+            boolean forward = heap.peekKey() <= backHeap.peekKey();
+            NodeHeap sideHeap = forward ? heap : backHeap;
+            double[] sideDistances = forward ? distances : backDistances;
+            double[] otherDistances = forward ? backDistances : distances;
+            int[] sideParents = forward ? parents : backParents;
+            boolean[] sideSettled = forward ? settled : backSettled;
+
+            int node = sideHeap.pop();
+            if (sideSettled[node])
+                continue; // stale heap entry
+            sideSettled[node] = true;
+
+            for (int edge = graph.getFirstEdge(node); edge < graph.getEndEdge(node); ++edge) {
+                int next = graph.getTarget(edge);
+                double distance = sideDistances[node] + graph.getWeight(edge);
+                if (!sideSettled[next] && distance < sideDistances[next]) {
+                    sideDistances[next] = distance;
+                    sideParents[next] = node;
+                    sideHeap.push(next, distance);
+                }
+                if (sideDistances[next] + otherDistances[next] < best) {
+                    best = sideDistances[next] + otherDistances[next];
+                    meeting = next;
+                }
+            }
+        }
+
+        if (meeting != -1)
+            distances[target] = best;
+        return meeting;
+    }
+
+    private boolean astar(int source, int target) {
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        Arrays.fill(parents, -1);
+        Arrays.fill(settled, false);
+        heap.clear();
+
+        distances[source] = 0;
+        heap.push(source, heuristic(source, target));
+        while (!heap.isEmpty()) {
+            int node = heap.pop();
+            if (settled[node])
+                continue; // stale heap entry
+            settled[node] = true;
+            if (node == target)
+                return true;
+
+            for (int edge = graph.getFirstEdge(node); edge < graph.getEndEdge(node); ++edge) {
+                int next = graph.getTarget(edge);
+                double distance = distances[node] + graph.getWeight(edge);
+                if (!settled[next] && distance < distances[next]) {
+                    distances[next] = distance;
+                    parents[next] = node;
+                    heap.push(next, distance + heuristic(next, target));
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lower bound of the distance between two nodes given by the triangle inequality on landmarks
+     */
+    private double heuristic(int node, int target) {
+        double bound = 0;
+        for (double[] fromLandmark : landmarkDistances) {
+            double toNode = fromLandmark[node];
+            double toTarget = fromLandmark[target];
+            if (toNode != Double.POSITIVE_INFINITY && toTarget != Double.POSITIVE_INFINITY)
+                bound = Math.max(bound, Math.abs(toTarget - toNode));
+        }
+        return bound;
+    }
+
+    /**
+     * Path through the meeting node of a bidirectional search
+     */
+    private List<Node> buildBidirectionalPath(int meeting) {
+        List<Node> path = buildPath(meeting);
+        for (int node = backParents[meeting]; node != -1; node = backParents[node])
+            path.add(graph.getNode(node));
+        return path;
+    }
+
+    private List<Node> buildPath(int target) {
+        List<Node> path = new ArrayList<>();
+        for (int node = target; node != -1; node = parents[node])
+            path.add(graph.getNode(node));
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Binary min-heap of (node, distance) with lazy deletion
+     */
+    static final class NodeHeap {
+        private int[] nodes;
+        private double[] keys;
+        private int size;
+
+        NodeHeap(int capacity) {
+            nodes = new int[capacity];
+            keys = new double[capacity];
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        double peekKey() {
+            return keys[0];
+        }
+
+        void push(int node, double key) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (keys[parent] <= key)
+                    break;
+                nodes[i] = nodes[parent];
+                keys[i] = keys[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            keys[i] = key;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            int lastNode = nodes[--size];
+            double lastKey = keys[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size)
+                    break;
+                if (child + 1 < size && keys[child + 1] < keys[child])
+                    child++;
+                if (keys[child] >= lastKey)
+                    break;
+                nodes[i] = nodes[child];
+                keys[i] = keys[child];
+                i = child;
+            }
+            nodes[i] = lastNode;
+            keys[i] = lastKey;
+            return top;
+        }
+    }
+}
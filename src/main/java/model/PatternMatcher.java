@@ -0,0 +1,408 @@
+package model;
+
+import exceptions.NoLinkedNodeException;
+import model.link.Link;
+import model.node.Node;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Finds every embedding of a query graph into a data graph (subgraph isomorphism).
+ *
+ * A query node matches a data node when it is a subset of it (same type, subset of its properties),
+ * a query link matches a data link of the same type between the matched extremities
+ * (in the same direction when the query link is oriented). Two query nodes never match the same data node.
+ *
+ * Query nodes are matched one at a time, starting from the most selective one and then following
+ * the query links, so that candidates come from the adjacency of already matched nodes.
+ * Candidates are pruned on node type, properties and per link type degree.
+ */
+class PatternMatcher {
+    private final KnowledgeGraph data;
+    private final KnowledgeGraph query;
+
+    /**
+     * Query nodes in matching order
+     */
+    private final Node[] order;
+
+    /**
+     * For each position, the query links towards nodes of lower positions
+     */
+    private final List<List<Link>> backLinks;
+
+    /**
+     * For each position, the data nodes compatible with the query node
+     */
+    private final List<List<Node>> candidates;
+    private final List<Set<Node>> candidateSets;
+
+    PatternMatcher(KnowledgeGraph data, KnowledgeGraph query) {
+        this.data = data;
+        this.query = query;
+
+        List<Node> queryNodes = query.getNodes();
+        Map<Node, List<Node>> compatible = new HashMap<>();
+        for (Node queryNode : queryNodes)
+            compatible.put(queryNode, findCandidates(queryNode));
+
+        order = new Node[queryNodes.size()];
+        backLinks = new ArrayList<>();
+        candidates = new ArrayList<>();
+        candidateSets = new ArrayList<>();
+
+        Set<Node> placed = new HashSet<>();
+        for (int position = 0; position < order.length; ++position) {
+            // most connected to the already placed nodes, then most selective
+            Node next = null;
+            int nextLinks = -1;
+            for (Node queryNode : queryNodes) {
+                if (placed.contains(queryNode))
+                    continue;
+                int links = 0;
+                for (Link link : queryNode.getLinks())
+                    if (placed.contains(otherExtremity(link, queryNode)))
+                        links++;
+                if (next == null || links > nextLinks ||
+                        (links == nextLinks && compatible.get(queryNode).size() < compatible.get(next).size())) {
+                    next = queryNode;
+                    nextLinks = links;
+                }
+            }
+
+            // self-loops last, so that the first back link leads to a matched node
+            List<Link> back = new ArrayList<>();
+            List<Link> loops = new ArrayList<>();
+            for (Link link : next.getLinks()) {
+                Node other = otherExtremity(link, next);
+                if (other == next)
+                    loops.add(link);
+                else if (placed.contains(other))
+                    back.add(link);
+            }
+            back.addAll(loops);
+
+            order[position] = next;
+            placed.add(next);
+            backLinks.add(back);
+            candidates.add(compatible.get(next));
+            candidateSets.add(new HashSet<>(compatible.get(next)));
+        }
+    }
+
+    /**
+     * @return Every distinct binding, query node -> data node, in query node order
+     */
+    List<Map<Node, Node>> match() {
+        List<Map<Node, Node>> matches = new ArrayList<>();
+        if (order.length == 0)
+            return matches;
+
+        for (Node seed : getSeeds())
+            matchFrom(seed, matches);
+        return matches;
+    }
+
+    /**
+     * Splits the search across a fork-join pool. The partial bindings of the first query nodes
+     * are expanded until there are enough of them to keep every worker busy, then each task
+     * completes its own range of partial bindings. Matches are concatenated in range order,
+     * so the result is the same as match().
+     *
+     * @param pool ForkJoinPool    Pool running the search
+     * @return Every distinct binding, query node -> data node, in query node order
+     */
+    List<Map<Node, Node>> match(ForkJoinPool pool) {
+        if (order.length == 0)
+            return new ArrayList<>();
+
+        List<Node[]> prefixes = new ArrayList<>();
+        for (Node seed : getSeeds()) {
+            Node[] images = new Node[order.length];
+            images[0] = seed;
+            if (isConsistent(0, images))
+                prefixes.add(images);
+        }
+
+        int wanted = pool.getParallelism() * 8;
+        int depth = 1;
+        while (prefixes.size() < wanted && depth < order.length && !prefixes.isEmpty()) {
+            List<Node[]> expanded = new ArrayList<>();
+            for (Node[] prefix : prefixes) {
+                Set<Node> used = usedBy(prefix, depth);
+                for (Node candidate : getCandidates(depth, prefix)) {
+                    if (accepts(depth, candidate, prefix, used)) {
+                        expanded.add(prefix.clone());
+                        prefix[depth] = null;
+                    }
+                }
+            }
+            prefixes = expanded;
+            depth++;
+        }
+
+        int threshold = Math.max(1, prefixes.size() / wanted);
+        return pool.invoke(new PrefixTask(prefixes, depth, 0, prefixes.size(), threshold));
+    }
+
+    /**
+     * @return Candidates of the first query node, each one yielding independent matches
+     */
+    List<Node> getSeeds() {
+        return order.length == 0 ? new ArrayList<>() : candidates.get(0);
+    }
+
+    /**
+     * Appends every binding mapping the first query node to `seed`
+     *
+     * @param seed    Node            Data node bound to the first query node
+     * @param matches List<>          Found bindings
+     */
+    void matchFrom(Node seed, List<Map<Node, Node>> matches) {
+        Node[] images = new Node[order.length];
+        Set<Node> used = new HashSet<>();
+        images[0] = seed;
+        used.add(seed);
+        if (isConsistent(0, images))
+            extend(1, images, used, matches);
+    }
+
+    /**
+     * Builds the union of the bindings as a standalone graph made of copies of the data nodes and links
+     *
+     * @param matches List<>          Bindings
+     * @return Result graph
+     */
+    KnowledgeGraph toGraph(List<Map<Node, Node>> matches) {
+        KnowledgeGraph result = new KnowledgeGraph(false);
+        Map<String, Node> copies = new HashMap<>();
+        Set<String> copiedLinks = new HashSet<>();
+
+        for (Map<Node, Node> binding : matches) {
+            for (Node image : binding.values()) {
+                if (!copies.containsKey(image.getId())) {
+                    Node copy = image.copy();
+                    for (Map.Entry<String, Property<?>> property : image.getAllProperties().entrySet())
+                        copy.getProperties().putIfAbsent(property.getKey(), property.getValue().clone());
+                    copies.put(image.getId(), copy);
+                    result.addNodes(copy);
+                }
+            }
+
+            for (Link queryLink : query.getLinks()) {
+                Node from = binding.get(queryLink.getFrom());
+                Node to = binding.get(queryLink.getTo());
+                if (from == null || to == null)
+                    continue;
+                for (Link dataLink : getLinksBetween(queryLink, from, to)) {
+                    if (!copiedLinks.contains(dataLink.getId()) && matches(queryLink, dataLink, from, to)) {
+                        copiedLinks.add(dataLink.getId());
+                        result.addLink(copies.get(dataLink.getFrom().getId()), copies.get(dataLink.getTo().getId()),
+                                dataLink.copy());
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Completes a range of partial bindings, halving it until it is small enough.
+     * Tasks only live in the pool of one search, they are never serialized.
+     */
+    @SuppressWarnings("serial")
+    private class PrefixTask extends RecursiveTask<List<Map<Node, Node>>> {
+        private final List<Node[]> prefixes;
+        private final int depth;
+        private final int start;
+        private final int end;
+        private final int threshold;
+
+        private PrefixTask(List<Node[]> prefixes, int depth, int start, int end, int threshold) {
+            this.prefixes = prefixes;
+            this.depth = depth;
+            this.start = start;
+            this.end = end;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected List<Map<Node, Node>> compute() {
+            if (end - start <= threshold) {
+                List<Map<Node, Node>> matches = new ArrayList<>();
+                for (int i = start; i < end; ++i) {
+                    Node[] images = prefixes.get(i);
+                    extend(depth, images, usedBy(images, depth), matches);
+                }
+                return matches;
+            }
+
+            int middle = (start + end) >>> 1;
+            PrefixTask left = new PrefixTask(prefixes, depth, start, middle, threshold);
+            PrefixTask right = new PrefixTask(prefixes, depth, middle, end, threshold);
+            left.fork();
+            List<Map<Node, Node>> matches = right.compute();
+            List<Map<Node, Node>> leftMatches = left.join();
+            leftMatches.addAll(matches);
+            return leftMatches;
+        }
+    }
+
+    private void extend(int position, Node[] images, Set<Node> used, List<Map<Node, Node>> matches) {
+        if (position == order.length) {
+            matches.add(toBinding(images));
+            return;
+        }
+
+        for (Node candidate : getCandidates(position, images)) {
+            if (accepts(position, candidate, images, used)) {
+                used.add(candidate);
+                extend(position + 1, images, used, matches);
+                used.remove(candidate);
+                images[position] = null;
+            }
+        }
+    }
+
+    /**
+     * Data nodes to try for a position : the neighbours of a matched node through
+     * the first back link, or every compatible node if the query node has no back link
+     */
+    private Iterable<Node> getCandidates(int position, Node[] images) {
+        List<Link> back = backLinks.get(position);
+        if (back.isEmpty() || back.get(0).getFrom() == back.get(0).getTo())
+            return candidates.get(position);
+
+        Link anchor = back.get(0);
+        boolean anchorIsOrigin = anchor.getTo() == order[position];
+        Node anchorImage = images[indexOf(otherExtremity(anchor, order[position]))];
+        Set<Node> neighbours = new LinkedHashSet<>();
+        for (Link dataLink : anchorImage.getLinks(anchor.getClass())) {
+            // an oriented query link only follows data links in the same direction
+            if (anchor.isOriented() && (dataLink.getFrom() == anchorImage) != anchorIsOrigin)
+                continue;
+            Node candidate = otherExtremity(dataLink, anchorImage);
+            if (candidate != null)
+                neighbours.add(candidate);
+        }
+        return neighbours;
+    }
+
+    /**
+     * Binds the candidate to the position if it is compatible with the bindings of the previous positions
+     *
+     * @return true if the candidate has been bound
+     */
+    private boolean accepts(int position, Node candidate, Node[] images, Set<Node> used) {
+        if (used.contains(candidate) || !candidateSets.get(position).contains(candidate))
+            return false;
+
+        images[position] = candidate;
+        if (isConsistent(position, images))
+            return true;
+        images[position] = null;
+        return false;
+    }
+
+    private static Set<Node> usedBy(Node[] images, int depth) {
+        Set<Node> used = new HashSet<>();
+        for (int i = 0; i < depth; ++i)
+            used.add(images[i]);
+        return used;
+    }
+
+    /**
+     * @return true if every query link towards the previous positions has a matching data link
+     */
+    private boolean isConsistent(int position, Node[] images) {
+        for (Link queryLink : backLinks.get(position)) {
+            Node from = images[indexOf(queryLink.getFrom())];
+            Node to = images[indexOf(queryLink.getTo())];
+            boolean found = false;
+            for (Link dataLink : getLinksBetween(queryLink, from, to)) {
+                if (matches(queryLink, dataLink, from, to)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Links of the query link type of the extremity with the fewest of them
+     */
+    private static List<Link> getLinksBetween(Link queryLink, Node from, Node to) {
+        List<Link> fromLinks = from.getLinks(queryLink.getClass());
+        List<Link> toLinks = to.getLinks(queryLink.getClass());
+        return fromLinks.size() <= toLinks.size() ? fromLinks : toLinks;
+    }
+
+    private static boolean matches(Link queryLink, Link dataLink, Node from, Node to) {
+        if (dataLink.getFrom() == from && dataLink.getTo() == to)
+            return true;
+        return !queryLink.isOriented() && dataLink.getFrom() == to && dataLink.getTo() == from;
+    }
+
+    private int indexOf(Node queryNode) {
+        for (int i = 0; i < order.length; ++i)
+            if (order[i] == queryNode)
+                return i;
+        return -1;
+    }
+
+    private Map<Node, Node> toBinding(Node[] images) {
+        Map<Node, Node> binding = new LinkedHashMap<>();
+        for (Node queryNode : query.getNodes())
+            binding.put(queryNode, images[indexOf(queryNode)]);
+        return binding;
+    }
+
+    /**
+     * Data nodes matching the type, properties and per link type degree of a query node
+     */
+    private List<Node> findCandidates(Node queryNode) {
+        Map<Class<? extends Link>, Integer> degrees = new HashMap<>();
+        for (Link link : queryNode.getLinks())
+            degrees.merge(link.getClass(), 1, Integer::sum);
+
+        List<Node> initial = queryNode.getProperties().isEmpty()
+                ? data.getNodes()
+                : data.findNodes(queryNode.getProperties());
+
+        List<Node> found = new ArrayList<>();
+        for (Node node : initial) {
+            if (!queryNode.isSubsetOf(node))
+                continue;
+            boolean enoughLinks = true;
+            for (Map.Entry<Class<? extends Link>, Integer> degree : degrees.entrySet()) {
+                if (node.getLinks(degree.getKey()).size() < degree.getValue()) {
+                    enoughLinks = false;
+                    break;
+                }
+            }
+            if (enoughLinks)
+                found.add(node);
+        }
+        return found;
+    }
+
+    private static Node otherExtremity(Link link, Node node) {
+        try {
+            return link.getLinkedNode(node);
+        } catch (NoLinkedNodeException e) {
+            return null;
+        }
+    }
+}
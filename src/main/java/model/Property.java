@@ -1,18 +1,201 @@
 package model;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
 /**
  * Property
+ * String values are interned in the PropertyDictionary of the graph holding the node (see intern),
+ * properties coded in the same dictionary comparing their codes.
+ * Numbers and booleans have primitive variants (see of and parse), which do not box their value.
  * @param <T> Type
  */
 public class Property<T> implements Cloneable {
+    private static final Pattern INTEGER = Pattern.compile("[+-]?\\d+");
+    private static final Pattern DECIMAL = Pattern.compile("[+-]?(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?");
+
+    /**
+     * Number of values changed through setValue, in every graph
+     */
+    private static final AtomicLong MODIFICATIONS = new AtomicLong();
+
     private T value;
 
+    /**
+     * Dictionary coding the string value (null until interned), and the code of the value (-1 if not a string)
+     */
+    private PropertyDictionary dictionary;
+    private int code = -1;
+
+    /**
+     * Listeners notified on value change (lazily created), registered by the indexes under the write lock
+     * of their graph while setValue may run on any thread
+     */
+    private volatile List<PropertyListener> listeners;
+
     public Property(T value) {
         this.value = value;
     }
 
+    /**
+     * Constructor of the primitive variants, which keep their value themselves
+     */
+    Property() {}
+
+    /**
+     * @param value Object          Value, as read from JSON or from a binary file
+     * @return Property of the primitive variant matching the type of the value, if any
+     */
+    public static Property<?> of(Object value) {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte)
+            return new IntProperty(((Number) value).intValue());
+        if (value instanceof Long)
+            return new LongProperty((Long) value);
+        if (value instanceof Double || value instanceof Float)
+            return new DoubleProperty(((Number) value).doubleValue());
+        if (value instanceof Boolean)
+            return new BooleanProperty((Boolean) value);
+        if (value instanceof BigDecimal) {
+            // JSON decimals, kept as such when a double would round them
+            double decimal = ((BigDecimal) value).doubleValue();
+            if (Double.isFinite(decimal) && BigDecimal.valueOf(decimal).compareTo((BigDecimal) value) == 0)
+                return new DoubleProperty(decimal);
+        }
+        return new Property<>(value);
+    }
+
+    /**
+     * @param value Object          Value of a JSON property
+     * @return Property of the primitive variant matching the type of the value, strings being parsed
+     *         (see parse) : "90" and 90 are the same value, as in a query typed quantite:90
+     */
+    public static Property<?> fromJSON(Object value) {
+        return value instanceof String ? parse((String) value) : of(value);
+    }
+
+    /**
+     * Parsing is lossless : a text that is not the canonical form of its number (e.g. 007, +1, 1e3)
+     * stays a string, so that the string values of the graph are found back.
+     *
+     * @param text String          Value typed in a query (e.g. quantite:90)
+     * @return Property of the narrowest type among int, long, double and boolean, string otherwise
+     */
+    public static Property<?> parse(String text) {
+        Property<?> parsed = narrowest(text);
+        return parsed.toString().equals(text) ? parsed : new Property<>(text);
+    }
+
+    /**
+     * @param text String          Number in any notation (e.g. a range bound : 007, +1, 1e3)
+     * @return Value of the narrowest type among int, long and double, null if the text is not a number
+     */
+    public static Number parseNumber(String text) {
+        Object value = narrowest(text).getValue();
+        return value instanceof Number ? (Number) value : null;
+    }
+
+    private static Property<?> narrowest(String text) {
+        if (text.equals("true") || text.equals("false"))
+            return new BooleanProperty(text.equals("true"));
+        if (INTEGER.matcher(text).matches()) {
+            BigInteger integer = new BigInteger(text);
+            if (integer.bitLength() < Integer.SIZE)
+                return new IntProperty(integer.intValue());
+            if (integer.bitLength() < Long.SIZE)
+                return new LongProperty(integer.longValue());
+            return new Property<>(integer);
+        }
+        if (DECIMAL.matcher(text).matches())
+            return of(new BigDecimal(text));
+        return new Property<>(text);
+    }
+
     public void setValue(T value) {
-        this.value = value;
+        T oldValue = getValue();
+        store(value);
+        MODIFICATIONS.incrementAndGet();
+        List<PropertyListener> listeners = this.listeners;
+        if (listeners != null)
+            for (PropertyListener listener : listeners)
+                listener.valueChanged(this, oldValue, value);
+    }
+
+    /**
+     * @return Number of values changed through setValue since the start, in every graph
+     */
+    static long getModificationCount() {
+        return MODIFICATIONS.get();
+    }
+
+    synchronized void addListener(PropertyListener listener) {
+        if (listeners == null)
+            listeners = new CopyOnWriteArrayList<>();
+        listeners.add(listener);
+    }
+
+    synchronized void removeListener(PropertyListener listener) {
+        if (listeners != null)
+            listeners.remove(listener);
+    }
+
+    /**
+     * Replaces the value, overridden by the primitive variants
+     */
+    @SuppressWarnings("unchecked")
+    void store(T value) {
+        if (dictionary != null && value instanceof String) {
+            code = dictionary.encode((String) value);
+            this.value = (T) dictionary.decode(code);
+        } else {
+            code = -1;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Codes a string value in the dictionary and replaces it by the equal instance of the dictionary,
+     * the value being unchanged. Later values set through setValue are coded in the same dictionary.
+     *
+     * @param dictionary PropertyDictionary Dictionary of the graph holding the property
+     */
+    void intern(PropertyDictionary dictionary) {
+        this.dictionary = dictionary;
+        if (value instanceof String)
+            store(value);
+    }
+
+    /**
+     * @param dictionary PropertyDictionary Dictionary of a graph
+     * @return This property if its value is not a string or is coded in the dictionary, else a copy coded
+     *         in the dictionary, null if no property of the graph holds the string (no node can match)
+     */
+    Property<?> lookup(PropertyDictionary dictionary) {
+        if (!(value instanceof String) || this.dictionary == dictionary)
+            return this;
+
+        int code = dictionary.find((String) value);
+        if (code < 0)
+            return null;
+        Property<T> coded = clone();
+        coded.dictionary = dictionary;
+        coded.code = code;
+        return coded;
+    }
+
+    /**
+     * @param dictionary PropertyDictionary Dictionary of a graph
+     * @return Code of the string value in the dictionary, -1 if not a string or absent from the dictionary
+     */
+    int getCode(PropertyDictionary dictionary) {
+        if (this.dictionary == dictionary)
+            return code;
+        Object value = getValue();
+        return value instanceof String ? dictionary.find((String) value) : -1;
     }
 
     public T getValue() {
@@ -22,15 +205,24 @@ public class Property<T> implements Cloneable {
     @Override
     public boolean equals(Object other) {
         if (other instanceof Property) {
-            return value.equals(((Property<?>) other).getValue());
+            Property<?> property = (Property<?>) other;
+            // strings coded in the same dictionary compare by code
+            if (code >= 0 && property.code >= 0 && dictionary == property.dictionary)
+                return code == property.code;
+            return Objects.equals(getValue(), property.getValue());
         }
 
         return false;
     }
 
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getValue());
+    }
+
     @Override
     public String toString() {
-        return value.toString();
+        return String.valueOf(getValue());
     }
 
     public Property<T> clone() {
@@ -44,6 +236,7 @@ public class Property<T> implements Cloneable {
         }
 
         cloned.value = value;
+        cloned.listeners = null;
         return cloned;
     }
 }
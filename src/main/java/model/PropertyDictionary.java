@@ -0,0 +1,109 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary of strings interned to int codes : equal strings share one instance and one code.
+ *
+ * Property keys are coded in the dictionary shared by every graph (see KEYS), so that properties are
+ * compared by code. String values are coded in the dictionary of the graph holding the node, and
+ * released with the graph : values only looked up (query nodes, filters) are never added.
+ * Codes are never reclaimed : strings stay in a dictionary once a property used them, which is why
+ * the global key dictionary is bounded (see MAX_KEYS).
+ */
+public final class PropertyDictionary {
+    /**
+     * Maximum number of distinct property keys, in every graph and query of the process
+     */
+    public static final int MAX_KEYS = 1 << 16;
+
+    /**
+     * Property keys of every graph, at most MAX_KEYS : nodes sent over HTTP cannot grow it without bound
+     */
+    public static final PropertyDictionary KEYS = new PropertyDictionary(MAX_KEYS);
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+
+    /**
+     * Maximum number of strings
+     */
+    private final int capacity;
+
+    /**
+     * Interned strings by code, grown under the dictionary lock
+     */
+    private volatile String[] strings = new String[1024];
+    private int size;
+
+    /**
+     * Unbounded dictionary
+     */
+    public PropertyDictionary() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param capacity int             Maximum number of strings
+     */
+    public PropertyDictionary(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param string String          String to intern
+     * @return Code of the string, added to the dictionary if needed
+     * @throws IllegalArgumentException New string while the dictionary is full
+     */
+    public int encode(String string) {
+        Integer code = codes.get(string);
+        if (code != null)
+            return code;
+
+        synchronized (this) {
+            code = codes.get(string);
+            if (code != null)
+                return code;
+
+            if (size == capacity)
+                throw new IllegalArgumentException("Dictionary full : " + capacity + " distinct strings");
+            if (size == strings.length)
+                strings = Arrays.copyOf(strings, size * 2);
+            strings[size] = string;
+            codes.put(string, size);
+            return size++;
+        }
+    }
+
+    /**
+     * @param string String          String to look up
+     * @return Code of the string, -1 if no property uses it
+     */
+    public int find(String string) {
+        Integer code = codes.get(string);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * @param code int             Code returned by encode
+     * @return Interned string
+     */
+    public String decode(int code) {
+        return strings[code];
+    }
+
+    /**
+     * @param string String          String to intern
+     * @return Instance shared by the equal strings of the dictionary
+     */
+    public String intern(String string) {
+        return decode(encode(string));
+    }
+
+    /**
+     * @return Number of interned strings
+     */
+    public int size() {
+        return codes.size();
+    }
+}
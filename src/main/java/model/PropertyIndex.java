@@ -0,0 +1,193 @@
+package model;
+
+import model.node.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Inverted index of node properties : property key -> property value -> nodes.
+ * String values are indexed by their code in the dictionary of the graph, the other values by themselves.
+ */
+class PropertyIndex {
+    private final Map<String, Map<Object, Set<Node>>> index;
+
+    /**
+     * Nodes by key, then by code of their string value
+     */
+    private final Map<String, Map<Object, Set<Node>>> strings;
+
+    private final PropertyDictionary dictionary;
+
+    /**
+     * Indexed properties, by node
+     */
+    private final Map<Node, List<Entry>> entries;
+
+    private final PropertyWatcher watcher;
+
+    /**
+     * @param lock       Supplier        Current lock of the graph
+     * @param dictionary PropertyDictionary Dictionary coding the string values of the graph
+     */
+    PropertyIndex(Supplier<ReadWriteLock> lock, PropertyDictionary dictionary) {
+        index = new HashMap<>();
+        strings = new HashMap<>();
+        this.dictionary = dictionary;
+        entries = new HashMap<>();
+        watcher = new PropertyWatcher(lock, this::valueChanged);
+    }
+
+    /**
+     * Indexes all the properties of a node
+     *
+     * @param node Node            Node to index
+     */
+    void add(Node node) {
+        if (entries.containsKey(node))
+            return;
+
+        List<Entry> nodeEntries = new ArrayList<>();
+        for (Map.Entry<String, Property<?>> property : node.getAllProperties().entrySet()) {
+            put(property.getKey(), property.getValue().getValue(), node);
+            watcher.watch(property.getValue(), node);
+            nodeEntries.add(new Entry(property.getKey(), property.getValue()));
+        }
+        entries.put(node, nodeEntries);
+    }
+
+    /**
+     * Removes a node from the index
+     *
+     * @param node Node            Node to forget
+     */
+    void remove(Node node) {
+        List<Entry> nodeEntries = entries.remove(node);
+        if (nodeEntries == null)
+            return;
+
+        for (Entry entry : nodeEntries) {
+            watcher.unwatch(entry.property, node);
+            drop(entry.key, entry.property.getValue(), node);
+        }
+    }
+
+    /**
+     * Re-indexes a node whose property map has been modified
+     *
+     * @param node Node            Node to re-index
+     */
+    void update(Node node) {
+        remove(node);
+        add(node);
+    }
+
+    /**
+     * Find all indexed nodes matching every given property.
+     * Starts from the most selective key and filters the other ones from there.
+     *
+     * @param properties Map<>           Properties filter (must not be empty)
+     * @return Nodes matching the filter
+     */
+    List<Node> find(Map<String, Property<?>> properties) {
+        List<Set<Node>> candidates = new ArrayList<>();
+        for (Map.Entry<String, Property<?>> property : properties.entrySet()) {
+            Set<Node> nodes = get(property.getKey(), property.getValue());
+            if (nodes.isEmpty())
+                return new ArrayList<>();
+            candidates.add(nodes);
+        }
+        candidates.sort((a, b) -> Integer.compare(a.size(), b.size()));
+
+        List<Node> found = new ArrayList<>();
+        for (Node node : candidates.get(0)) {
+            boolean match = true;
+            for (int i = 1; i < candidates.size() && match; ++i)
+                match = candidates.get(i).contains(node);
+            if (match)
+                found.add(node);
+        }
+        return found;
+    }
+
+    private Set<Node> get(String key, Property<?> property) {
+        Object value = property.getValue();
+        Object indexed = value;
+        if (value instanceof String) {
+            // a string no property holds has no code : no node can match
+            int code = property.getCode(dictionary);
+            if (code < 0)
+                return Collections.emptySet();
+            indexed = code;
+        }
+
+        Map<Object, Set<Node>> values = indexOf(value).get(key);
+        if (values == null)
+            return Collections.emptySet();
+        Set<Node> nodes = values.get(indexed);
+        return nodes == null ? Collections.emptySet() : nodes;
+    }
+
+    private void put(String key, Object value, Node node) {
+        Object indexed = value instanceof String ? dictionary.encode((String) value) : value;
+        indexOf(value).computeIfAbsent(key, k -> new HashMap<>())
+                      .computeIfAbsent(indexed, v -> new LinkedHashSet<>())
+                      .add(node);
+    }
+
+    private void drop(String key, Object value, Node node) {
+        Map<String, Map<Object, Set<Node>>> index = indexOf(value);
+        Map<Object, Set<Node>> values = index.get(key);
+        if (values == null)
+            return;
+        Object indexed = value instanceof String ? dictionary.find((String) value) : value;
+        Set<Node> nodes = values.get(indexed);
+        if (nodes == null)
+            return;
+        nodes.remove(node);
+        if (nodes.isEmpty()) {
+            values.remove(indexed);
+            if (values.isEmpty())
+                index.remove(key);
+        }
+    }
+
+    /**
+     * @return Index of the string values by code, or of the other values
+     */
+    private Map<String, Map<Object, Set<Node>>> indexOf(Object value) {
+        return value instanceof String ? strings : index;
+    }
+
+    /**
+     * Moves a node holding a changed property to its new value
+     */
+    private void valueChanged(Node node, Property<?> property, Object oldValue, Object newValue) {
+        for (Entry entry : entries.get(node)) {
+            if (entry.property == property) {
+                drop(entry.key, oldValue, node);
+                put(entry.key, newValue, node);
+            }
+        }
+    }
+
+    /**
+     * Indexed property of a node, under the key the node reads it with
+     */
+    private static final class Entry {
+        private final String key;
+        private final Property<?> property;
+
+        private Entry(String key, Property<?> property) {
+            this.key = key;
+            this.property = property;
+        }
+    }
+}
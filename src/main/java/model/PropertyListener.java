@@ -0,0 +1,13 @@
+package model;
+
+/**
+ * Notified when the value of a Property changes
+ */
+interface PropertyListener {
+    /**
+     * @param property Property        Changed property
+     * @param oldValue Object          Value before the change
+     * @param newValue Object          Value after the change
+     */
+    void valueChanged(Property<?> property, Object oldValue, Object newValue);
+}
@@ -0,0 +1,255 @@
+package model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Compact property map of a node : parallel arrays of key codes (see PropertyDictionary)
+ * and properties, in insertion order. Lookups scan the key codes, nodes carrying few properties.
+ */
+public final class PropertyMap extends AbstractMap<String, Property<?>> {
+    private static final int[] NO_KEYS = new int[0];
+    private static final Property<?>[] NO_VALUES = new Property<?>[0];
+
+    private int[] keys;
+    private Property<?>[] values;
+    private int size;
+
+    /**
+     * Modification count, checked by the iterators
+     */
+    private int modifications;
+
+    public PropertyMap() {
+        keys = NO_KEYS;
+        values = NO_VALUES;
+    }
+
+    /**
+     * @param properties Map<>           Properties to copy
+     */
+    public PropertyMap(Map<String, ? extends Property<?>> properties) {
+        keys = properties.isEmpty() ? NO_KEYS : new int[properties.size()];
+        values = properties.isEmpty() ? NO_VALUES : new Property<?>[properties.size()];
+        if (properties instanceof PropertyMap) {
+            PropertyMap other = (PropertyMap) properties;
+            System.arraycopy(other.keys, 0, keys, 0, other.size);
+            System.arraycopy(other.values, 0, values, 0, other.size);
+            size = other.size;
+        } else {
+            for (Map.Entry<String, ? extends Property<?>> property : properties.entrySet())
+                put(PropertyDictionary.KEYS.encode(property.getKey()), property.getValue());
+        }
+    }
+
+    /**
+     * @param key int             Key code
+     * @return Property, null if absent
+     */
+    public Property<?> get(int key) {
+        int index = indexOf(key);
+        return index < 0 ? null : values[index];
+    }
+
+    /**
+     * @param key      int             Key code
+     * @param property Property        Property
+     * @return Previous property, null if absent
+     */
+    public Property<?> put(int key, Property<?> property) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            Property<?> previous = values[index];
+            values[index] = property;
+            return previous;
+        }
+
+        if (size == keys.length) {
+            int capacity = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        keys[size] = key;
+        values[size] = property;
+        size++;
+        modifications++;
+        return null;
+    }
+
+    /**
+     * @param key      int             Key code
+     * @param property Property        Property
+     * @return Current property, null if the property has been added
+     */
+    public Property<?> putIfAbsent(int key, Property<?> property) {
+        Property<?> current = get(key);
+        if (current == null)
+            put(key, property);
+        return current;
+    }
+
+    /**
+     * @param index int             Position, lower than size()
+     * @return Key code at the position
+     */
+    public int keyAt(int index) {
+        return keys[index];
+    }
+
+    /**
+     * @param index int             Position, lower than size()
+     * @return Property at the position
+     */
+    public Property<?> valueAt(int index) {
+        return values[index];
+    }
+
+    private int indexOf(int key) {
+        for (int i = 0; i < size; ++i)
+            if (keys[i] == key)
+                return i;
+        return -1;
+    }
+
+    private int indexOf(Object key) {
+        if (!(key instanceof String))
+            return -1;
+        int code = PropertyDictionary.KEYS.find((String) key);
+        return code < 0 ? -1 : indexOf(code);
+    }
+
+    private Property<?> removeAt(int index) {
+        Property<?> previous = values[index];
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        values[--size] = null;
+        modifications++;
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public Property<?> get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : values[index];
+    }
+
+    @Override
+    public Property<?> put(String key, Property<?> property) {
+        return put(PropertyDictionary.KEYS.encode(key), property);
+    }
+
+    @Override
+    public Property<?> remove(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : removeAt(index);
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+        modifications++;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Property<?>>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Property<?>>>() {
+            @Override
+            public Iterator<Map.Entry<String, Property<?>>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<String, Property<?>>> {
+        private int next;
+        private int last = -1;
+        private int expectedModifications = modifications;
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public Map.Entry<String, Property<?>> next() {
+            if (modifications != expectedModifications)
+                throw new ConcurrentModificationException();
+            if (next >= size)
+                throw new NoSuchElementException();
+            last = next++;
+            return new Entry(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0)
+                throw new IllegalStateException();
+            if (modifications != expectedModifications)
+                throw new ConcurrentModificationException();
+            removeAt(last);
+            next = last;
+            last = -1;
+            expectedModifications = modifications;
+        }
+    }
+
+    private final class Entry implements Map.Entry<String, Property<?>> {
+        private final int index;
+
+        private Entry(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public String getKey() {
+            return PropertyDictionary.KEYS.decode(keys[index]);
+        }
+
+        @Override
+        public Property<?> getValue() {
+            return values[index];
+        }
+
+        @Override
+        public Property<?> setValue(Property<?> property) {
+            Property<?> previous = values[index];
+            values[index] = property;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) other;
+            return getKey().equals(entry.getKey()) && getValue().equals(entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return getKey().hashCode() ^ getValue().hashCode();
+        }
+    }
+}
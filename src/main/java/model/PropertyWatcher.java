@@ -0,0 +1,99 @@
+package model;
+
+import model.node.Node;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Listeners of an index on the properties of its nodes : one listener per property, shared by every
+ * node holding it, its owner and the heirs reading it through lazy links (see Node.getAllProperties).
+ * Properties are told apart by identity, two properties with equal values being watched separately.
+ *
+ * Values change through Property.setValue, on any thread : the handler runs under the write lock of the
+ * graph, so that the index never changes under a reader. A thread holding the read lock of a concurrent
+ * graph must not change the values of its nodes.
+ */
+class PropertyWatcher {
+    /**
+     * Called for every node holding a property whose value changed
+     */
+    interface Handler {
+        void valueChanged(Node node, Property<?> property, Object oldValue, Object newValue);
+    }
+
+    private final Supplier<ReadWriteLock> lock;
+    private final Handler handler;
+    private final Map<Property<?>, Watch> watches = new IdentityHashMap<>();
+
+    /**
+     * @param lock    Supplier        Current lock of the graph (see KnowledgeGraph.setConcurrent)
+     * @param handler Handler         Index update
+     */
+    PropertyWatcher(Supplier<ReadWriteLock> lock, Handler handler) {
+        this.lock = lock;
+        this.handler = handler;
+    }
+
+    /**
+     * @param property Property        Property held by the node
+     * @param node     Node            Indexed node
+     */
+    void watch(Property<?> property, Node node) {
+        Watch watch = watches.get(property);
+        if (watch == null) {
+            watch = new Watch();
+            watches.put(property, watch);
+            property.addListener(watch);
+        }
+        watch.nodes.add(node);
+    }
+
+    /**
+     * @param property Property        Property held by the node
+     * @param node     Node            Node leaving the index
+     */
+    void unwatch(Property<?> property, Node node) {
+        Watch watch = watches.get(property);
+        if (watch == null)
+            return;
+
+        watch.nodes.remove(node);
+        if (watch.nodes.isEmpty()) {
+            watches.remove(property);
+            property.removeListener(watch);
+        }
+    }
+
+    /**
+     * Stops listening to every property
+     */
+    void clear() {
+        for (Map.Entry<Property<?>, Watch> watch : watches.entrySet())
+            watch.getKey().removeListener(watch.getValue());
+        watches.clear();
+    }
+
+    private class Watch implements PropertyListener {
+        private final Set<Node> nodes = new LinkedHashSet<>();
+
+        @Override
+        public void valueChanged(Property<?> property, Object oldValue, Object newValue) {
+            Lock writers = lock.get().writeLock();
+            writers.lock();
+            try {
+                // the handler may re-index the nodes meanwhile
+                for (Node node : new ArrayList<>(nodes))
+                    handler.valueChanged(node, property, oldValue, newValue);
+            } finally {
+                writers.unlock();
+            }
+        }
+    }
+}
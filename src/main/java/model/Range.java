@@ -0,0 +1,154 @@
+package model;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Interval of numeric property values, each bound optional and inclusive or not.
+ * Numbers of different types are compared by value (e.g. 2 < 2.5 < 3L).
+ */
+public final class Range {
+    private final Number lower;
+    private final boolean lowerInclusive;
+    private final Number upper;
+    private final boolean upperInclusive;
+
+    /**
+     * @param lower          Number          Lower bound, null if unbounded
+     * @param lowerInclusive boolean         true if the lower bound belongs to the range
+     * @param upper          Number          Upper bound, null if unbounded
+     * @param upperInclusive boolean         true if the upper bound belongs to the range
+     */
+    public Range(Number lower, boolean lowerInclusive, Number upper, boolean upperInclusive) {
+        this.lower = lower;
+        this.lowerInclusive = lower != null && lowerInclusive;
+        this.upper = upper;
+        this.upperInclusive = upper != null && upperInclusive;
+    }
+
+    public static Range greaterThan(Number lower) {
+        return new Range(lower, false, null, false);
+    }
+
+    public static Range atLeast(Number lower) {
+        return new Range(lower, true, null, false);
+    }
+
+    public static Range lessThan(Number upper) {
+        return new Range(null, false, upper, false);
+    }
+
+    public static Range atMost(Number upper) {
+        return new Range(null, false, upper, true);
+    }
+
+    public Number getLower() {
+        return lower;
+    }
+
+    public boolean isLowerInclusive() {
+        return lowerInclusive;
+    }
+
+    public Number getUpper() {
+        return upper;
+    }
+
+    public boolean isUpperInclusive() {
+        return upperInclusive;
+    }
+
+    /**
+     * @param other Range           Range to intersect with
+     * @return Values belonging to both ranges
+     */
+    public Range intersect(Range other) {
+        Number lower = this.lower;
+        boolean lowerInclusive = this.lowerInclusive;
+        if (other.lower != null) {
+            int order = lower == null ? -1 : compare(lower, other.lower);
+            if (order < 0 || order == 0 && !other.lowerInclusive) {
+                lower = other.lower;
+                lowerInclusive = other.lowerInclusive;
+            }
+        }
+
+        Number upper = this.upper;
+        boolean upperInclusive = this.upperInclusive;
+        if (other.upper != null) {
+            int order = upper == null ? 1 : compare(upper, other.upper);
+            if (order > 0 || order == 0 && !other.upperInclusive) {
+                upper = other.upper;
+                upperInclusive = other.upperInclusive;
+            }
+        }
+        return new Range(lower, lowerInclusive, upper, upperInclusive);
+    }
+
+    /**
+     * @param value Object          Property value
+     * @return true if the value is a number within the range
+     */
+    public boolean contains(Object value) {
+        if (!(value instanceof Number))
+            return false;
+
+        Number number = (Number) value;
+        if (lower != null) {
+            int order = compare(number, lower);
+            if (order < 0 || order == 0 && !lowerInclusive)
+                return false;
+        }
+        if (upper != null) {
+            int order = compare(number, upper);
+            return order < 0 || order == 0 && upperInclusive;
+        }
+        return true;
+    }
+
+    /**
+     * Total order of the numbers by value, exact across integral and floating-point types.
+     * NaN is greater than every other number, -0.0 equals 0.
+     */
+    static int compare(Number a, Number b) {
+        boolean integralA = isIntegral(a);
+        boolean integralB = isIntegral(b);
+        if (integralA && integralB)
+            return Long.compare(a.longValue(), b.longValue());
+
+        boolean floatingA = isFloating(a);
+        boolean floatingB = isFloating(b);
+        if (floatingA && floatingB || floatingA && !Double.isFinite(a.doubleValue())
+                || floatingB && !Double.isFinite(b.doubleValue())) {
+            double x = a.doubleValue();
+            double y = b.doubleValue();
+            return x == y ? 0 : Double.compare(x, y);
+        }
+        return toBigDecimal(a).compareTo(toBigDecimal(b));
+    }
+
+    private static boolean isIntegral(Number number) {
+        return number instanceof Integer || number instanceof Long
+                || number instanceof Short || number instanceof Byte;
+    }
+
+    private static boolean isFloating(Number number) {
+        return number instanceof Double || number instanceof Float;
+    }
+
+    private static BigDecimal toBigDecimal(Number number) {
+        if (number instanceof BigDecimal)
+            return (BigDecimal) number;
+        if (number instanceof BigInteger)
+            return new BigDecimal((BigInteger) number);
+        if (isFloating(number))
+            return new BigDecimal(number.doubleValue());
+        return BigDecimal.valueOf(number.longValue());
+    }
+
+    @Override
+    public String toString() {
+        return (lowerInclusive ? "[" : "(") + (lower == null ? "-inf" : lower) + ", "
+                + (upper == null ? "+inf" : upper) + (upperInclusive ? "]" : ")");
+    }
+}
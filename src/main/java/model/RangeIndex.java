@@ -0,0 +1,239 @@
+package model;
+
+import model.node.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Supplier;
+import java.util.TreeMap;
+
+/**
+ * Sorted index of chosen numeric node properties : property key -> value -> nodes.
+ * Answers range queries in logarithmic time plus the size of the result. Non-numeric values are not indexed.
+ */
+class RangeIndex {
+    /**
+     * Red-black trees by property key. A value maps to its node, or to a Set<Node> when several nodes share it.
+     */
+    private final Map<String, NavigableMap<Number, Object>> trees;
+
+    /**
+     * Indexed properties, by node
+     */
+    private final Map<Node, List<Entry>> entries;
+
+    private final PropertyWatcher watcher;
+
+    /**
+     * @param lock Supplier        Current lock of the graph
+     */
+    RangeIndex(Supplier<ReadWriteLock> lock) {
+        trees = new HashMap<>();
+        entries = new HashMap<>();
+        watcher = new PropertyWatcher(lock, this::valueChanged);
+    }
+
+    /**
+     * @return true if no property is indexed
+     */
+    boolean isEmpty() {
+        return trees.isEmpty();
+    }
+
+    /**
+     * @param key String          Property key
+     * @return true if the property is indexed
+     */
+    boolean covers(String key) {
+        return trees.containsKey(key);
+    }
+
+    /**
+     * @return Indexed property keys
+     */
+    Set<String> getKeys() {
+        return Collections.unmodifiableSet(trees.keySet());
+    }
+
+    /**
+     * Starts indexing a property
+     *
+     * @param key   String          Property key
+     * @param nodes List            Nodes of the graph
+     */
+    void addKey(String key, List<Node> nodes) {
+        if (trees.containsKey(key))
+            return;
+
+        trees.put(key, new TreeMap<>(Range::compare));
+        for (Node node : nodes)
+            add(node, key);
+    }
+
+    /**
+     * Stops indexing a property
+     *
+     * @param key String          Property key
+     */
+    void removeKey(String key) {
+        if (trees.remove(key) == null)
+            return;
+
+        entries.values().removeIf(nodeEntries -> {
+            nodeEntries.removeIf(entry -> {
+                if (!entry.key.equals(key))
+                    return false;
+                watcher.unwatch(entry.property, entry.node);
+                return true;
+            });
+            return nodeEntries.isEmpty();
+        });
+    }
+
+    /**
+     * Indexes the properties of a node
+     *
+     * @param node Node            Node to index
+     */
+    void add(Node node) {
+        if (entries.containsKey(node))
+            return;
+        for (String key : trees.keySet())
+            add(node, key);
+    }
+
+    private void add(Node node, String key) {
+        Property<?> property = node.getProperty(key);
+        if (property == null)
+            return;
+
+        put(key, property.getValue(), node);
+        watcher.watch(property, node);
+        entries.computeIfAbsent(node, n -> new ArrayList<>(1)).add(new Entry(node, key, property));
+    }
+
+    /**
+     * Removes a node from the index
+     *
+     * @param node Node            Node to forget
+     */
+    void remove(Node node) {
+        List<Entry> nodeEntries = entries.remove(node);
+        if (nodeEntries == null)
+            return;
+
+        for (Entry entry : nodeEntries) {
+            watcher.unwatch(entry.property, node);
+            drop(entry.key, entry.property.getValue(), node);
+        }
+    }
+
+    /**
+     * Re-indexes a node whose property map has been modified
+     *
+     * @param node Node            Node to re-index
+     */
+    void update(Node node) {
+        remove(node);
+        add(node);
+    }
+
+    /**
+     * @param key   String          Indexed property key
+     * @param range Range           Values to look for
+     * @return Nodes whose property value is within the range, by increasing value
+     */
+    List<Node> find(String key, Range range) {
+        NavigableMap<Number, Object> values = trees.get(key);
+        if (range.getLower() != null && range.getUpper() != null) {
+            int order = Range.compare(range.getLower(), range.getUpper());
+            if (order > 0 || order == 0 && !(range.isLowerInclusive() && range.isUpperInclusive()))
+                return new ArrayList<>();
+        }
+        if (range.getLower() != null)
+            values = values.tailMap(range.getLower(), range.isLowerInclusive());
+        if (range.getUpper() != null)
+            values = values.headMap(range.getUpper(), range.isUpperInclusive());
+
+        List<Node> found = new ArrayList<>();
+        for (Object nodes : values.values()) {
+            if (nodes instanceof Node)
+                found.add((Node) nodes);
+            else
+                for (Object node : (Set<?>) nodes)
+                    found.add((Node) node);
+        }
+        return found;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void put(String key, Object value, Node node) {
+        if (!(value instanceof Number))
+            return;
+
+        NavigableMap<Number, Object> values = trees.get(key);
+        Object nodes = values.get(value);
+        if (nodes == null) {
+            values.put((Number) value, node);
+        } else if (nodes instanceof Node) {
+            if (nodes != node) {
+                Set<Node> shared = new LinkedHashSet<>();
+                shared.add((Node) nodes);
+                shared.add(node);
+                values.put((Number) value, shared);
+            }
+        } else {
+            ((Set<Node>) nodes).add(node);
+        }
+    }
+
+    private void drop(String key, Object value, Node node) {
+        if (!(value instanceof Number))
+            return;
+
+        NavigableMap<Number, Object> values = trees.get(key);
+        Object nodes = values.get(value);
+        if (nodes == node) {
+            values.remove(value);
+        } else if (nodes instanceof Set) {
+            Set<?> shared = (Set<?>) nodes;
+            shared.remove(node);
+            if (shared.size() == 1)
+                values.put((Number) value, shared.iterator().next());
+        }
+    }
+
+    /**
+     * Moves a node holding a changed property to its new value
+     */
+    private void valueChanged(Node node, Property<?> property, Object oldValue, Object newValue) {
+        for (Entry entry : entries.get(node)) {
+            if (entry.property == property) {
+                drop(entry.key, oldValue, node);
+                put(entry.key, newValue, node);
+            }
+        }
+    }
+
+    /**
+     * Indexed property of a node
+     */
+    private static final class Entry {
+        private final Node node;
+        private final String key;
+        private final Property<?> property;
+
+        private Entry(Node node, String key, Property<?> property) {
+            this.node = node;
+            this.key = key;
+            this.property = property;
+        }
+    }
+}
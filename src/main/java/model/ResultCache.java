@@ -0,0 +1,187 @@
+package model;
+
+import model.link.Link;
+import model.node.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Bounded cache of query results, the least recently used evicted first.
+ * Results hold for one modification stamp of the graph : the first access with a newer stamp empties the cache.
+ */
+class ResultCache {
+    private final LinkedHashMap<Object, Object> results;
+    private int capacity;
+
+    /**
+     * Stamp of the cached results
+     */
+    private long stamp = -1;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * @param capacity int             Maximum number of results, 0 to disable the cache
+     */
+    ResultCache(int capacity) {
+        this.capacity = capacity;
+        results = new LinkedHashMap<Object, Object>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+                return size() > ResultCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * @param key   Object          Canonical form of the query
+     * @param stamp long            Current modification stamp of the graph
+     * @return Cached result, null if absent or outdated
+     */
+    synchronized Object get(Object key, long stamp) {
+        if (capacity == 0)
+            return null;
+
+        Object result = null;
+        if (stamp > this.stamp)
+            reset(stamp);
+        else if (stamp == this.stamp)
+            result = results.get(key);
+
+        if (result == null)
+            misses++;
+        else
+            hits++;
+        return result;
+    }
+
+    /**
+     * @param key    Object          Canonical form of the query
+     * @param result Object          Result, not modified afterwards
+     * @param stamp  long            Modification stamp of the graph read before computing the result
+     */
+    synchronized void put(Object key, Object result, long stamp) {
+        if (stamp > this.stamp)
+            reset(stamp);
+        if (capacity > 0 && stamp == this.stamp)
+            results.put(key, result);
+    }
+
+    private void reset(long stamp) {
+        results.clear();
+        this.stamp = stamp;
+    }
+
+    synchronized int getCapacity() {
+        return capacity;
+    }
+
+    synchronized void setCapacity(int capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Cache size must not be negative");
+
+        this.capacity = capacity;
+        Object[] keys = results.keySet().toArray();
+        for (int i = 0; i < keys.length - capacity; ++i)
+            results.remove(keys[i]);
+    }
+
+    synchronized int size() {
+        return results.size();
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return Canonical form of a node filter : the property values and the ranges, by key
+     */
+    static Object nodesKey(Map<String, Property<?>> properties, Map<String, Range> ranges) {
+        return Arrays.asList("nodes", values(properties), new TreeMap<>(ranges).toString());
+    }
+
+    /**
+     * @return Canonical form of a link lookup between the extremities of a template
+     */
+    static Object linksKey(Link template) {
+        return Arrays.asList("links", template.getFrom().getId(), template.getTo().getId());
+    }
+
+    /**
+     * Node ids and node order never enter the key : queries built again with the same nodes and links,
+     * in any order, share their result. Nodes are ordered by their description, then by the descriptions of
+     * their links and neighbours. Nodes left tied may take either position : a key always describes its query
+     * up to isomorphism, equivalent queries at worst missing each other's result.
+     *
+     * @return Canonical form of a query graph : the type, properties and search flag of its nodes in canonical
+     *         order, and its links between node positions, in no particular order
+     */
+    static Object searchKey(KnowledgeGraph query) {
+        Map<Node, String> descriptions = new HashMap<>();
+        for (Node node : query.getNodes())
+            descriptions.put(node, describe(node).toString());
+
+        Map<Node, String> signatures = new HashMap<>();
+        for (Node node : query.getNodes()) {
+            List<String> neighbours = new ArrayList<>();
+            for (Link link : node.getLinks()) {
+                boolean outgoing = link.getFrom() == node;
+                Node other = outgoing ? link.getTo() : link.getFrom();
+                neighbours.add(Arrays.asList(link.getClass().getName(), link.isSearched(), link.getName(),
+                        link.isOriented(), outgoing, descriptions.get(other)).toString());
+            }
+            Collections.sort(neighbours);
+            signatures.put(node, descriptions.get(node) + neighbours);
+        }
+
+        List<Node> ordered = new ArrayList<>(query.getNodes());
+        ordered.sort(Comparator.comparing(signatures::get));
+        List<Object> nodes = new ArrayList<>();
+        Map<Node, Integer> positions = new HashMap<>();
+        for (Node node : ordered) {
+            positions.put(node, nodes.size());
+            nodes.add(describe(node));
+        }
+
+        Set<Object> links = new HashSet<>();
+        for (Link link : query.getLinks())
+            links.add(Arrays.asList(link.getClass(), link.isSearched(), link.getName(), link.isOriented(),
+                    positions.get(link.getFrom()), positions.get(link.getTo())));
+        return Arrays.asList("search", nodes, links);
+    }
+
+    private static List<Object> describe(Node node) {
+        return Arrays.asList(node.getClass().getName(), node.isSearched(), values(node.getAllProperties()));
+    }
+
+    private static Map<String, Object> values(Map<String, Property<?>> properties) {
+        Map<String, Object> values = new TreeMap<>();
+        for (Map.Entry<String, Property<?>> property : properties.entrySet())
+            values.put(property.getKey(), property.getValue().getValue());
+        return values;
+    }
+
+    /**
+     * @return Copy of a cached list, for the caller to modify
+     */
+    @SuppressWarnings("unchecked")
+    static <T> List<T> copy(Object list) {
+        return new ArrayList<>((List<T>) list);
+    }
+}
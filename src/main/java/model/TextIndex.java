@@ -0,0 +1,431 @@
+package model;
+
+import model.node.Node;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Full-text index of the string property values : the values are split into words, lower-cased and stripped
+ * of their accents, then the words are stored in a trie pointing to the nodes.
+ * Every word of a query matches the words of a node it is a prefix of ("pneumo" matches "pneumonie").
+ */
+class TextIndex {
+    private static final char[] NO_LABELS = new char[0];
+    private static final Trie[] NO_CHILDREN = new Trie[0];
+
+    private final Trie root = new Trie();
+
+    /**
+     * Words and string properties of every indexed node
+     */
+    private final Map<Node, Entry> entries = new HashMap<>();
+
+    private final PropertyWatcher watcher;
+
+    /**
+     * @param lock Supplier        Current lock of the graph
+     */
+    TextIndex(Supplier<ReadWriteLock> lock) {
+        watcher = new PropertyWatcher(lock, (node, property, oldValue, newValue) -> update(node));
+    }
+
+    /**
+     * Indexes the string properties of a node
+     *
+     * @param node Node            Node to index
+     */
+    void add(Node node) {
+        if (entries.containsKey(node))
+            return;
+
+        Entry entry = new Entry();
+        for (Property<?> property : node.getAllProperties().values()) {
+            if (property.getValue() instanceof String) {
+                entry.properties.add(property);
+                watcher.watch(property, node);
+            }
+        }
+        entry.words = words(entry.properties);
+        for (int i = 0; i < entry.words.length; ++i)
+            entry.words[i] = root.add(entry.words[i], 0, node);
+        entries.put(node, entry);
+    }
+
+    /**
+     * Removes a node from the index
+     *
+     * @param node Node            Node to forget
+     */
+    void remove(Node node) {
+        Entry entry = entries.remove(node);
+        if (entry == null)
+            return;
+
+        for (Property<?> property : entry.properties)
+            watcher.unwatch(property, node);
+        for (String word : entry.words)
+            root.remove(word, 0, node);
+    }
+
+    /**
+     * Re-indexes a node whose property map has been modified
+     *
+     * @param node Node            Node to re-index
+     */
+    void update(Node node) {
+        remove(node);
+        add(node);
+    }
+
+    /**
+     * A single word walks the trie breadth first, the nodes of the shortest words coming first, and stops
+     * once enough nodes have been found. Several words start from the nodes of the most selective one.
+     *
+     * @param text  String          Words to look for
+     * @param limit int             Maximum number of hits
+     * @return Nodes matching every word, best first (see rank)
+     */
+    List<Node> search(String text, int limit) {
+        String[] query = tokenize(text);
+        if (query.length == 0)
+            return new ArrayList<>();
+
+        Trie selective = null;
+        for (String word : query) {
+            Trie trie = root.find(word);
+            if (trie == null)
+                return new ArrayList<>();
+            if (selective == null || trie.count < selective.count)
+                selective = trie;
+        }
+
+        if (query.length > 1) {
+            List<Node> candidates = new ArrayList<>(selective.count);
+            selective.collect(candidates);
+            return rank(new HashSet<>(candidates), node -> entries.get(node).words, query, limit);
+        }
+
+        // Every level holds the words one letter longer, which score lower
+        List<Node> hits = new ArrayList<>();
+        Set<Node> seen = new HashSet<>();
+        List<Trie> level = Collections.singletonList(selective);
+        while (!level.isEmpty() && hits.size() < limit) {
+            List<Node> found = new ArrayList<>();
+            List<Trie> next = new ArrayList<>();
+            for (Trie trie : level) {
+                trie.collectOwn(found);
+                next.addAll(Arrays.asList(trie.children));
+            }
+            hits.addAll(first(found, seen, limit - hits.size()));
+            level = next;
+        }
+        return hits;
+    }
+
+    /**
+     * @param found List            Nodes of words of the same length, possibly repeated
+     * @param seen  Set             Nodes of shorter words, completed with the found ones
+     * @param count int             Number of nodes wanted
+     * @return First nodes not seen yet, the ones with the fewest words first, then by id
+     */
+    private List<Node> first(List<Node> found, Set<Node> seen, int count) {
+        Map<Node, Integer> sizes = new HashMap<>();
+        for (Node node : found)
+            if (seen.add(node))
+                sizes.put(node, entries.get(node).words.length);
+
+        Comparator<Node> order = Comparator.<Node>comparingInt(sizes::get).thenComparing(Node::getId);
+        PriorityQueue<Node> first = new PriorityQueue<>(order.reversed());
+        for (Node node : sizes.keySet()) {
+            first.add(node);
+            if (first.size() > count)
+                first.poll();
+        }
+
+        List<Node> nodes = new ArrayList<>(first);
+        nodes.sort(order);
+        return nodes;
+    }
+
+    /**
+     * Search without index, scoring every node
+     *
+     * @param nodes List            Nodes to search
+     * @param text  String          Words to look for
+     * @param limit int             Maximum number of hits
+     * @return Nodes matching every word, best first (see rank)
+     */
+    static List<Node> scan(List<Node> nodes, String text, int limit) {
+        String[] query = tokenize(text);
+        if (query.length == 0)
+            return new ArrayList<>();
+
+        Map<Node, String[]> words = new HashMap<>();
+        for (Node node : nodes) {
+            List<Property<?>> properties = new ArrayList<>();
+            for (Property<?> property : node.getAllProperties().values())
+                if (property.getValue() instanceof String)
+                    properties.add(property);
+            String[] nodeWords = words(properties);
+            if (score(nodeWords, query) > 0)
+                words.put(node, nodeWords);
+        }
+        return rank(words.keySet(), words::get, query, limit);
+    }
+
+    /**
+     * Ranks the nodes by decreasing score, then by increasing number of words, then by id.
+     * The score of a node sums, for every query word, its best match among the words of the node :
+     * 1 for the word itself, the fraction of the word typed for a longer word ("pneumo" -> 6/9 on "pneumonie").
+     *
+     * @param candidates Collection      Distinct candidate nodes
+     * @param words      Function        Words of a candidate node
+     * @param query      String[]        Query words
+     * @param limit      int             Maximum number of hits
+     * @return Nodes matching every query word, best first
+     */
+    private static List<Node> rank(Collection<Node> candidates, Function<Node, String[]> words,
+                                   String[] query, int limit) {
+        Map<Node, Double> scores = new HashMap<>();
+        Comparator<Node> order = Comparator.<Node>comparingDouble(scores::get).reversed()
+                .thenComparingInt(node -> words.apply(node).length)
+                .thenComparing(Node::getId);
+
+        // Keeps the best hits, the worst one on top
+        PriorityQueue<Node> best = new PriorityQueue<>(order.reversed());
+        for (Node node : candidates) {
+            double score = score(words.apply(node), query);
+            if (score == 0)
+                continue;
+            scores.put(node, score);
+            best.add(node);
+            if (best.size() > limit)
+                scores.remove(best.poll());
+        }
+
+        List<Node> hits = new ArrayList<>(best);
+        hits.sort(order);
+        return hits;
+    }
+
+    /**
+     * @return Score of the node words (see rank), 0 if a query word matches none of them
+     */
+    private static double score(String[] words, String[] query) {
+        double score = 0;
+        for (String prefix : query) {
+            double best = 0;
+            for (String word : words)
+                if (word.startsWith(prefix))
+                    best = Math.max(best, (double) prefix.length() / word.length());
+            if (best == 0)
+                return 0;
+            score += best;
+        }
+        return score;
+    }
+
+    /**
+     * @param properties List            String properties
+     * @return Distinct words of the values
+     */
+    private static String[] words(List<Property<?>> properties) {
+        Set<String> words = new LinkedHashSet<>();
+        for (Property<?> property : properties) {
+            // a value set later may no longer be a string
+            Object value = property.getValue();
+            if (value instanceof String)
+                words.addAll(Arrays.asList(tokenize((String) value)));
+        }
+        return words.toArray(new String[0]);
+    }
+
+    /**
+     * Splits a text into lower-case words, without accents, the ligatures decomposed (oe, ae, ss)
+     *
+     * @param text String          Text
+     * @return Distinct words, in order
+     */
+    static String[] tokenize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        Set<String> words = new LinkedHashSet<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= decomposed.length(); ++i) {
+            char c = i < decomposed.length() ? decomposed.charAt(i) : ' ';
+            if (Character.getType(c) == Character.NON_SPACING_MARK)
+                continue;
+
+            c = Character.toLowerCase(c);
+            if (c == '\u0153') {
+                word.append("oe");
+            } else if (c == '\u00e6') {
+                word.append("ae");
+            } else if (c == '\u00df') {
+                word.append("ss");
+            } else if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+
+    /**
+     * Trie node : children sorted by character, nodes having the word ending here
+     */
+    private static final class Trie {
+        private char[] labels = NO_LABELS;
+        private Trie[] children = NO_CHILDREN;
+
+        /**
+         * Node, or Set<Node> when several nodes have the word, null if no word ends here
+         */
+        private Object nodes;
+
+        /**
+         * Word ending here, shared by the entries of the nodes having it
+         */
+        private String word;
+
+        /**
+         * Number of (word, node) pairs in the subtree
+         */
+        private int count;
+
+        private Trie child(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            return index < 0 ? null : children[index];
+        }
+
+        /**
+         * @return Node of the word, null if no indexed word starts with it
+         */
+        private Trie find(String word) {
+            Trie trie = this;
+            for (int i = 0; i < word.length() && trie != null; ++i)
+                trie = trie.child(word.charAt(i));
+            return trie;
+        }
+
+        /**
+         * @return Shared instance of the word
+         */
+        @SuppressWarnings("unchecked")
+        private String add(String word, int depth, Node node) {
+            count++;
+            if (depth == word.length()) {
+                if (nodes == null) {
+                    nodes = node;
+                    this.word = word;
+                } else if (nodes instanceof Node) {
+                    Set<Node> shared = new HashSet<>();
+                    shared.add((Node) nodes);
+                    shared.add(node);
+                    nodes = shared;
+                } else {
+                    ((Set<Node>) nodes).add(node);
+                }
+                return this.word;
+            }
+
+            char label = word.charAt(depth);
+            int index = Arrays.binarySearch(labels, label);
+            if (index < 0) {
+                index = -index - 1;
+                labels = insert(labels, index, label);
+                Trie[] grown = new Trie[children.length + 1];
+                System.arraycopy(children, 0, grown, 0, index);
+                System.arraycopy(children, index, grown, index + 1, children.length - index);
+                grown[index] = new Trie();
+                children = grown;
+            }
+            return children[index].add(word, depth + 1, node);
+        }
+
+        /**
+         * Removes a word of a node, pruning the emptied branches
+         */
+        private void remove(String word, int depth, Node node) {
+            count--;
+            if (depth == word.length()) {
+                if (nodes == node) {
+                    nodes = null;
+                    this.word = null;
+                } else if (nodes instanceof Set) {
+                    Set<?> shared = (Set<?>) nodes;
+                    shared.remove(node);
+                    if (shared.size() == 1)
+                        nodes = shared.iterator().next();
+                }
+                return;
+            }
+
+            int index = Arrays.binarySearch(labels, word.charAt(depth));
+            Trie child = children[index];
+            child.remove(word, depth + 1, node);
+            if (child.count == 0) {
+                char[] shrunk = new char[labels.length - 1];
+                Trie[] remaining = new Trie[children.length - 1];
+                System.arraycopy(labels, 0, shrunk, 0, index);
+                System.arraycopy(labels, index + 1, shrunk, index, labels.length - index - 1);
+                System.arraycopy(children, 0, remaining, 0, index);
+                System.arraycopy(children, index + 1, remaining, index, children.length - index - 1);
+                labels = shrunk;
+                children = remaining;
+            }
+        }
+
+        /**
+         * Adds the nodes of the subtree, a node once per word it has in the subtree
+         */
+        private void collect(List<Node> found) {
+            collectOwn(found);
+            for (Trie child : children)
+                child.collect(found);
+        }
+
+        /**
+         * Adds the nodes having the word ending here
+         */
+        private void collectOwn(List<Node> found) {
+            if (nodes instanceof Node)
+                found.add((Node) nodes);
+            else if (nodes != null)
+                for (Object node : (Set<?>) nodes)
+                    found.add((Node) node);
+        }
+
+        private static char[] insert(char[] labels, int index, char label) {
+            char[] grown = new char[labels.length + 1];
+            System.arraycopy(labels, 0, grown, 0, index);
+            grown[index] = label;
+            System.arraycopy(labels, index, grown, index + 1, labels.length - index);
+            return grown;
+        }
+    }
+
+    /**
+     * Indexed node, re-indexed when one of its string properties changes
+     */
+    private static final class Entry {
+        private final List<Property<?>> properties = new ArrayList<>();
+        private String[] words;
+    }
+}
@@ -0,0 +1,585 @@
+package model;
+
+import model.link.Link;
+import model.node.ConceptNode;
+import model.node.Node;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.zip.CRC32;
+
+import static model.BinaryGraphFormat.*;
+
+/**
+ * Append-only binary log of the structural modifications of a KnowledgeGraph.
+ *
+ * <pre>
+ * record      : length(int) crc32(int) payload
+ * add node    : 1 flags(byte) id properties (see BinaryGraphFormat, strings written inline)
+ * remove node : 2 id
+ * add link    : 3 type(byte) flags(byte) from to name [weight(double)]
+ * remove link : 4 type(byte) from to name
+ * </pre>
+ *
+ * Records are appended to a memory buffer and only reach the disk on sync().
+ * Concurrent sync() calls are group-committed : the first caller writes every
+ * pending record with a single fsync while the others wait for it, then the
+ * next one flushes whatever was appended in the meantime.
+ */
+public class WriteAheadLog implements Closeable {
+    private static final byte ADD_NODE = 1;
+    private static final byte REMOVE_NODE = 2;
+    private static final byte ADD_LINK = 3;
+    private static final byte REMOVE_LINK = 4;
+
+    /**
+     * Pending bytes above which an append flushes the buffer itself
+     */
+    private static final int MAX_PENDING = 1 << 20;
+
+    private final Path path;
+    private final FileChannel channel;
+
+    private ByteArrayOutputStream pending;
+
+    /**
+     * Number of bytes appended, and number of bytes known to be on disk
+     */
+    private long appended;
+    private long durable;
+
+    /**
+     * true while a caller writes and forces a batch
+     */
+    private boolean syncing;
+
+    /**
+     * First write error, reported by every later sync()
+     */
+    private IOException failure;
+
+    private long batches;
+    private long records;
+
+    private WriteAheadLog(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+        this.pending = new ByteArrayOutputStream(1 << 12);
+    }
+
+    /**
+     * Opens a log, creating it if it does not exist
+     *
+     * @param path String          Log file
+     * @return Log positioned at its end
+     * @throws IOException File error
+     */
+    public static WriteAheadLog open(String path) throws IOException {
+        Path file = Paths.get(path);
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        WriteAheadLog log = new WriteAheadLog(file, channel);
+        log.appended = log.durable = channel.size();
+        return log;
+    }
+
+    /**
+     * Applies every record of the log to a graph (its own log, if any, is not fed meanwhile).
+     * A truncated or corrupted record, left by a crash during a write, ends the log : it is cut there.
+     *
+     * @param graph KnowledgeGraph  Graph loaded from the last checkpoint
+     * @return Number of replayed records
+     * @throws IOException Read error, or record inconsistent with the graph
+     */
+    public synchronized int replay(KnowledgeGraph graph) throws IOException {
+        WriteAheadLog attached = graph.getWriteAheadLog();
+        graph.setWriteAheadLog(null);
+        int count = 0;
+        long valid = 0;
+        int maxId = Node.getNextId() - 1;
+        try {
+            channel.position(0);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(channel), 1 << 16));
+            while (true) {
+                byte[] payload = readRecord(in);
+                if (payload == null)
+                    break;
+                maxId = Math.max(maxId, apply(graph, payload));
+                valid += 8 + payload.length;
+                count++;
+            }
+        } finally {
+            graph.setWriteAheadLog(attached);
+        }
+
+        Node.setNextId(maxId + 1);
+        if (valid < channel.size()) {
+            channel.truncate(valid);
+            channel.force(false);
+        }
+        channel.position(valid);
+        appended = durable = valid;
+        return count;
+    }
+
+    /**
+     * @return Payload of the next record, null at the end of the log or on a torn record
+     */
+    private byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length < 1 || length > channel.size())
+                return null;
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            return (int) crc.getValue() == checksum ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return Numeric id of the added node, -1 otherwise
+     */
+    private static int apply(KnowledgeGraph graph, byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte operation = in.readByte();
+        switch (operation) {
+            case ADD_NODE: {
+                int flags = in.readUnsignedByte();
+                String id = readString(in);
+                int propertyCount = readVarInt(in);
+                Map<String, Property<?>> properties = new PropertyMap();
+                for (int i = 0; i < propertyCount; ++i) {
+                    String key = readString(in);
+                    properties.put(key, Property.of(readValue(in)));
+                }
+                graph.addNodes(Node.of((flags & FLAG_CONCEPT) != 0 ? "CONCEPT" : "INSTANCE",
+                        properties, id, (flags & FLAG_SEARCH) != 0));
+                return isNumericId(id) ? Integer.parseInt(id) : -1;
+            }
+
+            case REMOVE_NODE:
+                graph.removeNodes(node(graph, readString(in)));
+                return -1;
+
+            case ADD_LINK: {
+                int type = in.readUnsignedByte();
+                int flags = in.readUnsignedByte();
+                Node from = node(graph, readString(in));
+                Node to = node(graph, readString(in));
+                String name = readString(in);
+                if (type >= LINK_TYPES.length)
+                    throw new IOException("Invalid link type " + type);
+
+                Link link = Link.of(LINK_TYPES[type], name, (flags & FLAG_ORIENTED) != 0);
+                if (!link.getName().equals(name))
+                    link.setName(name);
+                link.setSearch((flags & FLAG_SEARCH) != 0);
+                if ((flags & FLAG_WEIGHTED) != 0) {
+                    try {
+                        link.setWeight(in.readDouble());
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException(e.getMessage());
+                    }
+                }
+                graph.addLink(from, to, link);
+                return -1;
+            }
+
+            case REMOVE_LINK: {
+                int type = in.readUnsignedByte();
+                String from = readString(in);
+                String to = readString(in);
+                String name = readString(in);
+                // removed nodes keep their links, so an extremity may be missing from the graph
+                Node anchor = graph.findNode(from) != null ? graph.findNode(from) : graph.findNode(to);
+                for (Link link : anchor != null ? anchor.getLinks() : graph.getLinks()) {
+                    if (link.getFrom().getId().equals(from) && link.getTo().getId().equals(to)
+                            && link.getName().equals(name) && GraphSnapshot.typeOf(link) == type) {
+                        graph.removeLink(link, false);
+                        return -1;
+                    }
+                }
+                throw new IOException("Log removes an unknown link between " + from + " and " + to);
+            }
+
+            default:
+                throw new IOException("Invalid log record " + operation);
+        }
+    }
+
+    private static Node node(KnowledgeGraph graph, String id) throws IOException {
+        Node node = graph.findNode(id);
+        if (node == null)
+            throw new IOException("Log refers to unknown node " + id);
+        return node;
+    }
+
+    void addNode(Node node) {
+        ByteArrayOutputStream record = new ByteArrayOutputStream(64);
+        DataOutputStream recordOut = new DataOutputStream(record);
+        try {
+            recordOut.writeByte(ADD_NODE);
+            recordOut.writeByte((node instanceof ConceptNode ? FLAG_CONCEPT : 0) | (node.isSearched() ? FLAG_SEARCH : 0));
+            writeString(recordOut, node.getId());
+            writeVarInt(recordOut, node.getProperties().size());
+            for (Map.Entry<String, Property<?>> property : node.getProperties().entrySet()) {
+                writeString(recordOut, property.getKey());
+                writeValue(recordOut, property.getValue().getValue());
+            }
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+        append(record);
+    }
+
+    void removeNode(Node node) {
+        ByteArrayOutputStream record = new ByteArrayOutputStream(64);
+        DataOutputStream recordOut = new DataOutputStream(record);
+        try {
+            recordOut.writeByte(REMOVE_NODE);
+            writeString(recordOut, node.getId());
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+        append(record);
+    }
+
+    void addLink(Link link) {
+        ByteArrayOutputStream record = new ByteArrayOutputStream(64);
+        DataOutputStream recordOut = new DataOutputStream(record);
+        try {
+            byte type = GraphSnapshot.typeOf(link);
+            if (type == GraphSnapshot.OTHER)
+                throw new IOException("Unsupported link type " + link.getClass().getName());
+            recordOut.writeByte(ADD_LINK);
+            recordOut.writeByte(type);
+            recordOut.writeByte((link.isOriented() ? FLAG_ORIENTED : 0)
+                    | (link.isSearched() ? FLAG_SEARCH : 0)
+                    | (link.getWeight() != 1 ? FLAG_WEIGHTED : 0));
+            writeString(recordOut, link.getFrom().getId());
+            writeString(recordOut, link.getTo().getId());
+            writeString(recordOut, link.getName());
+            if (link.getWeight() != 1)
+                recordOut.writeDouble(link.getWeight());
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+        append(record);
+    }
+
+    void removeLink(Link link) {
+        ByteArrayOutputStream record = new ByteArrayOutputStream(64);
+        DataOutputStream recordOut = new DataOutputStream(record);
+        try {
+            recordOut.writeByte(REMOVE_LINK);
+            recordOut.writeByte(GraphSnapshot.typeOf(link));
+            writeString(recordOut, link.getFrom().getId());
+            writeString(recordOut, link.getTo().getId());
+            writeString(recordOut, link.getName());
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+        append(record);
+    }
+
+    /**
+     * Frames the record being built and moves it to the pending buffer
+     */
+    private void append(ByteArrayOutputStream record) {
+        byte[] payload = record.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        boolean flush;
+        synchronized (this) {
+            if (failure == null) {
+                int length = payload.length;
+                pending.write(length >>> 24);
+                pending.write(length >>> 16);
+                pending.write(length >>> 8);
+                pending.write(length);
+                int checksum = (int) crc.getValue();
+                pending.write(checksum >>> 24);
+                pending.write(checksum >>> 16);
+                pending.write(checksum >>> 8);
+                pending.write(checksum);
+                pending.write(payload, 0, length);
+                appended += 8 + length;
+                records++;
+            }
+            flush = pending.size() >= MAX_PENDING;
+        }
+        if (flush) {
+            try {
+                sync();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    private synchronized void fail(IOException e) {
+        if (failure == null)
+            failure = e;
+    }
+
+    /**
+     * Makes every record appended so far durable. Callers arriving while another
+     * one is writing wait for it, and their records are flushed by a single batch.
+     *
+     * @throws IOException Write error (reported again by every later call)
+     */
+    public void sync() throws IOException {
+        ByteArrayOutputStream batch;
+        long target;
+        synchronized (this) {
+            long wanted = appended;
+            while (syncing && durable < wanted && failure == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the log");
+                }
+            }
+            if (failure != null)
+                throw failure;
+            if (durable >= wanted)
+                return;
+
+            // leader : takes every pending record, including those of the waiting callers
+            syncing = true;
+            batch = pending;
+            pending = new ByteArrayOutputStream(Math.max(1 << 12, batch.size()));
+            target = appended;
+        }
+
+        IOException error = null;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            channel.force(false);
+        } catch (IOException e) {
+            error = e;
+        }
+
+        synchronized (this) {
+            syncing = false;
+            if (error != null) {
+                if (failure == null)
+                    failure = error;
+            } else {
+                durable = Math.max(durable, target);
+                batches++;
+            }
+            notifyAll();
+            if (failure != null)
+                throw failure;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the graph in the binary graph format, then empties the log.
+     * The snapshot is written to a temporary file first and renamed over the previous one,
+     * so a crash at any point leaves either the old snapshot and the full log or the new snapshot.
+     * The writers of the graph wait until the log is emptied, so that no modification is logged
+     * after the snapshot is taken and then lost with the log.
+     *
+     * @param graph        KnowledgeGraph  Graph fed by this log
+     * @param snapshotPath String          Snapshot file
+     * @throws IOException Write error
+     */
+    public void checkpoint(KnowledgeGraph graph, String snapshotPath) throws IOException {
+        Lock writers = graph.getLock().writeLock();
+        writers.lock();
+        try {
+            sync();
+            Path snapshot = Paths.get(snapshotPath).toAbsolutePath();
+            Path temporary = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+            try (FileChannel file = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                OutputStream out = Channels.newOutputStream(file);
+                graph.toBinary(out);
+                file.force(true);
+            }
+            Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            truncate();
+        } finally {
+            writers.unlock();
+        }
+    }
+
+    /**
+     * Empties the log, including the records not synced yet
+     *
+     * @throws IOException Write error
+     */
+    public void truncate() throws IOException {
+        synchronized (this) {
+            while (syncing) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the log");
+                }
+            }
+            pending.reset();
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(false);
+            appended = durable = 0;
+        }
+    }
+
+    /**
+     * @return Size of the log on disk, in bytes
+     */
+    public synchronized long size() {
+        return durable;
+    }
+
+    /**
+     * @return Number of records appended since the log was opened
+     */
+    public synchronized long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * @return Number of fsync batches since the log was opened
+     */
+    public synchronized long getBatchCount() {
+        return batches;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Syncs the pending records and closes the file
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null || value == JSONObject.NULL) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(TAG_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte(TAG_INT);
+            writeVarInt(out, zigzag(((Number) value).intValue()));
+        } else if (value instanceof Long) {
+            out.writeByte(TAG_LONG);
+            writeVarLong(out, zigzag((long) (Long) value));
+        } else if (value instanceof Double) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(TAG_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof BigInteger) {
+            out.writeByte(TAG_BIG_INTEGER);
+            writeString(out, value.toString());
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(TAG_BIG_DECIMAL);
+            writeString(out, value.toString());
+        } else if (value instanceof JSONObject) {
+            out.writeByte(TAG_JSON_OBJECT);
+            writeString(out, value.toString());
+        } else if (value instanceof JSONArray) {
+            out.writeByte(TAG_JSON_ARRAY);
+            writeString(out, value.toString());
+        } else {
+            throw new IOException("Unsupported property type " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return JSONObject.NULL;
+            case TAG_STRING:
+                return readString(in);
+            case TAG_INT:
+                return unzigzag(readVarInt(in));
+            case TAG_LONG:
+                return unzigzag(readVarLong(in));
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_FLOAT:
+                return in.readFloat();
+            case TAG_TRUE:
+                return true;
+            case TAG_FALSE:
+                return false;
+            case TAG_BIG_INTEGER:
+                return new BigInteger(readString(in));
+            case TAG_BIG_DECIMAL:
+                return new BigDecimal(readString(in));
+            case TAG_JSON_OBJECT:
+                return new JSONObject(readString(in));
+            case TAG_JSON_ARRAY:
+                return new JSONArray(readString(in));
+            default:
+                throw new IOException("Invalid property tag " + tag);
+        }
+    }
+}
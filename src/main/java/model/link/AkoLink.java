@@ -9,6 +9,10 @@ public class AkoLink extends Link {
         super("ako", true);
     }
 
+    protected AkoLink(String id) {
+        super("ako", true, id, false);
+    }
+
     @Override
     public boolean isCompatible(Node from, Node to) {
         return from instanceof ConceptNode && to instanceof ConceptNode;
@@ -19,6 +23,11 @@ public class AkoLink extends Link {
         return other instanceof AkoLink;
     }
 
+    @Override
+    protected Link newLink(String id) {
+        return new AkoLink(id);
+    }
+
     @Override
     public JSONObject toJSONObject() {
         JSONObject obj = super.toJSONObject();
@@ -30,4 +39,9 @@ public class AkoLink extends Link {
     public void checkInheritProperties(Node from, Node to) {
         super.inheritProperties(from, to);
     }
+
+    @Override
+    public boolean inheritsProperties() {
+        return true;
+    }
 }
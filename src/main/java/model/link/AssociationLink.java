@@ -9,6 +9,10 @@ public class AssociationLink extends Link {
         super(name, oriented);
     }
 
+    protected AssociationLink(String name, boolean oriented, String id) {
+        super(name, oriented, id, false);
+    }
+
     public AssociationLink(String name) {
         this(name, true);
     }
@@ -35,6 +39,16 @@ public class AssociationLink extends Link {
         return false;
     }
 
+    @Override
+    public boolean isNameSignificant() {
+        return true;
+    }
+
+    @Override
+    protected Link newLink(String id) {
+        return new AssociationLink(getName(), isOriented(), id);
+    }
+
     @Override
     public JSONObject toJSONObject() {
         JSONObject obj = super.toJSONObject();
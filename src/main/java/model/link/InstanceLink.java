@@ -10,6 +10,10 @@ public class InstanceLink extends Link {
         super("instance", true);
     }
 
+    protected InstanceLink(String id) {
+        super("instance", true, id, false);
+    }
+
     @Override
     public boolean isCompatible(Node from, Node to) {
         return (from instanceof ConceptNode && to instanceof InstanceNode) ||
@@ -21,6 +25,11 @@ public class InstanceLink extends Link {
         return other instanceof InstanceLink;
     }
 
+    @Override
+    protected Link newLink(String id) {
+        return new InstanceLink(id);
+    }
+
     @Override
     public JSONObject toJSONObject() {
         JSONObject obj = super.toJSONObject();
@@ -32,4 +41,9 @@ public class InstanceLink extends Link {
     public void checkInheritProperties(Node from, Node to) {
         super.inheritProperties(from, to);
     }
+
+    @Override
+    public boolean inheritsProperties() {
+        return true;
+    }
 }
@@ -8,6 +8,8 @@ import model.node.Node;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Link
  */
@@ -16,7 +18,7 @@ public abstract class Link extends GraphElement {
     /**
      * Next free ID
      */
-    private static int nextId = 0;
+    private static final AtomicInteger nextId = new AtomicInteger();
 
     private final String id;
 
@@ -40,13 +42,27 @@ public abstract class Link extends GraphElement {
      */
     private String name;
 
+    /**
+     * Link weight used by path finding (1 by default)
+     */
+    private double weight = 1;
+
+    /**
+     * true if the destination resolves the properties of the origin at read time (see Node.getAllProperties)
+     */
+    private boolean lazy;
+
     protected Link(String name, boolean oriented) {
         this(name, oriented, false);
     }
 
     protected Link(String name, boolean oriented, boolean search) {
+        this(name, oriented, Integer.toString(Link.nextId.getAndIncrement()), search);
+    }
+
+    protected Link(String name, boolean oriented, String id, boolean search) {
         super(search);
-        this.id = Integer.toString(Link.nextId++);
+        this.id = id;
 
         if (name == null)
             throw new IllegalArgumentException("Link name cannot be null");
@@ -63,8 +79,57 @@ public abstract class Link extends GraphElement {
 
     public abstract boolean isSameLink(Link other);
 
+    /**
+     * @param id String          Id of the new link
+     * @return New uninitialized link of the same type, name and orientation
+     */
+    protected abstract Link newLink(String id);
+
+    /**
+     * Copies the link (id, name, weight, search flag) without its extremities, like Node.copy
+     *
+     * @return Uninitialized copy of the link
+     */
+    public Link copy() {
+        Link copy = newLink(id);
+        copy.name = name;
+        copy.weight = weight;
+        copy.setSearch(isSearched());
+        return copy;
+    }
+
+    /**
+     * @return true if isSameLink also compares link names
+     */
+    public boolean isNameSignificant() {
+        return false;
+    }
+
     public void checkInheritProperties(Node from, Node to) {}
 
+    /**
+     * @return true if the destination of this kind of link inherits the properties of its origin
+     */
+    public boolean inheritsProperties() {
+        return false;
+    }
+
+    /**
+     * @return true if the destination inherits the properties of the origin lazily, instead of copies
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Must be set before the link is attached to its nodes
+     *
+     * @param lazy boolean         Lazy inheritance, ignored by the links not inheriting properties
+     */
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy && inheritsProperties();
+    }
+
     protected void inheritProperties(Node from, Node to) {
         for (String key : from.getProperties().keySet())
             if (to.getProperties().get(key) == null)
@@ -134,6 +199,21 @@ public abstract class Link extends GraphElement {
         return oriented;
     }
 
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * @param weight New weight of the link
+     * @throws IllegalArgumentException If the weight is negative or NaN
+     */
+    public void setWeight(double weight) {
+        if (!(weight >= 0))
+            throw new IllegalArgumentException("Link weight must be positive");
+
+        this.weight = weight;
+    }
+
     /**
      * @param from New origin of the link
      * @throws IllegalLinkAssociationException Thrown when incompatible link and nodes association
@@ -162,7 +242,20 @@ public abstract class Link extends GraphElement {
         if (name == null)
             throw new IllegalArgumentException("Name can't be null");
 
+        // attached nodes index their links by name
+        Node from = this.from;
+        Node to = this.to;
+        if (from != null)
+            from.removeLink(this);
+        if (to != null)
+            to.removeLink(this);
+
         this.name = name;
+
+        if (from != null)
+            from.addLink(this);
+        if (to != null && to != from)
+            to.addLink(this);
     }
 
     @Override
@@ -197,6 +290,8 @@ public abstract class Link extends GraphElement {
         obj.put("to", to.getId());
         obj.put("name", name);
         obj.put("oriented", oriented);
+        if (weight != 1)
+            obj.put("weight", weight);
         return obj;
     }
 
@@ -209,7 +304,25 @@ public abstract class Link extends GraphElement {
         String name = obj.getString("name");
         boolean oriented = obj.getBoolean("oriented");
 
-        switch (obj.getString("type")) {
+        try {
+            Link link = of(obj.getString("type"), name, oriented);
+            if (obj.has("weight"))
+                link.setWeight(obj.getDouble("weight"));
+            return link;
+        } catch (IllegalArgumentException e) {
+            throw new JSONException(e.getMessage());
+        }
+    }
+
+    /**
+     * @param type     Link type (AKO, ASSOCIATION, COMPOSITION or INSTANCE)
+     * @param name     Link name (ignored by AKO and INSTANCE links)
+     * @param oriented Orientation (ignored by AKO and INSTANCE links)
+     * @return New uninitialized link of the given type
+     * @throws IllegalArgumentException Invalid type
+     */
+    public static Link of(String type, String name, boolean oriented) {
+        switch (type) {
             case "AKO":
                 return new AkoLink();
 
@@ -223,7 +336,7 @@ public abstract class Link extends GraphElement {
                 return new InstanceLink();
 
             default:
-                throw new JSONException("Invalid type");
+                throw new IllegalArgumentException("Invalid type");
         }
     }
 
@@ -23,6 +23,11 @@ public class ConceptNode extends Node {
         return "concept";
     }
 
+    @Override
+    public Node copy() {
+        return new ConceptNode(copyProperties(), getId(), isSearched());
+    }
+
     @Override
     public JSONObject toJSONObject() {
         JSONObject obj = super.toJSONObject();
@@ -23,6 +23,11 @@ public class InstanceNode extends Node {
         return "instance";
     }
 
+    @Override
+    public Node copy() {
+        return new InstanceNode(copyProperties(), getId(), isSearched());
+    }
+
     @Override
     public JSONObject toJSONObject() {
         JSONObject obj = super.toJSONObject();
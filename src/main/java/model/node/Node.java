@@ -2,14 +2,22 @@ package model.node;
 
 import model.GraphElement;
 import model.Property;
+import model.PropertyDictionary;
+import model.PropertyMap;
 import model.link.Link;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Node
@@ -18,30 +26,81 @@ public abstract class Node extends GraphElement {
     /**
      * Next free ID
      */
-    private static int NEXT_ID = 0;
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
 
-    private final List<Link> links;
-    private final Map<String, Property<?>> properties;
+    private final LinkList links;
+
+    /**
+     * Links starting from this node
+     */
+    private final LinkList outgoing;
+
+    /**
+     * Links ending on this node
+     */
+    private final LinkList incoming;
+
+    /**
+     * Links by class, then by name
+     */
+    private final Map<Class<? extends Link>, LinkList> linksByClass;
+    private final Map<Class<? extends Link>, Map<String, LinkList>> linksByName;
+
+    /**
+     * Own properties, keyed by dictionary code (see PropertyDictionary)
+     */
+    private final PropertyMap properties;
+
+    private static final Node[] NO_PARENTS = new Node[0];
+
+    /**
+     * Origins of the lazy links ending on this node, in attachment order. null until resolved or once invalidated.
+     */
+    private volatile Node[] parents;
+
+    /**
+     * Own and inherited properties (read-only), kept for the nodes others inherit from.
+     * null until resolved or once invalidated.
+     */
+    private volatile PropertyMap resolved;
 
     private final String id;
 
     public Node(Map<String, Property<?>> properties) {
-        this(properties, Integer.toString(Node.NEXT_ID++), false);
+        this(properties, Integer.toString(Node.NEXT_ID.getAndIncrement()), false);
     }
 
     public Node(Map<String, Property<?>> properties, String id, boolean search) {
         super(search);
         this.id = id;
-        this.properties = properties;
-        this.links = new ArrayList<>();
+        this.properties = properties instanceof PropertyMap ? (PropertyMap) properties : new PropertyMap(properties);
+        this.links = new LinkList();
+        this.outgoing = new LinkList();
+        this.incoming = new LinkList();
+        this.linksByClass = new HashMap<>();
+        this.linksByName = new HashMap<>();
     }
 
     public Node() {
-        this(new HashMap<>());
+        this(new PropertyMap());
     }
 
+    /**
+     * Attaches a link to the node. The link extremities must already be set.
+     *
+     * @param link Link            Link to attach
+     */
     public void addLink(Link link) {
         links.add(link);
+        if (this.equals(link.getFrom()))
+            outgoing.add(link);
+        if (this.equals(link.getTo()))
+            incoming.add(link);
+        linksByClass.computeIfAbsent(link.getClass(), c -> new LinkList()).add(link);
+        linksByName.computeIfAbsent(link.getClass(), c -> new HashMap<>())
+                   .computeIfAbsent(link.getName(), n -> new LinkList()).add(link);
+        if (link.isLazy() && this.equals(link.getTo()))
+            invalidateInheritance();
     }
 
     /**
@@ -51,19 +110,50 @@ public abstract class Node extends GraphElement {
      */
     public abstract String getName();
 
+    /**
+     * Copies the node with the same id and cloned properties, without its links
+     *
+     * @return Detached copy of the node
+     */
+    public abstract Node copy();
+
+    /**
+     * @return Clone of every property of the node
+     */
+    protected Map<String, Property<?>> copyProperties() {
+        PropertyMap copy = new PropertyMap();
+        for (int i = 0; i < properties.size(); ++i)
+            copy.put(properties.keyAt(i), properties.valueAt(i).clone());
+        return copy;
+    }
+
     /**
      * Returns all of the connected links of the node
      * which equals to the one passed in parameter.
      *
      * @param link Link            link to compare
-     * @return List<Link>
+     * @return List<Link>          Read-only view
      */
     public List<Link> getLinks(Link link) {
-        List<Link> links = new ArrayList<>();
-        for (Link lnk : this.links)
-            if (link.isSameLink(lnk))
-                links.add(lnk);
-        return links;
+        if (link.isNameSignificant())
+            return getLinks(link.getClass(), link.getName());
+        return getLinks(link.getClass());
+    }
+
+    /**
+     * Returns all of the connected links of the node
+     * of the given class and name.
+     *
+     * @param linkClass Class           class to compare
+     * @param name      String          link name
+     * @return List<Link>          Read-only view
+     */
+    public List<Link> getLinks(Class<? extends Link> linkClass, String name) {
+        Map<String, LinkList> byName = linksByName.get(linkClass);
+        if (byName == null)
+            return Collections.emptyList();
+        LinkList found = byName.get(name);
+        return found == null ? Collections.emptyList() : found.view;
     }
 
     /**
@@ -76,7 +166,7 @@ public abstract class Node extends GraphElement {
      */
     public List<Link> getMatchingLinks(Node other, Link relation) {
         List<Link> links = new ArrayList<>();
-        for (Link link : this.links)
+        for (Link link : getLinks(relation.getClass()))
             if (relation.isSubsetOf(link))
                 links.add(link);
 
@@ -88,16 +178,32 @@ public abstract class Node extends GraphElement {
      * which are of the same class as the one passed in parameter.
      *
      * @param linkClass Class           class to compare
-     * @return List<Link>
+     * @return List<Link>          Read-only view
      */
     public List<Link> getLinks(Class<? extends Link> linkClass) {
-        List<Link> links = new ArrayList<>();
-        for (Link link : this.links) {
-            if (link.getClass().equals(linkClass)) {
-                links.add(link);
-            }
-        }
-        return links;
+        LinkList found = linksByClass.get(linkClass);
+        return found == null ? Collections.emptyList() : found.view;
+    }
+
+    /**
+     * @return Read-only view of the links starting from this node
+     */
+    public List<Link> getOutgoingLinks() {
+        return outgoing.view;
+    }
+
+    /**
+     * @return Read-only view of the links ending on this node
+     */
+    public List<Link> getIncomingLinks() {
+        return incoming.view;
+    }
+
+    /**
+     * @return Number of links attached to this node
+     */
+    public int getDegree() {
+        return links.list.size();
     }
 
     /**
@@ -106,14 +212,38 @@ public abstract class Node extends GraphElement {
      * @param link Link            Link to remove
      */
     public void removeLink(Link link) {
-        this.links.remove(link);
+        if (!links.remove(link))
+            return;
+        outgoing.remove(link);
+        incoming.remove(link);
+
+        LinkList byClass = linksByClass.get(link.getClass());
+        if (byClass != null && byClass.remove(link) && byClass.list.isEmpty())
+            linksByClass.remove(link.getClass());
+
+        Map<String, LinkList> byName = linksByName.get(link.getClass());
+        if (byName != null) {
+            for (Map.Entry<String, LinkList> entry : byName.entrySet()) {
+                if (entry.getValue().remove(link)) {
+                    if (entry.getValue().list.isEmpty())
+                        byName.remove(entry.getKey());
+                    break;
+                }
+            }
+            if (byName.isEmpty())
+                linksByName.remove(link.getClass());
+        }
+
+        if (link.isLazy() && this.equals(link.getTo()))
+            invalidateInheritance();
     }
 
 
     @Override
     public String toString() {
-        if (properties.get("name") != null) {
-            return (String) properties.get("name").getValue();
+        Property<?> name = getProperty("name");
+        if (name != null) {
+            return String.valueOf(name.getValue());
         }
         return "#" + getId();
     }
@@ -123,8 +253,9 @@ public abstract class Node extends GraphElement {
 
         res.append("id : ").append(this.id).append("\n");
 
-        Object[] keys = this.properties.keySet().toArray();
-        Object[] values = this.properties.values().toArray();
+        Map<String, Property<?>> properties = getAllProperties();
+        Object[] keys = properties.keySet().toArray();
+        Object[] values = properties.values().toArray();
         for (int i = 0; i < keys.length; ++i) {
             res.append(keys[i]).append(" : ").append(((Property<?>) values[i]).getValue()).append("\n");
         }
@@ -137,14 +268,154 @@ public abstract class Node extends GraphElement {
         return res.toString();
     }
 
+    /**
+     * @return Read-only view of all the links attached to this node
+     */
     public List<Link> getLinks() {
-        return this.links;
+        return this.links.view;
     }
 
+    /**
+     * @return Own properties of the node, without the lazily inherited ones
+     */
     public Map<String, Property<?>> getProperties() {
         return properties;
     }
 
+    /**
+     * Own properties, completed by the properties inherited through lazy links (see Link.isLazy).
+     * An own property hides the inherited ones with the same key, and the first parent linked
+     * hides the next ones. Inherited properties are the ones of the ancestors, not copies.
+     * Only the nodes others inherit from keep their resolved properties, the other ones read
+     * through their parents.
+     *
+     * @return Read-only map
+     */
+    public Map<String, Property<?>> getAllProperties() {
+        PropertyMap all = resolved;
+        if (all == null) {
+            Node[] parents = getParents();
+            if (parents.length == 0)
+                all = heritage();
+            else {
+                all = new PropertyMap(properties);
+                for (Node parent : parents)
+                    putAllAbsent(all, parent.heritage());
+            }
+        }
+        return Collections.unmodifiableMap(all);
+    }
+
+    /**
+     * @param key String          Property key
+     * @return Own or inherited property, null if absent
+     */
+    public Property<?> getProperty(String key) {
+        int code = PropertyDictionary.KEYS.find(key);
+        return code < 0 ? null : getProperty(code);
+    }
+
+    /**
+     * @param key int             Property key code (see PropertyDictionary)
+     * @return Own or inherited property, null if absent
+     */
+    public Property<?> getProperty(int key) {
+        Property<?> property = properties.get(key);
+        if (property != null)
+            return property;
+
+        for (Node parent : getParents()) {
+            property = parent.heritage().get(key);
+            if (property != null)
+                return property;
+        }
+        return null;
+    }
+
+    private Node[] getParents() {
+        Node[] parents = this.parents;
+        if (parents == null) {
+            List<Node> found = new ArrayList<>();
+            for (Link link : incoming.list)
+                if (link.isLazy())
+                    found.add(link.getFrom());
+            parents = found.isEmpty() ? NO_PARENTS : found.toArray(NO_PARENTS);
+            this.parents = parents;
+        }
+        return parents;
+    }
+
+    /**
+     * @return Own and inherited properties, resolved once
+     */
+    private PropertyMap heritage() {
+        PropertyMap all = resolved;
+        if (all == null) {
+            all = resolve();
+            resolved = all;
+        }
+        return all;
+    }
+
+    /**
+     * Walks the ancestors depth first, in the order their links were attached
+     */
+    private PropertyMap resolve() {
+        if (getParents().length == 0)
+            return properties;
+
+        PropertyMap all = new PropertyMap(properties);
+        Set<Node> visited = new HashSet<>();
+        Deque<Node> stack = new ArrayDeque<>();
+        visited.add(this);
+        pushParents(stack, this);
+        while (!stack.isEmpty()) {
+            Node ancestor = stack.pop();
+            if (!visited.add(ancestor))
+                continue;
+            putAllAbsent(all, ancestor.properties);
+            pushParents(stack, ancestor);
+        }
+        return all;
+    }
+
+    private static void putAllAbsent(PropertyMap all, PropertyMap properties) {
+        for (int i = 0; i < properties.size(); ++i)
+            all.putIfAbsent(properties.keyAt(i), properties.valueAt(i));
+    }
+
+    private static void pushParents(Deque<Node> stack, Node node) {
+        Node[] parents = node.getParents();
+        for (int i = parents.length - 1; i >= 0; --i)
+            stack.push(parents[i]);
+    }
+
+    /**
+     * @return This node and every node inheriting from it through lazy links, transitively
+     */
+    public List<Node> getHeirs() {
+        List<Node> heirs = new ArrayList<>();
+        Set<Node> visited = new HashSet<>();
+        heirs.add(this);
+        visited.add(this);
+        for (int i = 0; i < heirs.size(); ++i)
+            for (Link link : heirs.get(i).outgoing.list)
+                if (link.isLazy() && visited.add(link.getTo()))
+                    heirs.add(link.getTo());
+        return heirs;
+    }
+
+    /**
+     * Drops the resolved properties of the node and its heirs.
+     * Must be called after modifying the property map of the node directly.
+     */
+    public void invalidateInheritance() {
+        for (Node heir : getHeirs()) {
+            heir.parents = null;
+            heir.resolved = null;
+        }
+    }
+
     public String getId() {
         return id;
     }
@@ -177,7 +448,23 @@ public abstract class Node extends GraphElement {
             search = obj.getBoolean("search");
         } catch (JSONException ignored) {}
 
-        switch (obj.getString("type")) {
+        try {
+            return of(obj.getString("type"), properties, id, search);
+        } catch (IllegalArgumentException e) {
+            throw new JSONException(e.getMessage());
+        }
+    }
+
+    /**
+     * @param type       Node type (CONCEPT or INSTANCE)
+     * @param properties Node properties
+     * @param id         Node ID
+     * @param search     Search flag
+     * @return New node of the given type
+     * @throws IllegalArgumentException Invalid type
+     */
+    public static Node of(String type, Map<String, Property<?>> properties, String id, boolean search) {
+        switch (type) {
             case "CONCEPT":
                 return new ConceptNode(properties, id, search);
 
@@ -185,7 +472,7 @@ public abstract class Node extends GraphElement {
                 return new InstanceNode(properties, id, search);
 
             default:
-                throw new JSONException("Invalid type");
+                throw new IllegalArgumentException("Invalid type");
         }
     }
 
@@ -194,9 +481,9 @@ public abstract class Node extends GraphElement {
      * @return Map
      */
     protected static Map<String, Property<?>> getPropertiesFromJSON(JSONObject content) {
-        Map<String, Property<?>> properties = new HashMap<>();
+        Map<String, Property<?>> properties = new PropertyMap();
         for (String key : content.keySet()) {
-            properties.put(key, new Property<>(content.get(key)));
+            properties.put(key, Property.fromJSON(content.get(key)));
         }
         return properties;
     }
@@ -209,24 +496,31 @@ public abstract class Node extends GraphElement {
         return false;
     }
 
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+
     public boolean isIdentical(Node other) {
-        return properties.equals(other.properties);
+        return getAllProperties().equals(other.getAllProperties());
     }
 
     public boolean isSubsetOf(Node other) {
         if (!getClass().isInstance(other))
             return false;
 
-        for (String key : properties.keySet())
-            if (other.properties.get(key) == null || !other.properties.get(key).equals(properties.get(key)))
+        for (int i = 0; i < properties.size(); ++i) {
+            Property<?> property = other.getProperty(properties.keyAt(i));
+            if (property == null || !property.equals(properties.valueAt(i)))
                 return false;
+        }
 
         return true;
     }
 
     public List<Node> getNeighbours() {
-        List<Node> neighbours = new ArrayList<>();
-        for (Link link : links)
+        List<Node> neighbours = new ArrayList<>(links.list.size());
+        for (Link link : links.list)
             if (link.getFrom().equals(this))
                 neighbours.add(link.getTo());
             else
@@ -234,7 +528,42 @@ public abstract class Node extends GraphElement {
         return neighbours;
     }
 
+    /**
+     * Raises the id of the next created node, e.g. past the ids of a loaded graph.
+     * Never lowers it : ids already given to live nodes are not reused.
+     *
+     * @param nextId int             Lowest id of the next created node
+     */
     public static void setNextId(int nextId) {
-        NEXT_ID = nextId;
+        NEXT_ID.accumulateAndGet(nextId, Math::max);
+    }
+
+    public static int getNextId() {
+        return NEXT_ID.get();
+    }
+
+    /**
+     * Adjacency list along with its read-only view
+     */
+    private static final class LinkList {
+        private final List<Link> list = new ArrayList<>();
+        private final List<Link> view = Collections.unmodifiableList(list);
+
+        private void add(Link link) {
+            list.add(link);
+        }
+
+        /**
+         * Removes the link by identity
+         */
+        private boolean remove(Link link) {
+            for (int i = list.size() - 1; i >= 0; --i) {
+                if (list.get(i) == link) {
+                    list.remove(i);
+                    return true;
+                }
+            }
+            return false;
+        }
     }
 }
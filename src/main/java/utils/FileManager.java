@@ -1,26 +1,216 @@
 package utils;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * File access over NIO channels with direct buffers.
+ * Files whose name ends with `.gz` are transparently gzip (de)compressed.
+ */
 public abstract class FileManager {
+    /**
+     * Size of the direct buffer of every opened file
+     */
+    private static final int BUFFER_SIZE = 1 << 18;
 
+    /**
+     * @param path File path
+     * @return true if the file is read and written gzip compressed
+     */
+    public static boolean isCompressed(String path) {
+        return path.toLowerCase().endsWith(".gz");
+    }
+
+    /**
+     * @param path File path
+     * @return UTF-8 content of the file
+     * @throws IOException File not found or not readable
+     */
     public static String readFile(String path) throws IOException {
+        if (isCompressed(path)) {
+            try (InputStream in = openFile(path)) {
+                return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        }
 
-        BufferedReader reader = new BufferedReader(new FileReader(path));
-        String currentLine;
-        StringBuilder total = new StringBuilder();
-        while ((currentLine = reader.readLine()) != null) {
-            total.append(currentLine);
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8)
+                throw new IOException("File too large to be read at once: " + path);
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) != -1);
+            return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
         }
+    }
 
-        return total.toString();
+    /**
+     * @param path File path
+     * @return Buffered stream reading the file, decompressed if needed
+     * @throws IOException File not found or not readable
+     */
+    public static InputStream openFile(String path) throws IOException {
+        InputStream in = new ChannelInputStream(FileChannel.open(Paths.get(path), StandardOpenOption.READ));
+        try {
+            return isCompressed(path) ? new GZIPInputStream(in, 1 << 16) : in;
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param path File path
+     * @return Buffered stream writing the file (created or truncated), compressed if needed
+     * @throws IOException Permission denied or invalid path
+     */
+    public static OutputStream createFile(String path) throws IOException {
+        return open(path, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * @param path File path
+     * @return Buffered stream writing at the end of the file (created if needed), compressed if needed.
+     * Each stream appends a new gzip member, which gzip readers concatenate.
+     * @throws IOException Permission denied or invalid path
+     */
+    public static OutputStream appendFile(String path) throws IOException {
+        return open(path, StandardOpenOption.APPEND);
+    }
+
+    private static OutputStream open(String path, StandardOpenOption mode) throws IOException {
+        OutputStream out = new ChannelOutputStream(FileChannel.open(Paths.get(path),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode));
+        try {
+            return isCompressed(path) ? new GZIPOutputStream(out, 1 << 16) : out;
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
     }
 
     public static void writeFile(String path, String content) throws IOException {
-        BufferedWriter writer = new BufferedWriter(new FileWriter(path));
-        writer.write(content);
+        try (OutputStream out = createFile(path)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    public static void appendFile(String path, String content) throws IOException {
+        try (OutputStream out = appendFile(path)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Input stream reading a channel through a direct buffer
+     */
+    private static final class ChannelInputStream extends InputStream {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        private ChannelInputStream(FileChannel channel) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.flip();
+        }
+
+        /**
+         * @return false at the end of the channel
+         */
+        private boolean fill() throws IOException {
+            if (buffer.hasRemaining())
+                return true;
+            buffer.clear();
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read == 0);
+            buffer.flip();
+            return read != -1;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? buffer.get() & 0xFF : -1;
+        }
 
-        writer.close();
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0)
+                return 0;
+            if (!fill())
+                return -1;
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
     }
 
+    /**
+     * Output stream writing a channel through a direct buffer
+     */
+    private static final class ChannelOutputStream extends OutputStream {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        private ChannelOutputStream(FileChannel channel) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!buffer.hasRemaining())
+                drain();
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (!buffer.hasRemaining())
+                    drain();
+                int count = Math.min(length, buffer.remaining());
+                buffer.put(bytes, offset, count);
+                offset += count;
+                length -= count;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+    }
 }
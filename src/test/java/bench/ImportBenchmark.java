@@ -0,0 +1,134 @@
+package bench;
+
+import model.KnowledgeGraph;
+import model.Property;
+import model.link.AssociationLink;
+import model.link.InstanceLink;
+import model.link.Link;
+import model.node.ConceptNode;
+import model.node.InstanceNode;
+import model.node.Node;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Import time of a generated graph of about a million links, from JSON and from the binary format,
+ * then the time of looking every node and link up by id in the imported graph.
+ *
+ * <pre>
+ * mvn -B test-compile
+ * java -Xmx4g -cp target/classes:target/test-classes:&lt;org.json jar&gt; bench.ImportBenchmark [links] [runs]
+ * </pre>
+ */
+public class ImportBenchmark {
+    private static final int CONCEPTS = 1000;
+
+    public static void main(String[] args) throws IOException {
+        int links = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        Path json = Files.createTempFile("import", ".json");
+        Path binary = Files.createTempFile("import", ".kgb");
+        try {
+            KnowledgeGraph graph = generate(links);
+            System.out.printf("%d nodes, %d links%n", graph.getNodes().size(), graph.getLinks().size());
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(json))) {
+                graph.toJSON(out);
+            }
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(binary))) {
+                graph.toBinary(out);
+            }
+            graph = null;
+
+            KnowledgeGraph imported = null;
+            for (int run = 0; run < runs; ++run) {
+                imported = null;
+                System.gc();
+                long start = System.nanoTime();
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(json))) {
+                    imported = KnowledgeGraph.fromJSON(in, false);
+                }
+                report("JSON", json, imported, System.nanoTime() - start);
+            }
+            for (int run = 0; run < runs; ++run) {
+                imported = null;
+                System.gc();
+                long start = System.nanoTime();
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(binary))) {
+                    imported = KnowledgeGraph.fromBinary(in, false);
+                }
+                report("binary", binary, imported, System.nanoTime() - start);
+            }
+
+            long start = System.nanoTime();
+            int found = 0;
+            for (Node node : imported.getNodes())
+                if (imported.findNode(node.getId()) == node)
+                    found++;
+            for (Link link : imported.getLinks())
+                if (imported.getLink(link.getId()) == link)
+                    found++;
+            System.out.printf("%d lookups by id in %.1f ms%n", found, (System.nanoTime() - start) / 1e6);
+        } finally {
+            Files.deleteIfExists(json);
+            Files.deleteIfExists(binary);
+        }
+    }
+
+    /**
+     * Instances of random concepts, with two properties each, and random associations between them :
+     * one instance link and three associations per instance
+     */
+    private static KnowledgeGraph generate(int links) {
+        Random random = new Random(42);
+        KnowledgeGraph graph = new KnowledgeGraph(false);
+        List<Node> concepts = new ArrayList<>();
+        for (int i = 0; i < CONCEPTS; ++i) {
+            Node concept = new ConceptNode(properties("name", "concept" + i));
+            graph.addNodes(concept);
+            concepts.add(concept);
+        }
+
+        int instances = links / 4;
+        List<Node> added = new ArrayList<>(instances);
+        graph.beginBatch();
+        try {
+            for (int i = 0; i < instances; ++i) {
+                Map<String, Property<?>> properties = properties("name", "instance" + i);
+                properties.put("value", Property.of(random.nextInt(1000)));
+                Node instance = new InstanceNode(properties);
+                graph.addLink(concepts.get(random.nextInt(CONCEPTS)), instance, new InstanceLink());
+                added.add(instance);
+            }
+            for (int i = 0; i < links - instances; ++i)
+                graph.addLink(added.get(random.nextInt(instances)), added.get(random.nextInt(instances)),
+                        new AssociationLink("near", false));
+        } finally {
+            graph.endBatch();
+        }
+        return graph;
+    }
+
+    private static void report(String format, Path file, KnowledgeGraph imported, long nanos) throws IOException {
+        double seconds = nanos / 1e9;
+        System.out.printf("%-6s %6.1f MB : %d links in %.2f s (%.0f links/s)%n", format, Files.size(file) / 1e6,
+                imported.getLinks().size(), seconds, imported.getLinks().size() / seconds);
+    }
+
+    private static Map<String, Property<?>> properties(String key, Object value) {
+        Map<String, Property<?>> properties = new HashMap<>();
+        properties.put(key, Property.of(value));
+        return properties;
+    }
+}
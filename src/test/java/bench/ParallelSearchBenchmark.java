@@ -0,0 +1,117 @@
+package bench;
+
+import model.KnowledgeGraph;
+import model.Property;
+import model.link.AssociationLink;
+import model.node.InstanceNode;
+import model.node.Node;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Speedup of the parallel search against the number of threads, from 1 to the number of cores :
+ * chains of associations between instances with given property values, on a random graph.
+ *
+ * <pre>
+ * mvn -B test-compile
+ * java -Xmx4g -cp target/classes:target/test-classes:&lt;org.json jar&gt; bench.ParallelSearchBenchmark [nodes] [runs]
+ * </pre>
+ */
+public class ParallelSearchBenchmark {
+    private static final int VALUES = 50;
+    private static final int LINKS_PER_NODE = 3;
+
+    public static void main(String[] args) {
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        KnowledgeGraph graph = generate(nodes);
+        // every run must search, not read the previous result
+        graph.setResultCacheSize(0);
+        KnowledgeGraph query = chain();
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%d nodes, %d links, %d cores%n", graph.getNodes().size(), graph.getLinks().size(), cores);
+
+        double sequential = 0;
+        int expected = -1;
+        for (int threads : threadCounts(cores)) {
+            graph.setSearchParallelism(threads);
+            // warm-up, not measured
+            int matches = graph.findMatches(query).size();
+            if (expected == -1)
+                expected = matches;
+            else if (matches != expected)
+                System.out.printf("  %d threads : %d matches instead of %d%n", threads, matches, expected);
+
+            long best = Long.MAX_VALUE;
+            for (int run = 0; run < runs; ++run) {
+                long start = System.nanoTime();
+                graph.findMatches(query);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            double millis = best / 1e6;
+            if (threads == 1)
+                sequential = millis;
+            System.out.printf("  %2d threads : %8.1f ms, %d matches, speedup x%.2f%n", threads, millis, matches,
+                    sequential / millis);
+        }
+    }
+
+    /**
+     * @return Powers of two below the number of cores, then the number of cores
+     */
+    private static List<Integer> threadCounts(int cores) {
+        List<Integer> counts = new ArrayList<>();
+        for (int threads = 1; threads < cores; threads *= 2)
+            counts.add(threads);
+        counts.add(cores);
+        return counts;
+    }
+
+    /**
+     * Query : an instance with k = 3, associated through two instances to an instance with k = 5
+     */
+    private static KnowledgeGraph chain() {
+        KnowledgeGraph query = new KnowledgeGraph(false);
+        Node first = new InstanceNode(properties(3));
+        Node second = new InstanceNode(new HashMap<>());
+        Node third = new InstanceNode(new HashMap<>());
+        Node last = new InstanceNode(properties(5));
+        query.addLink(first, second, new AssociationLink("near", false));
+        query.addLink(second, third, new AssociationLink("near", false));
+        query.addLink(third, last, new AssociationLink("near", false));
+        return query;
+    }
+
+    private static KnowledgeGraph generate(int nodes) {
+        Random random = new Random(42);
+        KnowledgeGraph graph = new KnowledgeGraph(false);
+        graph.setIndexProperties(true);
+        List<Node> added = new ArrayList<>(nodes);
+        graph.beginBatch();
+        try {
+            for (int i = 0; i < nodes; ++i) {
+                Node node = new InstanceNode(properties(random.nextInt(VALUES)));
+                graph.addNodes(node);
+                added.add(node);
+            }
+            for (int i = 0; i < nodes * LINKS_PER_NODE; ++i)
+                graph.addLink(added.get(random.nextInt(nodes)), added.get(random.nextInt(nodes)),
+                        new AssociationLink("near", false));
+        } finally {
+            graph.endBatch();
+        }
+        return graph;
+    }
+
+    private static Map<String, Property<?>> properties(int value) {
+        Map<String, Property<?>> properties = new HashMap<>();
+        properties.put("k", Property.of(value));
+        return properties;
+    }
+}
@@ -0,0 +1,161 @@
+package bench;
+
+import model.GraphSnapshot;
+import model.KnowledgeGraph;
+import model.PathFinder;
+import model.Property;
+import model.link.AssociationLink;
+import model.link.Link;
+import model.node.InstanceNode;
+import model.node.Node;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Point-to-point shortest paths on large synthetic graphs : the bidirectional and A* (ALT) modes
+ * against Dijkstra's algorithm, on the same random pairs of nodes.
+ *
+ * Two graphs are generated : a weighted grid, road-like, and a sparse random graph of unit links
+ * (Dijkstra then being a plain BFS). Every path is checked to cost as much as the Dijkstra one.
+ *
+ * <pre>
+ * mvn -B test-compile
+ * java -Xmx4g -cp target/classes:target/test-classes:&lt;org.json jar&gt; bench.PathBenchmark [nodes] [queries]
+ * </pre>
+ */
+public class PathBenchmark {
+    public static void main(String[] args) {
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        int side = (int) Math.sqrt(nodes);
+        System.out.printf("Weighted grid, %d x %d%n", side, side);
+        run(grid(side), queries);
+
+        System.out.printf("Random graph of unit links, %d nodes, average degree 6%n", nodes);
+        run(random(nodes, 3), queries);
+    }
+
+    private static void run(KnowledgeGraph graph, int queries) {
+        GraphSnapshot snapshot = graph.snapshot();
+        PathFinder finder = new PathFinder(snapshot);
+
+        long start = System.nanoTime();
+        finder.prepareLandmarks(PathFinder.DEFAULT_LANDMARKS);
+        System.out.printf("  %d landmarks prepared in %.0f ms%n", PathFinder.DEFAULT_LANDMARKS,
+                (System.nanoTime() - start) / 1e6);
+
+        Random random = new Random(7);
+        List<Node> all = graph.getNodes();
+        Node[][] pairs = new Node[queries][];
+        for (int i = 0; i < queries; ++i)
+            pairs[i] = new Node[]{all.get(random.nextInt(all.size())), all.get(random.nextInt(all.size()))};
+
+        double[] costs = new double[queries];
+        double baseline = 0;
+        for (PathFinder.Mode mode : PathFinder.Mode.values()) {
+            // warm-up, not measured
+            for (int i = 0; i < Math.min(10, queries); ++i)
+                finder.shortestPath(pairs[i][0], pairs[i][1], mode);
+
+            int mismatches = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < queries; ++i) {
+                double cost = cost(snapshot, finder.shortestPath(pairs[i][0], pairs[i][1], mode));
+                if (mode == PathFinder.Mode.DIJKSTRA)
+                    costs[i] = cost;
+                else if (Math.abs(cost - costs[i]) > 1e-9 * Math.max(1, costs[i]))
+                    mismatches++;
+            }
+            double perQuery = (System.nanoTime() - start) / 1e6 / queries;
+            if (mode == PathFinder.Mode.DIJKSTRA)
+                baseline = perQuery;
+            System.out.printf("  %-13s %8.2f ms/query  x%.1f  %s%n", mode, perQuery, baseline / perQuery,
+                    mismatches == 0 ? "" : mismatches + " paths longer than Dijkstra's");
+        }
+    }
+
+    /**
+     * @return Sum of the lightest link between every two consecutive nodes, infinite for no path
+     */
+    private static double cost(GraphSnapshot snapshot, List<Node> path) {
+        if (path.isEmpty())
+            return Double.POSITIVE_INFINITY;
+
+        double cost = 0;
+        for (int i = 1; i < path.size(); ++i) {
+            int from = snapshot.indexOf(path.get(i - 1));
+            int to = snapshot.indexOf(path.get(i));
+            double lightest = Double.POSITIVE_INFINITY;
+            for (int edge = snapshot.getFirstEdge(from); edge < snapshot.getEndEdge(from); ++edge)
+                if (snapshot.getTarget(edge) == to)
+                    lightest = Math.min(lightest, snapshot.getWeight(edge));
+            cost += lightest;
+        }
+        return cost;
+    }
+
+    /**
+     * Grid of side x side nodes, each joined to its right and lower neighbours by a link weighing 1 to 10
+     */
+    private static KnowledgeGraph grid(int side) {
+        Random random = new Random(42);
+        KnowledgeGraph graph = new KnowledgeGraph(false);
+        Node[] row = new Node[side];
+        graph.beginBatch();
+        try {
+            for (int y = 0; y < side; ++y) {
+                for (int x = 0; x < side; ++x) {
+                    Node node = new InstanceNode(properties(y * side + x));
+                    graph.addNodes(node);
+                    if (x > 0)
+                        addLink(graph, row[x - 1], node, 1 + 9 * random.nextDouble());
+                    if (y > 0)
+                        addLink(graph, row[x], node, 1 + 9 * random.nextDouble());
+                    row[x] = node;
+                }
+            }
+        } finally {
+            graph.endBatch();
+        }
+        return graph;
+    }
+
+    /**
+     * Random graph of `nodes` nodes and `nodes * linksPerNode` unit links
+     */
+    private static KnowledgeGraph random(int nodes, int linksPerNode) {
+        Random random = new Random(42);
+        KnowledgeGraph graph = new KnowledgeGraph(false);
+        List<Node> added = new ArrayList<>(nodes);
+        graph.beginBatch();
+        try {
+            for (int i = 0; i < nodes; ++i) {
+                Node node = new InstanceNode(properties(i));
+                graph.addNodes(node);
+                added.add(node);
+            }
+            for (int i = 0; i < nodes * linksPerNode; ++i)
+                addLink(graph, added.get(random.nextInt(nodes)), added.get(random.nextInt(nodes)), 1);
+        } finally {
+            graph.endBatch();
+        }
+        return graph;
+    }
+
+    private static void addLink(KnowledgeGraph graph, Node from, Node to, double weight) {
+        Link link = new AssociationLink("road", false);
+        link.setWeight(weight);
+        graph.addLink(from, to, link);
+    }
+
+    private static Map<String, Property<?>> properties(int id) {
+        Map<String, Property<?>> properties = new HashMap<>();
+        properties.put("n", Property.of(id));
+        return properties;
+    }
+}
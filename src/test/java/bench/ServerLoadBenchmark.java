@@ -0,0 +1,192 @@
+package bench;
+
+import controller.GraphServer;
+import model.KnowledgeGraph;
+import model.Property;
+import model.link.AssociationLink;
+import model.link.InstanceLink;
+import model.node.ConceptNode;
+import model.node.InstanceNode;
+import model.node.Node;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load driver of GraphServer : thousands of concurrent requests from localhost on a shared graph,
+ * mixing node lookups and filters, node and link additions, searches and paths.
+ *
+ * <pre>
+ * mvn -B test-compile
+ * java -cp target/classes:target/test-classes:&lt;org.json jar&gt; bench.ServerLoadBenchmark [requests] [concurrency] [instances]
+ * </pre>
+ *
+ * Prints the throughput, the latency percentiles and the answers by HTTP status.
+ */
+public class ServerLoadBenchmark {
+    private static final int CONCEPTS = 100;
+    private static final int VALUES = 50;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final String base;
+    private final List<String> conceptIds;
+    private final List<String> instanceIds;
+
+    private final Map<Integer, AtomicInteger> statuses = new ConcurrentHashMap<>();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private ServerLoadBenchmark(int port, List<String> conceptIds, List<String> instanceIds) {
+        base = "http://127.0.0.1:" + port;
+        this.conceptIds = conceptIds;
+        this.instanceIds = instanceIds;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int instances = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+
+        List<String> conceptIds = new ArrayList<>();
+        List<String> instanceIds = new ArrayList<>();
+        KnowledgeGraph graph = generate(instances, conceptIds, instanceIds);
+        GraphServer server = new GraphServer(graph, null);
+        server.start(0);
+        try {
+            ServerLoadBenchmark benchmark = new ServerLoadBenchmark(server.getPort(), conceptIds, instanceIds);
+            System.out.printf("%d nodes, %d links, %d requests, %d in flight%n",
+                    graph.getNodes().size(), graph.getLinks().size(), requests, concurrency);
+            // warm-up, not measured
+            benchmark.run(Math.min(requests, 2000), concurrency);
+            benchmark.statuses.clear();
+            benchmark.failures.set(0);
+            benchmark.run(requests, concurrency);
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Concepts, each instance linked to one of them and associated with a previous instance
+     */
+    private static KnowledgeGraph generate(int instances, List<String> conceptIds, List<String> instanceIds) {
+        Random random = new Random(42);
+        KnowledgeGraph graph = new KnowledgeGraph(false);
+        graph.setIndexProperties(true);
+        List<Node> concepts = new ArrayList<>();
+        for (int i = 0; i < CONCEPTS; ++i) {
+            Node concept = new ConceptNode(properties("name", "concept" + i));
+            graph.addNodes(concept);
+            concepts.add(concept);
+            conceptIds.add(concept.getId());
+        }
+
+        List<Node> added = new ArrayList<>();
+        for (int i = 0; i < instances; ++i) {
+            Node instance = new InstanceNode(properties("k", random.nextInt(VALUES)));
+            graph.addLink(concepts.get(random.nextInt(CONCEPTS)), instance, new InstanceLink());
+            if (!added.isEmpty())
+                graph.addLink(instance, added.get(random.nextInt(added.size())), new AssociationLink("near", false));
+            added.add(instance);
+            instanceIds.add(instance.getId());
+        }
+        return graph;
+    }
+
+    private void run(int requests, int concurrency) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        long[] latencies = new long[requests];
+        List<CompletableFuture<?>> pending = new ArrayList<>(requests);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; ++i) {
+            inFlight.acquire();
+            int index = i;
+            long sent = System.nanoTime();
+            pending.add(client.sendAsync(nextRequest(), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        latencies[index] = System.nanoTime() - sent;
+                        if (error != null)
+                            failures.incrementAndGet();
+                        else
+                            statuses.computeIfAbsent(response.statusCode(), status -> new AtomicInteger())
+                                    .incrementAndGet();
+                        inFlight.release();
+                    }));
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).exceptionally(error -> null).join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Arrays.sort(latencies);
+        System.out.printf("%.0f requests/s, latency p50 %.1f ms, p99 %.1f ms, max %.1f ms%n", requests / seconds,
+                percentile(latencies, 0.5), percentile(latencies, 0.99), latencies[requests - 1] / 1e6);
+        System.out.println("statuses " + statuses + ", connection failures " + failures.get());
+    }
+
+    /**
+     * 40% lookups by id, 20% filters, 15% node additions, 10% link additions, 10% searches, 5% paths
+     */
+    private HttpRequest nextRequest() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int kind = random.nextInt(100);
+        if (kind < 40)
+            return get("/nodes/" + pick(instanceIds));
+        if (kind < 60)
+            return get("/nodes?k=" + random.nextInt(VALUES));
+        if (kind < 75)
+            return post("/nodes", "{\"type\": \"INSTANCE\", \"content\": {\"k\": " + random.nextInt(VALUES) + "}}");
+        if (kind < 85)
+            return post("/links", "{\"type\": \"ASSOCIATION\", \"from\": \"" + pick(instanceIds) + "\", \"to\": \""
+                    + pick(instanceIds) + "\", \"name\": \"near\"}");
+        if (kind < 95)
+            return post("/search", searchQuery(random.nextInt(CONCEPTS), random.nextInt(VALUES)));
+        return get("/path?from=" + pick(instanceIds) + "&to=" + pick(instanceIds) + "&mode=bidirectional");
+    }
+
+    /**
+     * @return JSON query graph : the instances of a concept with a property value
+     */
+    private static String searchQuery(int concept, int value) {
+        KnowledgeGraph query = new KnowledgeGraph(false);
+        query.addLink(new ConceptNode(properties("name", "concept" + concept)),
+                new InstanceNode(properties("k", value)), new InstanceLink());
+        return query.toJSON();
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(base + path)).GET().build();
+    }
+
+    private HttpRequest post(String path, String body) {
+        return HttpRequest.newBuilder(URI.create(base + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static String pick(List<String> ids) {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+
+    private static double percentile(long[] sorted, double rank) {
+        return sorted[Math.min(sorted.length - 1, (int) (rank * sorted.length))] / 1e6;
+    }
+
+    private static Map<String, Property<?>> properties(String key, Object value) {
+        Map<String, Property<?>> properties = new HashMap<>();
+        properties.put(key, Property.of(value));
+        return properties;
+    }
+}
@@ -0,0 +1,289 @@
+package model;
+
+import model.link.AssociationLink;
+import model.link.InstanceLink;
+import model.link.Link;
+import model.node.ConceptNode;
+import model.node.InstanceNode;
+import model.node.Node;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Writers adding nodes and links to a concurrent graph while readers look nodes up and search it
+ */
+public class ConcurrentKnowledgeGraphTest {
+    private static final int WRITERS = 4;
+    private static final int READERS = 3;
+    private static final int NODES_PER_WRITER = 2000;
+    private static final int VALUES = 10;
+
+    private KnowledgeGraph graph;
+    private ConceptNode concept;
+
+    /**
+     * Query : the concept and one of its instances
+     */
+    private KnowledgeGraph instanceQuery;
+
+    @Before
+    public void setUp() {
+        graph = new KnowledgeGraph(true);
+        graph.setConcurrent(true);
+        graph.setIndexProperties(true);
+        concept = new ConceptNode(properties("name", "Maladie"));
+        graph.addNodes(concept);
+
+        instanceQuery = new KnowledgeGraph(false);
+        instanceQuery.addLink(new ConceptNode(properties("name", "Maladie")), new InstanceNode(new HashMap<>()),
+                new InstanceLink());
+    }
+
+    @Test
+    public void concurrentWritesAndReadsStayConsistent() throws Exception {
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicInteger reads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < WRITERS; ++w)
+                writers.add(executor.submit(writer()));
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < READERS; ++r)
+                readers.add(executor.submit(reader(writing, reads)));
+
+            for (Future<?> writer : writers)
+                writer.get();
+            writing.set(false);
+            for (Future<?> reader : readers)
+                reader.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int instances = WRITERS * NODES_PER_WRITER;
+        assertEquals(1 + instances, graph.getNodes().size());
+        // one instance link and one association per added node
+        assertEquals(2 * instances, graph.getLinks().size());
+        assertTrue(reads.get() > 0);
+
+        assertUniqueIds();
+        assertAdjacencyMatchesLinks();
+        assertIndexMatchesScan();
+        assertEquals(instances, graph.findMatches(instanceQuery).size());
+        assertEquals(instances, graph.search(instanceQuery).getNodes().size() - 1);
+    }
+
+    @Test
+    public void idsAreUniqueAcrossThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int w = 0; w < WRITERS; ++w) {
+                results.add(executor.submit(() -> {
+                    List<String> ids = new ArrayList<>();
+                    for (int i = 0; i < NODES_PER_WRITER; ++i) {
+                        ids.add("node " + new InstanceNode(new HashMap<>()).getId());
+                        ids.add("link " + new AssociationLink().getId());
+                    }
+                    return ids;
+                }));
+            }
+
+            Set<String> ids = new HashSet<>();
+            for (Future<List<String>> result : results)
+                for (String id : result.get())
+                    assertTrue("duplicate " + id, ids.add(id));
+            assertEquals(2 * WRITERS * NODES_PER_WRITER, ids.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void valueChangesWhileReadersFilter() throws Exception {
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < NODES_PER_WRITER; ++i) {
+            Node node = new InstanceNode(properties("k", i % VALUES));
+            graph.addNodes(node);
+            nodes.add(node);
+        }
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicInteger reads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < WRITERS; ++w) {
+                int first = w;
+                writers.add(executor.submit(() -> {
+                    // each writer owns the nodes congruent to its number, moving them one value up
+                    for (int i = first; i < nodes.size(); i += WRITERS)
+                        setValue(nodes.get(i).getProperty("k"), (i + 1) % VALUES);
+                    return null;
+                }));
+            }
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < READERS; ++r) {
+                readers.add(executor.submit(() -> {
+                    while (writing.get()) {
+                        int indexed = 0;
+                        // no change in between the buckets : every node is in exactly one of them
+                        graph.getLock().readLock().lock();
+                        try {
+                            for (int value = 0; value < VALUES; ++value)
+                                indexed += graph.findNodes(Collections.singletonMap("k", Property.of(value))).size();
+                        } finally {
+                            graph.getLock().readLock().unlock();
+                        }
+                        assertEquals(NODES_PER_WRITER, indexed);
+                        reads.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> writer : writers)
+                writer.get();
+            writing.set(false);
+            for (Future<?> reader : readers)
+                reader.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int value = 0; value < VALUES; ++value) {
+            List<Node> indexed = graph.findNodes(Collections.singletonMap("k", Property.of(value)));
+            assertEquals(NODES_PER_WRITER / VALUES, indexed.size());
+            for (Node node : indexed)
+                assertEquals(value, node.getProperty("k").getValue());
+        }
+        assertTrue(reads.get() > 0);
+    }
+
+    /**
+     * Adds instances of the concept, each one associated with a random instance added before
+     */
+    private Callable<Void> writer() {
+        return () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            List<Node> added = new ArrayList<>();
+            for (int i = 0; i < NODES_PER_WRITER; ++i) {
+                InstanceNode instance = new InstanceNode(properties("k", i % VALUES));
+                assertTrue(graph.addLink(concept, instance, new InstanceLink()));
+                Node other = added.isEmpty() ? instance : added.get(random.nextInt(added.size()));
+                assertTrue(graph.addLink(instance, other, new AssociationLink("near", false)));
+                added.add(instance);
+            }
+            return null;
+        };
+    }
+
+    /**
+     * Looks up, filters and searches the graph until the writers are done
+     */
+    private Callable<Void> reader(AtomicBoolean writing, AtomicInteger reads) {
+        return () -> {
+            int lastMatches = 0;
+            while (writing.get()) {
+                for (Node node : graph.findNodes(Collections.singletonMap("k", Property.of(3)))) {
+                    assertSame(node, graph.findNode(node.getId()));
+                    assertEquals(3, node.getProperty("k").getValue());
+                }
+
+                // nodes and links are only added : a later search sees at least as much
+                int matches = graph.findMatches(instanceQuery).size();
+                assertTrue(matches >= lastMatches);
+                lastMatches = matches;
+
+                // a snapshot is taken as a whole : its adjacency adds up and every node is in the graph
+                GraphSnapshot snapshot = graph.snapshot();
+                int degrees = 0;
+                for (int node = 0; node < snapshot.getNodeCount(); ++node) {
+                    assertSame(snapshot.getNode(node), graph.findNode(snapshot.getNode(node).getId()));
+                    degrees += snapshot.getDegree(node);
+                }
+                assertEquals(snapshot.getEdgeCount(), degrees);
+                reads.incrementAndGet();
+            }
+            return null;
+        };
+    }
+
+    private void assertUniqueIds() {
+        Set<String> nodeIds = new HashSet<>();
+        for (Node node : graph.getNodes()) {
+            assertTrue("duplicate node " + node.getId(), nodeIds.add(node.getId()));
+            assertSame(node, graph.findNode(node.getId()));
+        }
+
+        Set<String> linkIds = new HashSet<>();
+        for (Link link : graph.getLinks()) {
+            assertTrue("duplicate link " + link.getId(), linkIds.add(link.getId()));
+            assertSame(link, graph.getLink(link.getId()));
+        }
+    }
+
+    private void assertAdjacencyMatchesLinks() {
+        int endpoints = 0;
+        for (Link link : graph.getLinks()) {
+            assertTrue(link.getFrom().getLinks().contains(link));
+            assertTrue(link.getTo().getLinks().contains(link));
+            endpoints += link.getFrom() == link.getTo() ? 1 : 2;
+        }
+
+        int adjacency = 0;
+        for (Node node : graph.getNodes()) {
+            for (Link link : node.getLinks())
+                assertSame(link, graph.getLink(link.getId()));
+            adjacency += node.getLinks().size();
+        }
+        assertEquals(endpoints, adjacency);
+        assertEquals(WRITERS * NODES_PER_WRITER, concept.getLinks(InstanceLink.class).size());
+    }
+
+    private void assertIndexMatchesScan() {
+        for (int value = 0; value < VALUES; ++value) {
+            Set<Node> scanned = new HashSet<>();
+            for (Node node : graph.getNodes()) {
+                Property<?> property = node.getProperty("k");
+                if (property != null && property.getValue().equals(value))
+                    scanned.add(node);
+            }
+            List<Node> indexed = graph.findNodes(Collections.singletonMap("k", Property.of(value)));
+            assertEquals(scanned.size(), indexed.size());
+            assertEquals(scanned, new HashSet<>(indexed));
+            assertEquals(WRITERS * NODES_PER_WRITER / VALUES, indexed.size());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void setValue(Property<?> property, T value) {
+        ((Property<T>) property).setValue(value);
+    }
+
+    private static Map<String, Property<?>> properties(String key, Object value) {
+        Map<String, Property<?>> properties = new HashMap<>();
+        properties.put(key, Property.of(value));
+        return properties;
+    }
+}
@@ -0,0 +1,140 @@
+package model;
+
+import model.link.AkoLink;
+import model.link.Link;
+import model.node.ConceptNode;
+import model.node.Node;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Hierarchy index kept up to date as concepts and AKO links are removed, checked against a traversal
+ */
+public class HierarchyIndexTest {
+    private static final int CONCEPTS = 300;
+    private static final int STEPS = 200;
+
+    private KnowledgeGraph graph;
+    private List<Node> concepts;
+    private Random random;
+
+    @Before
+    public void setUp() {
+        graph = new KnowledgeGraph(false);
+        concepts = new ArrayList<>();
+        random = new Random(42);
+        for (int i = 0; i < CONCEPTS; ++i) {
+            Node concept = new ConceptNode(properties("name", "concept" + i));
+            graph.addNodes(concept);
+            // one or two super-concepts among the previous ones
+            if (i > 0)
+                graph.addLink(concepts.get(random.nextInt(i)), concept, new AkoLink());
+            if (i > 1 && random.nextBoolean())
+                graph.addLink(concepts.get(random.nextInt(i)), concept, new AkoLink());
+            concepts.add(concept);
+        }
+    }
+
+    @Test
+    public void removalsKeepTheSubConcepts() {
+        assertSubConcepts();
+        for (int step = 0; step < STEPS; ++step) {
+            // a third of concept removals, the rest AKO link removals
+            if (random.nextInt(3) == 0 && concepts.size() > 1) {
+                Node removed = concepts.remove(random.nextInt(concepts.size()));
+                graph.removeNodes(removed);
+                assertTrue(graph.getSubConcepts(removed).isEmpty());
+            } else {
+                List<Link> akoLinks = akoLinks();
+                if (akoLinks.isEmpty())
+                    break;
+                Link removed = akoLinks.get(random.nextInt(akoLinks.size()));
+                assertTrue(graph.removeLink(removed, false));
+            }
+            assertSubConcepts();
+        }
+    }
+
+    @Test
+    public void removalInACycleSplitsIt() {
+        Node first = concepts.get(1);
+        Node second = concepts.get(2);
+        graph.addLink(first, second, new AkoLink());
+        graph.addLink(second, first, new AkoLink());
+        assertTrue(graph.isA(first, second));
+        assertTrue(graph.isA(second, first));
+
+        for (Link link : new ArrayList<>(second.getLinks(AkoLink.class)))
+            if (link.getFrom() == second && link.getTo() == first)
+                assertTrue(graph.removeLink(link, false));
+        assertEquals(reachable(second).contains(first), graph.isA(first, second));
+        assertSubConcepts();
+    }
+
+    @Test
+    public void removedConceptNoLongerLinksItsSubConcepts() {
+        Node top = concepts.get(0);
+        Node middle = new ConceptNode(properties("name", "middle"));
+        Node bottom = new ConceptNode(properties("name", "bottom"));
+        graph.addLink(top, middle, new AkoLink());
+        graph.addLink(middle, bottom, new AkoLink());
+        assertTrue(graph.isA(bottom, top));
+
+        graph.removeNodes(middle);
+        assertFalse(graph.isA(bottom, top));
+        assertFalse(graph.isA(bottom, middle));
+        assertTrue(graph.isA(bottom, bottom));
+        assertSubConcepts();
+    }
+
+    private void assertSubConcepts() {
+        for (Node concept : concepts)
+            assertEquals(concept.getId(), reachable(concept), new HashSet<>(graph.getSubConcepts(concept)));
+    }
+
+    /**
+     * @return The concept and the concepts of the graph it reaches through AKO links
+     */
+    private Set<Node> reachable(Node concept) {
+        Set<Node> found = new HashSet<>(Collections.singleton(concept));
+        Deque<Node> pending = new ArrayDeque<>(found);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            for (Link link : node.getLinks(AkoLink.class))
+                if (link.getFrom() == node && graph.findNode(link.getTo().getId()) == link.getTo()
+                        && found.add(link.getTo()))
+                    pending.push(link.getTo());
+        }
+        return found;
+    }
+
+    private List<Link> akoLinks() {
+        List<Link> found = new ArrayList<>();
+        for (Link link : graph.getLinks())
+            if (link instanceof AkoLink && graph.findNode(link.getFrom().getId()) == link.getFrom()
+                    && graph.findNode(link.getTo().getId()) == link.getTo())
+                found.add(link);
+        return found;
+    }
+
+    private static Map<String, Property<?>> properties(String key, Object value) {
+        Map<String, Property<?>> properties = new HashMap<>();
+        properties.put(key, Property.of(value));
+        return properties;
+    }
+}
@@ -0,0 +1,88 @@
+package model;
+
+import model.link.AssociationLink;
+import model.link.Link;
+import model.node.InstanceNode;
+import model.node.Node;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Loading a graph raises the node id counter past its ids, and never rewinds it. Copies keep the ids.
+ */
+public class NodeIdTest {
+    private static final String QUERY = "{\"nodes\": [{\"id\": \"0\", \"type\": \"INSTANCE\", \"content\": {}},"
+            + " {\"id\": \"1\", \"type\": \"INSTANCE\", \"content\": {}}],"
+            + " \"links\": [{\"type\": \"ASSOCIATION\", \"from\": \"0\", \"to\": \"1\", \"name\": \"\", \"oriented\": false}]}";
+
+    @Test
+    public void parsingAQueryKeepsTheIdCounter() {
+        KnowledgeGraph graph = new KnowledgeGraph(false);
+        for (int i = 0; i < 10; ++i)
+            graph.addNodes(new InstanceNode(new HashMap<>()));
+        int next = Node.getNextId();
+
+        KnowledgeGraph.fromJSON(QUERY, false);
+        assertEquals(next, Node.getNextId());
+
+        Node added = new InstanceNode(new HashMap<>());
+        assertNull(graph.findNode(added.getId()));
+        graph.addNodes(added);
+        assertEquals(11, graph.getNodes().size());
+    }
+
+    @Test
+    public void loadingRaisesTheIdCounter() throws IOException {
+        KnowledgeGraph graph = new KnowledgeGraph(false);
+        graph.addLink(new InstanceNode(new HashMap<>()), new InstanceNode(new HashMap<>()), new AssociationLink());
+        int high = Node.getNextId() - 1;
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        graph.toBinary(binary);
+        String json = graph.toJSON();
+
+        KnowledgeGraph.fromBinary(new ByteArrayInputStream(binary.toByteArray()), false);
+        assertTrue(Node.getNextId() > high);
+        KnowledgeGraph.fromJSON(json, false);
+        assertTrue(Node.getNextId() > high);
+        assertNull(graph.findNode(new InstanceNode(new HashMap<>()).getId()));
+    }
+
+    @Test
+    public void copiesKeepTheLinkIds() {
+        KnowledgeGraph graph = new KnowledgeGraph(false);
+        Link link = new AssociationLink("near", false);
+        link.setWeight(2);
+        graph.addLink(new InstanceNode(new HashMap<>()), new InstanceNode(new HashMap<>()), link);
+
+        Link copy = link.copy();
+        assertEquals(link.getId(), copy.getId());
+        assertEquals("near", copy.getName());
+        assertEquals(2, copy.getWeight(), 0);
+        // no id spent on the copy
+        assertEquals(Integer.parseInt(copy.getId()) + 1, Integer.parseInt(new AssociationLink().getId()));
+
+        try (GraphVersion version = graph.pin()) {
+            Link pinned = version.getGraph().getLink(link.getId());
+            assertNotSame(link, pinned);
+            assertEquals(link.getFrom().getId(), pinned.getFrom().getId());
+        }
+    }
+
+    @Test
+    public void setNextIdNeverLowers() {
+        int next = Node.getNextId();
+        Node.setNextId(0);
+        assertEquals(next, Node.getNextId());
+        Node.setNextId(next + 5);
+        assertEquals(next + 5, Node.getNextId());
+    }
+}
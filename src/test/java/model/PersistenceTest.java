@@ -0,0 +1,219 @@
+package model;
+
+import model.link.AkoLink;
+import model.link.AssociationLink;
+import model.link.CompositionLink;
+import model.link.InstanceLink;
+import model.link.Link;
+import model.node.ConceptNode;
+import model.node.InstanceNode;
+import model.node.Node;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Binary format, memory-mapped store, write-ahead log replay and checkpoint, checked by round-trip
+ */
+public class PersistenceTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private KnowledgeGraph graph;
+    private Path logPath;
+    private Path snapshotPath;
+
+    @Before
+    public void setUp() throws IOException {
+        graph = new KnowledgeGraph(false);
+        logPath = folder.getRoot().toPath().resolve("graph.wal");
+        snapshotPath = folder.getRoot().toPath().resolve("graph.kgb");
+    }
+
+    @Test
+    public void binaryRoundTrip() throws IOException {
+        populate(graph);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        graph.toBinary(out);
+        KnowledgeGraph read = KnowledgeGraph.fromBinary(new ByteArrayInputStream(out.toByteArray()), false);
+        assertSameGraph(graph, read);
+    }
+
+    @Test
+    public void mappedRoundTrip() throws IOException {
+        populate(graph);
+        String path = folder.getRoot().toPath().resolve("graph.kgm").toString();
+        MappedGraphStore.write(graph, path);
+        try (MappedGraphStore store = MappedGraphStore.open(path)) {
+            assertEquals(graph.getNodes().size(), store.getNodeCount());
+            for (Node node : graph.getNodes()) {
+                Node stored = store.findNode(node.getId());
+                assertNotNull(stored);
+                assertEquals(describe(node), describe(stored));
+                assertEquals(ids(node.getNeighbours()), ids(store.getNeighbours(stored)));
+            }
+
+            Map<String, Property<?>> filter = properties("quantite", 90);
+            assertEquals(ids(graph.findNodes(filter)), ids(store.findNodes(filter)));
+            KnowledgeGraph query = new KnowledgeGraph(false);
+            query.addLink(new ConceptNode(properties("name", "Antalgique")), new InstanceNode(new HashMap<>()),
+                    new InstanceLink());
+            assertEquals(ids(graph.search(query).getNodes()), ids(store.search(query).getNodes()));
+        }
+    }
+
+    @Test
+    public void logReplaysEveryModification() throws IOException {
+        try (WriteAheadLog log = WriteAheadLog.open(logPath.toString())) {
+            graph.setWriteAheadLog(log);
+            populate(graph);
+            log.sync();
+            assertTrue(log.getRecordCount() > 0);
+        }
+
+        KnowledgeGraph replayed = new KnowledgeGraph(false);
+        try (WriteAheadLog log = WriteAheadLog.open(logPath.toString())) {
+            assertTrue(log.replay(replayed) > 0);
+        }
+        assertSameGraph(graph, replayed);
+    }
+
+    @Test
+    public void checkpointEmptiesTheLog() throws IOException {
+        try (WriteAheadLog log = WriteAheadLog.open(logPath.toString())) {
+            graph.setWriteAheadLog(log);
+            populate(graph);
+            log.checkpoint(graph, snapshotPath.toString());
+            assertEquals(0, log.size());
+
+            // after the checkpoint : only in the log
+            graph.addNodes(new InstanceNode(properties("name", "Ibuprofene")));
+            log.sync();
+        }
+
+        assertSameGraph(graph, recover());
+    }
+
+    @Test
+    public void tornRecordEndsTheLog() throws IOException {
+        try (WriteAheadLog log = WriteAheadLog.open(logPath.toString())) {
+            graph.setWriteAheadLog(log);
+            populate(graph);
+        }
+        long valid = Files.size(logPath);
+        // a crash in the middle of a record
+        Files.write(logPath, new byte[] {0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        KnowledgeGraph replayed = new KnowledgeGraph(false);
+        try (WriteAheadLog log = WriteAheadLog.open(logPath.toString())) {
+            log.replay(replayed);
+        }
+        assertSameGraph(graph, replayed);
+        assertEquals(valid, Files.size(logPath));
+    }
+
+    /**
+     * Snapshot, then the log replayed over it, as Main does at startup
+     */
+    private KnowledgeGraph recover() throws IOException {
+        KnowledgeGraph recovered;
+        try (InputStream in = Files.newInputStream(snapshotPath)) {
+            recovered = KnowledgeGraph.fromBinary(in, false);
+        }
+        try (WriteAheadLog log = WriteAheadLog.open(logPath.toString())) {
+            assertEquals(1, log.replay(recovered));
+        }
+        return recovered;
+    }
+
+    /**
+     * Concepts, instances with values of every type, links of every type, then a removal of each kind
+     */
+    private static void populate(KnowledgeGraph graph) {
+        Node drug = new ConceptNode(properties("name", "Medicament"));
+        Node antalgic = new ConceptNode(properties("name", "Antalgique"));
+        graph.addLink(drug, antalgic, new AkoLink());
+
+        Map<String, Property<?>> doliprane = properties("name", "Doliprane");
+        doliprane.put("quantite", Property.of(90));
+        doliprane.put("stock", Property.of(9_000_000_000L));
+        doliprane.put("dose", Property.of(0.5));
+        doliprane.put("generique", Property.of(true));
+        Node first = new InstanceNode(doliprane);
+        Node second = new InstanceNode(properties("quantite", 90));
+        graph.addLink(antalgic, first, new InstanceLink());
+        graph.addLink(antalgic, second, new InstanceLink());
+
+        AssociationLink similar = new AssociationLink("similaire", false);
+        similar.setWeight(2.5);
+        graph.addLink(first, second, similar);
+        graph.addLink(drug, new ConceptNode(properties("name", "Boite")), new CompositionLink("contenant", true));
+
+        Node removed = new InstanceNode(properties("name", "Retire"));
+        graph.addNodes(removed);
+        graph.removeNodes(removed);
+        Link removedLink = new AssociationLink("temporaire", true);
+        graph.addLink(second, first, removedLink);
+        graph.removeLink(removedLink, false);
+    }
+
+    private static void assertSameGraph(KnowledgeGraph expected, KnowledgeGraph actual) {
+        assertEquals(nodes(expected), nodes(actual));
+        assertEquals(links(expected), links(actual));
+    }
+
+    private static Map<String, String> nodes(KnowledgeGraph graph) {
+        Map<String, String> nodes = new TreeMap<>();
+        for (Node node : graph.getNodes())
+            nodes.put(node.getId(), describe(node));
+        return nodes;
+    }
+
+    private static String describe(Node node) {
+        Map<String, String> properties = new TreeMap<>();
+        for (Map.Entry<String, Property<?>> property : node.getProperties().entrySet())
+            properties.put(property.getKey(), property.getValue().getValue().getClass().getSimpleName()
+                    + " " + property.getValue());
+        return node.getClass().getSimpleName() + " " + properties;
+    }
+
+    private static Set<String> links(KnowledgeGraph graph) {
+        Set<String> links = new HashSet<>();
+        for (Link link : graph.getLinks())
+            links.add(link.getClass().getSimpleName() + " " + link.getFrom().getId() + " " + link.getTo().getId()
+                    + " " + link.getName() + " " + link.isOriented() + " " + link.getWeight());
+        return links;
+    }
+
+    private static Set<String> ids(List<Node> nodes) {
+        Set<String> ids = new HashSet<>();
+        for (Node node : nodes)
+            ids.add(node.getId());
+        return ids;
+    }
+
+    private static Map<String, Property<?>> properties(String key, Object value) {
+        Map<String, Property<?>> properties = new HashMap<>();
+        properties.put(key, Property.of(value));
+        return properties;
+    }
+}
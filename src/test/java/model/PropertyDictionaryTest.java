@@ -0,0 +1,89 @@
+package model;
+
+import model.node.InstanceNode;
+import model.node.Node;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * String values coded in the dictionary of their graph, and matched by code
+ */
+public class PropertyDictionaryTest {
+    @Test
+    public void valuesAreMatchedByCode() {
+        for (boolean indexed : new boolean[] {false, true}) {
+            KnowledgeGraph graph = new KnowledgeGraph(false);
+            graph.setIndexProperties(indexed);
+            Node node = new InstanceNode(properties("name", new String("Grippe")));
+            graph.addNodes(node);
+
+            Property<?> name = node.getProperty("name");
+            int code = name.getCode(graph.getValues());
+            assertTrue(code >= 0);
+            assertEquals(List.of(node), graph.findNodes(properties("name", "Grippe")));
+
+            // filters never add their values to the dictionary
+            int size = graph.getValues().size();
+            assertTrue(graph.findNodes(properties("name", "Rougeole")).isEmpty());
+            assertEquals(size, graph.getValues().size());
+
+            // a new value is coded when set
+            setValue(name, "Rougeole");
+            assertNotEquals(code, name.getCode(graph.getValues()));
+            assertEquals(List.of(node), graph.findNodes(properties("name", "Rougeole")));
+            assertTrue(graph.findNodes(properties("name", "Grippe")).isEmpty());
+        }
+    }
+
+    @Test
+    public void codesOfOneDictionaryCompareAlone() {
+        PropertyDictionary dictionary = new PropertyDictionary();
+        Property<?> first = Property.of("Grippe");
+        Property<?> second = Property.of(new String("Grippe"));
+        first.intern(dictionary);
+        second.intern(dictionary);
+        assertEquals(first, second);
+        assertEquals(first.getCode(dictionary), second.getCode(dictionary));
+
+        // coded in another dictionary, or not at all : compared by value
+        Property<?> other = Property.of("Grippe");
+        other.intern(new PropertyDictionary());
+        assertEquals(first, other);
+        assertEquals(first, Property.of("Grippe"));
+        assertNotEquals(first, Property.of("Rougeole"));
+    }
+
+    @Test
+    public void boundedDictionaryRefusesNewStrings() {
+        PropertyDictionary dictionary = new PropertyDictionary(2);
+        assertEquals(0, dictionary.encode("a"));
+        assertEquals(1, dictionary.encode("b"));
+        assertEquals(0, dictionary.encode("a"));
+        try {
+            dictionary.encode("c");
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertEquals(-1, dictionary.find("c"));
+            assertEquals(2, dictionary.size());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void setValue(Property<?> property, T value) {
+        ((Property<T>) property).setValue(value);
+    }
+
+    private static Map<String, Property<?>> properties(String key, Object value) {
+        Map<String, Property<?>> properties = new HashMap<>();
+        properties.put(key, Property.of(value));
+        return properties;
+    }
+}
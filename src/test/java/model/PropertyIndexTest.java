@@ -0,0 +1,143 @@
+package model;
+
+import model.link.InstanceLink;
+import model.node.ConceptNode;
+import model.node.InstanceNode;
+import model.node.Node;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Property, range and text indexes kept up to date as property values change, own or inherited
+ */
+public class PropertyIndexTest {
+    private static final int HEIRS = 100_000;
+
+    private KnowledgeGraph graph;
+    private ConceptNode concept;
+
+    @Before
+    public void setUp() {
+        graph = new KnowledgeGraph(true);
+        graph.setLazyInheritance(true);
+        graph.setIndexProperties(true);
+        graph.setIndexText(true);
+        graph.setRangeIndexed("age", true);
+
+        Map<String, Property<?>> properties = new HashMap<>();
+        properties.put("name", Property.of("Maladie"));
+        properties.put("age", Property.of(10));
+        concept = new ConceptNode(properties);
+        graph.addNodes(concept);
+    }
+
+    @Test
+    public void ownValueChangeMovesTheNode() {
+        Node node = new InstanceNode(properties("color", "red"));
+        graph.addNodes(node);
+        assertEquals(List.of(node), graph.findNodes(properties("color", "red")));
+
+        setValue(node.getProperty("color"), "blue");
+        assertTrue(graph.findNodes(properties("color", "red")).isEmpty());
+        assertEquals(List.of(node), graph.findNodes(properties("color", "blue")));
+        assertEquals(List.of(node), graph.searchText("blue", 10));
+        assertTrue(graph.searchText("red", 10).isEmpty());
+    }
+
+    @Test
+    public void inheritedValueChangeMovesEveryHeir() {
+        List<Node> heirs = addHeirs(100);
+        assertEquals(101, graph.findNodes(properties("name", "Maladie")).size());
+
+        setValue(concept.getProperty("name"), "Pathologie");
+        assertTrue(graph.findNodes(properties("name", "Maladie")).isEmpty());
+        assertEquals(101, graph.findNodes(properties("name", "Pathologie")).size());
+        assertEquals(101, graph.searchText("pathologie", 1000).size());
+
+        setValue(concept.getProperty("age"), 20);
+        Map<String, Range> ranges = Collections.singletonMap("age", new Range(15, true, 25, true));
+        assertEquals(101, new HashSet<>(graph.findNodes(new HashMap<>(), ranges)).size());
+        assertTrue(graph.findNodes(new HashMap<>(), Collections.singletonMap("age", Range.lessThan(15))).isEmpty());
+
+        graph.removeNodes(heirs.toArray(new Node[0]));
+        setValue(concept.getProperty("name"), "Maladie");
+        assertEquals(List.of(concept), graph.findNodes(properties("name", "Maladie")));
+    }
+
+    @Test(timeout = 20_000)
+    public void manyHeirsShareOneListener() {
+        List<Node> heirs = addHeirs(HEIRS);
+        setValue(concept.getProperty("age"), 30);
+        assertEquals(HEIRS + 1, graph.findNodes(properties("age", 30)).size());
+        graph.removeNodes(heirs.toArray(new Node[0]));
+        assertEquals(1, graph.findNodes(properties("age", 30)).size());
+    }
+
+    @Test
+    public void rangeAndTextQueriesMatchScans() {
+        Random random = new Random(42);
+        String[] words = {"Doliprane", "Dafalgan", "Efferalgan", "Ibuprofene", "Aspirine du Rhone"};
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 500; ++i) {
+            Map<String, Property<?>> properties = properties("age", random.nextInt(100));
+            properties.put("name", Property.of(words[random.nextInt(words.length)] + " " + i));
+            nodes.add(new InstanceNode(properties));
+        }
+        graph.addNodes(nodes.toArray(new Node[0]));
+
+        KnowledgeGraph scanned = new KnowledgeGraph(true);
+        scanned.addNodes(graph.getNodes().toArray(new Node[0]));
+
+        Range[] ranges = {new Range(20, true, 40, false), Range.lessThan(10), Range.atMost(10), new Range(99, true, 99, true)};
+        for (Range range : ranges) {
+            Map<String, Range> filter = Collections.singletonMap("age", range);
+            Set<Node> expected = new HashSet<>(scanned.findNodes(new HashMap<>(), filter));
+            assertEquals(expected, new HashSet<>(graph.findNodes(new HashMap<>(), filter)));
+            for (Node node : expected)
+                assertTrue(range.contains(node.getProperty("age").getValue()));
+        }
+
+        for (String text : new String[] {"doli", "ALGAN", "du rho", "ibuprofene 1", "absent"}) {
+            assertEquals(text, new HashSet<>(TextIndex.scan(graph.getNodes(), text, 1000)),
+                    new HashSet<>(graph.searchText(text, 1000)));
+        }
+    }
+
+    private List<Node> addHeirs(int count) {
+        List<Node> heirs = new ArrayList<>(count);
+        graph.beginBatch();
+        try {
+            for (int i = 0; i < count; ++i) {
+                Node heir = new InstanceNode(new HashMap<>());
+                graph.addLink(concept, heir, new InstanceLink());
+                heirs.add(heir);
+            }
+        } finally {
+            graph.endBatch();
+        }
+        return heirs;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void setValue(Property<?> property, T value) {
+        ((Property<T>) property).setValue(value);
+    }
+
+    private static Map<String, Property<?>> properties(String key, Object value) {
+        Map<String, Property<?>> properties = new HashMap<>();
+        properties.put(key, Property.of(value));
+        return properties;
+    }
+}
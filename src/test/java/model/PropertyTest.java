@@ -0,0 +1,61 @@
+package model;
+
+import model.node.InstanceNode;
+import model.node.Node;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Values typed in queries and read from JSON normalized alike
+ */
+public class PropertyTest {
+    @Test
+    public void parsingIsLossless() {
+        assertEquals(IntProperty.class, Property.parse("90").getClass());
+        assertEquals(LongProperty.class, Property.parse("9000000000").getClass());
+        assertEquals(DoubleProperty.class, Property.parse("2.5").getClass());
+        assertEquals(BooleanProperty.class, Property.parse("true").getClass());
+        for (String text : new String[] {"007", "+1", "1e3", "2.50", "-0", "Doliprane"}) {
+            assertEquals(text, Property.parse(text).getValue());
+            assertEquals(text, Property.parse(text).toString());
+        }
+    }
+
+    @Test
+    public void rangeBoundsAcceptAnyNotation() {
+        assertEquals(7, Property.parseNumber("007"));
+        assertEquals(1, Property.parseNumber("+1"));
+        assertEquals(1000.0, Property.parseNumber("1e3"));
+        assertNull(Property.parseNumber("Doliprane"));
+    }
+
+    @Test
+    public void jsonNumericStringsMatchNumbers() {
+        JSONObject content = new JSONObject("{\"quantite\": \"90\", \"proprete\": 1, \"code\": \"007\"}");
+        Map<String, Property<?>> properties = new HashMap<>();
+        for (String key : content.keySet())
+            properties.put(key, Property.fromJSON(content.get(key)));
+        KnowledgeGraph graph = new KnowledgeGraph(false);
+        Node node = new InstanceNode(properties);
+        graph.addNodes(node);
+
+        assertEquals(List.of(node), graph.findNodes(filter("quantite", "90")));
+        assertEquals(List.of(node), graph.findNodes(filter("proprete", "1")));
+        assertEquals(List.of(node), graph.findNodes(filter("code", "007")));
+        assertTrue(graph.findNodes(filter("code", "7")).isEmpty());
+    }
+
+    private static Map<String, Property<?>> filter(String key, String typed) {
+        Map<String, Property<?>> filter = new HashMap<>();
+        filter.put(key, Property.parse(typed));
+        return filter;
+    }
+}
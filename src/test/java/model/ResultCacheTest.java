@@ -0,0 +1,103 @@
+package model;
+
+import model.link.AssociationLink;
+import model.node.InstanceNode;
+import model.node.Node;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Result cache keyed by canonical queries, and emptied by any modification
+ */
+public class ResultCacheTest {
+    @Test
+    public void nodeOrderDoesNotChangeTheKey() {
+        assertEquals(ResultCache.searchKey(chain(false, false)), ResultCache.searchKey(chain(true, false)));
+        assertNotEquals(ResultCache.searchKey(chain(false, false)), ResultCache.searchKey(chain(false, true)));
+    }
+
+    @Test
+    public void reorderedQueryHitsTheCache() {
+        KnowledgeGraph graph = new KnowledgeGraph(false);
+        Node first = new InstanceNode(properties("k", 1));
+        Node second = new InstanceNode(properties("k", 2));
+        graph.addLink(first, second, new AssociationLink("near", true));
+
+        assertEquals(2, graph.search(chain(false, false)).getNodes().size());
+        long hits = graph.getCacheHits();
+        assertEquals(2, graph.search(chain(true, false)).getNodes().size());
+        assertEquals(hits + 1, graph.getCacheHits());
+    }
+
+    @Test
+    public void valueChangeInvalidatesTheResults() {
+        KnowledgeGraph graph = new KnowledgeGraph(false);
+        Node node = new InstanceNode(properties("k", 1));
+        graph.addNodes(node);
+        Map<String, Range> ranges = Collections.singletonMap("k", Range.atMost(1));
+
+        assertEquals(List.of(node), graph.findNodes(properties("k", 1)));
+        assertEquals(List.of(node), graph.findNodes(new HashMap<>(), ranges));
+        assertEquals(1, graph.search(single(1)).getNodes().size());
+        assertEquals(List.of(node), graph.findNodes(properties("k", 1)));
+        assertTrue(graph.getCacheHits() > 0);
+
+        // no structural modification : only the value changes
+        long version = graph.getVersion();
+        setValue(node.getProperty("k"), 2);
+        assertEquals(version, graph.getVersion());
+        assertTrue(graph.findNodes(properties("k", 1)).isEmpty());
+        assertEquals(List.of(node), graph.findNodes(properties("k", 2)));
+        assertTrue(graph.findNodes(new HashMap<>(), ranges).isEmpty());
+        assertTrue(graph.search(single(1)).getNodes().isEmpty());
+        assertEquals(1, graph.search(single(2)).getNodes().size());
+    }
+
+    /**
+     * @return Query : one node with the value
+     */
+    private static KnowledgeGraph single(int value) {
+        KnowledgeGraph query = new KnowledgeGraph(false);
+        query.addNodes(new InstanceNode(properties("k", value)));
+        return query;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void setValue(Property<?> property, T value) {
+        ((Property<T>) property).setValue(value);
+    }
+
+    /**
+     * @param reversed boolean         Nodes added last to first
+     * @param inverted boolean         Link from the second node to the first one
+     * @return Query : a node with k = 1 linked to a node with k = 2
+     */
+    private static KnowledgeGraph chain(boolean reversed, boolean inverted) {
+        KnowledgeGraph query = new KnowledgeGraph(false);
+        Node first = new InstanceNode(properties("k", 1));
+        Node second = new InstanceNode(properties("k", 2));
+        if (reversed)
+            query.addNodes(second, first);
+        else
+            query.addNodes(first, second);
+        if (inverted)
+            query.addLink(second, first, new AssociationLink("near", true));
+        else
+            query.addLink(first, second, new AssociationLink("near", true));
+        return query;
+    }
+
+    private static Map<String, Property<?>> properties(String key, Object value) {
+        Map<String, Property<?>> properties = new HashMap<>();
+        properties.put(key, Property.of(value));
+        return properties;
+    }
+}